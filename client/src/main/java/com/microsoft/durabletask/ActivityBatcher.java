@@ -0,0 +1,130 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import com.microsoft.durabletask.implementation.protobuf.OrchestratorService.ActivityRequest;
+import com.microsoft.durabletask.implementation.protobuf.TaskHubSidecarServiceGrpc.TaskHubSidecarServiceStub;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Collects invocations of a batch activity into batches.
+ * <p>
+ * A batch is handed off for execution as soon as it's full, or once its first invocation has waited for the linger
+ * time. Invocations that wait for their batch to fill up return their stream credits right away so that the sidecar
+ * can send the rest of the batch. The invocation that completes a batch keeps its credit until the batch has run,
+ * which slows down the intake of work items while batches are running.
+ */
+final class ActivityBatcher {
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final ScheduledExecutorService scheduler;
+    private final BatchHandler batchHandler;
+
+    private List<Entry> pending = new ArrayList<>();
+    private ScheduledFuture<?> lingerTimer;
+
+    /**
+     * @param batchHandler runs a batch; may block until there is capacity to run it
+     */
+    ActivityBatcher(
+            int maxBatchSize,
+            Duration lingerTime,
+            ScheduledExecutorService scheduler,
+            BatchHandler batchHandler) {
+        this.maxBatchSize = maxBatchSize;
+        this.lingerNanos = lingerTime.toNanos();
+        this.scheduler = scheduler;
+        this.batchHandler = batchHandler;
+    }
+
+    /**
+     * Adds an invocation to the current batch.
+     *
+     * @throws InterruptedException if the calling thread is interrupted while waiting for capacity to run a full batch
+     */
+    void add(Entry entry) throws InterruptedException {
+        List<Entry> batch = null;
+        Runnable credit = null;
+        synchronized (this) {
+            this.pending.add(entry);
+            if (this.pending.size() >= this.maxBatchSize) {
+                batch = this.takeBatch();
+            } else {
+                if (this.pending.size() == 1) {
+                    this.lingerTimer = this.scheduler.schedule(this::flushQuietly, this.lingerNanos, TimeUnit.NANOSECONDS);
+                }
+                credit = entry.credit.getAndSet(null);
+            }
+        }
+
+        if (credit != null) {
+            credit.run();
+        }
+        if (batch != null) {
+            this.batchHandler.run(batch);
+        }
+    }
+
+    /**
+     * Hands off the current batch for execution, even if it isn't full.
+     *
+     * @throws InterruptedException if the calling thread is interrupted while waiting for capacity to run the batch
+     */
+    void flush() throws InterruptedException {
+        List<Entry> batch;
+        synchronized (this) {
+            if (this.pending.isEmpty()) {
+                return;
+            }
+            batch = this.takeBatch();
+        }
+        this.batchHandler.run(batch);
+    }
+
+    private void flushQuietly() {
+        try {
+            this.flush();
+        } catch (InterruptedException | RejectedExecutionException e) {
+            // The worker is shutting down. The sidecar will redeliver the invocations that didn't run.
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private List<Entry> takeBatch() {
+        if (this.lingerTimer != null) {
+            this.lingerTimer.cancel(false);
+            this.lingerTimer = null;
+        }
+
+        List<Entry> batch = this.pending;
+        this.pending = new ArrayList<>();
+        return batch;
+    }
+
+    @FunctionalInterface
+    interface BatchHandler {
+        void run(List<Entry> batch) throws InterruptedException;
+    }
+
+    static final class Entry {
+        final TaskHubSidecarServiceStub sidecarClient;
+        final ActivityRequest activityRequest;
+        final AtomicReference<Runnable> credit;
+
+        Entry(TaskHubSidecarServiceStub sidecarClient, ActivityRequest activityRequest, Runnable credit) {
+            this.sidecarClient = sidecarClient;
+            this.activityRequest = activityRequest;
+            this.credit = new AtomicReference<>(credit);
+        }
+    }
+}
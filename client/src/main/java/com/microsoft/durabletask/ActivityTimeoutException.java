@@ -0,0 +1,22 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import java.time.Duration;
+
+/**
+ * Exception that is used to fail an activity that ran for longer than its configured timeout.
+ * <p>
+ * Orchestrations observe activity timeouts as a {@link TaskFailedException} whose failure details can be checked using
+ * {@code getErrorDetails().isCausedBy(ActivityTimeoutException.class)}. Like any other activity failure, a timed-out
+ * activity is retried if it was scheduled with a {@link RetryPolicy}.
+ */
+public final class ActivityTimeoutException extends RuntimeException {
+    // Only intended to be created within this package
+    ActivityTimeoutException(String activityName, Duration timeout) {
+        super(String.format(
+                "The activity '%s' did not complete within its timeout of %d ms.",
+                activityName,
+                timeout.toMillis()));
+    }
+}
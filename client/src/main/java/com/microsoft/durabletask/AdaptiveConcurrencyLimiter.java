@@ -0,0 +1,90 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+/**
+ * Limits the number of work items that execute at the same time using an additive-increase/multiplicative-decrease
+ * (AIMD) algorithm.
+ * <p>
+ * Each completed work item reports its latency and whether it succeeded. A fast, successful work item raises the limit
+ * by {@code 1 / limit} while the limiter is busy, so the limit grows by about one for every {@code limit} successes,
+ * which is once per window of concurrent work items rather than once per work item. A failed work item, or one that took much longer than the recent average, is
+ * treated as a sign that a downstream dependency is overloaded and lowers the limit by a fixed ratio. The limit never
+ * drops below the configured minimum or rises above the configured maximum.
+ * <p>
+ * The limiter never blocks. A {@link WorkItemBudget} checks it before dispatching a work item, and work items that the
+ * limit holds back wait in the budget's queue with their stream credit. The limit therefore also feeds back into
+ * work-item flow control, because the worker asks the sidecar for fewer work items while its limit is reduced instead
+ * of buffering them locally.
+ */
+final class AdaptiveConcurrencyLimiter {
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final double LATENCY_SMOOTHING = 0.05;
+
+    private final int minLimit;
+    private final int maxLimit;
+
+    private double limit;
+    private double averageLatencyNanos;
+    private int inFlight;
+
+    AdaptiveConcurrencyLimiter(int minLimit, int initialLimit, int maxLimit) {
+        if (minLimit < 1 || minLimit > maxLimit) {
+            throw new IllegalArgumentException("The minimum limit must be between 1 and the maximum limit.");
+        }
+
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(initialLimit, maxLimit));
+    }
+
+    /**
+     * Claims a share of the limit for a work item if the current limit allows another work item to start.
+     *
+     * @return {@code true} if the work item can start, in which case {@link #release} must be called once it has
+     *         completed, otherwise {@code false}
+     */
+    synchronized boolean tryAcquire() {
+        if (this.inFlight >= this.getLimit()) {
+            return false;
+        }
+
+        this.inFlight++;
+        return true;
+    }
+
+    /**
+     * Returns the share of the limit that a completed work item claimed using {@link #tryAcquire}.
+     */
+    synchronized void release() {
+        this.inFlight--;
+    }
+
+    /**
+     * Records the outcome of a work item that still holds its share of the limit and updates the limit.
+     *
+     * @param latencyNanos how long the work item took to execute
+     * @param succeeded {@code true} if the work item succeeded, otherwise {@code false}
+     */
+    synchronized void recordOutcome(long latencyNanos, boolean succeeded) {
+        boolean isSaturated = this.inFlight * 2 >= this.getLimit();
+        if (!succeeded || (this.averageLatencyNanos > 0 && latencyNanos > this.averageLatencyNanos * LATENCY_TOLERANCE)) {
+            this.limit = Math.max(this.minLimit, this.limit * BACKOFF_RATIO);
+        } else if (isSaturated) {
+            // Only grow the limit when it's actually being used. Otherwise, a quiet period would let the limit
+            // drift up to the maximum.
+            this.limit = Math.min(this.maxLimit, this.limit + 1 / this.limit);
+        }
+
+        if (succeeded) {
+            this.averageLatencyNanos = this.averageLatencyNanos == 0 ?
+                    latencyNanos :
+                    this.averageLatencyNanos + LATENCY_SMOOTHING * (latencyNanos - this.averageLatencyNanos);
+        }
+    }
+
+    synchronized int getLimit() {
+        return (int) this.limit;
+    }
+}
@@ -0,0 +1,51 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Task activity implementation that completes asynchronously.
+ * <p>
+ * An asynchronous activity starts its work, typically a call to an asynchronous HTTP or database client, and returns a
+ * {@link CompletionStage} instead of waiting for the work to finish. The worker thread that started the activity is
+ * free to run other work items right away, and the activity's result is sent to the orchestrator once the stage
+ * completes. This lets a small activity thread pool drive a large number of concurrent activities.
+ * <p>
+ * Asynchronous activities are registered like any other activity, using a {@link TaskActivityFactory} whose
+ * {@code create} method returns an {@code AsyncTaskActivity}. An activity counts towards
+ * {@link DurableTaskGrpcWorkerBuilder#maxConcurrentWorkItems} until its stage completes, so that setting controls how
+ * many asynchronous activities can be in flight. Adaptive concurrency limits also count asynchronous activities until
+ * their stage completes, and so do activity bulkheads. Activity timeouts cancel the stage and fail the activity.
+ */
+@FunctionalInterface
+public interface AsyncTaskActivity extends TaskActivity {
+    /**
+     * Starts the activity logic and returns a stage that completes with a value which will be serialized and returned
+     * to the calling orchestrator.
+     *
+     * @param ctx provides information about the current activity execution, like the activity's name and the input
+     *            data provided to it by the orchestrator.
+     * @return a stage that completes with any serializable value, or completes exceptionally if the activity failed
+     */
+    CompletionStage<?> runAsync(TaskActivityContext ctx);
+
+    /**
+     * Runs the activity and blocks until it completes. The worker calls {@link #runAsync} instead.
+     *
+     * @param ctx provides information about the current activity execution
+     * @return the value that the stage returned by {@link #runAsync} completed with
+     */
+    @Override
+    default Object run(TaskActivityContext ctx) {
+        try {
+            return this.runAsync(ctx).toCompletableFuture().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
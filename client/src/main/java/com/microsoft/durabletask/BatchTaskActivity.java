@@ -0,0 +1,28 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import java.util.List;
+
+/**
+ * Interface for task activity implementations that process multiple invocations of the same activity at once.
+ * <p>
+ * Orchestrators call a batch activity like any other activity, using one of the
+ * {@link TaskOrchestrationContext#callActivity} method overloads. The worker collects invocations of the activity that
+ * arrive close together and passes them to a single call of {@link #run}, which lets the implementation make one
+ * database or HTTP call for many invocations. Batch activities are registered using
+ * {@link DurableTaskGrpcWorkerBuilder#addBatchActivity}.
+ * <p>
+ * Each invocation receives its own result. If {@link #run} throws an exception, all invocations in the batch fail with
+ * that exception.
+ */
+@FunctionalInterface
+public interface BatchTaskActivity {
+    /**
+     * Executes the activity logic for a batch of invocations.
+     *
+     * @param contexts the contexts of the invocations in the batch, which provide each invocation's input
+     * @return one serializable value for each invocation, in the same order as {@code contexts}
+     */
+    List<?> run(List<TaskActivityContext> contexts);
+}
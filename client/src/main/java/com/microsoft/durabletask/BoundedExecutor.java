@@ -0,0 +1,86 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wraps an {@link ExecutorService} and limits the number of tasks that can be running or waiting to run at any
+ * given time. Callers of {@link #execute} block until capacity becomes available, which allows the work-item
+ * reader to apply backpressure instead of buffering an unbounded number of work items in memory.
+ */
+final class BoundedExecutor {
+    private final ExecutorService executor;
+    private final Semaphore permits;
+
+    BoundedExecutor(ExecutorService executor, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The executor capacity must be greater than zero.");
+        }
+
+        this.executor = executor;
+        this.permits = new Semaphore(capacity);
+    }
+
+    /**
+     * Schedules {@code task} for execution, blocking the calling thread until there is room for it.
+     *
+     * @param task the task to run
+     * @throws InterruptedException if the calling thread is interrupted while waiting for capacity
+     */
+    void execute(Runnable task) throws InterruptedException {
+        this.execute(task, PrioritizedTask.DEFAULT_PRIORITY);
+    }
+
+    /**
+     * Schedules {@code task} for execution with the given priority, blocking the calling thread until there is room
+     * for it. The priority only has an effect if the underlying executor queues its tasks in a
+     * {@link java.util.concurrent.PriorityBlockingQueue}.
+     *
+     * @param task the task to run
+     * @param priority the priority of the task; tasks with higher values are started first
+     * @throws InterruptedException if the calling thread is interrupted while waiting for capacity
+     */
+    void execute(Runnable task, int priority) throws InterruptedException {
+        this.permits.acquire();
+        try {
+            this.executor.execute(new PrioritizedTask(() -> {
+                try {
+                    task.run();
+                } finally {
+                    this.permits.release();
+                }
+            }, priority));
+        } catch (RejectedExecutionException e) {
+            this.permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Schedules {@code task} for execution without waiting for capacity. This is only meant for tasks that continue a
+     * work item that was already admitted, like the retry of a failed activity, which the work-item stream's flow
+     * control already accounts for.
+     *
+     * @param task the task to run
+     * @param priority the priority of the task; tasks with higher values are started first
+     */
+    void executeAdmitted(Runnable task, int priority) {
+        this.executor.execute(new PrioritizedTask(task, priority));
+    }
+
+    void shutdown() {
+        this.executor.shutdown();
+    }
+
+    void shutdownNow() {
+        this.executor.shutdownNow();
+    }
+
+    boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return this.executor.awaitTermination(timeout, unit);
+    }
+}
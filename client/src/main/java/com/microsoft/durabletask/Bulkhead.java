@@ -0,0 +1,144 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Caps the number of work items of one kind, like all activities with a given name, that can run at the same time.
+ * <p>
+ * Work items that arrive while the bulkhead is full are parked in memory instead of occupying a thread. A work item
+ * holds its slot until it reports that it has finished, which can be after its task returned, for example for an
+ * {@link AsyncTaskActivity}. If the work item finished before its task returned, the same thread picks up the oldest
+ * parked work item, so a full bulkhead of synchronous work items never needs to submit new tasks to the executor that
+ * it's running on. Otherwise, the parked work item is submitted to the executor once the slot is released.
+ */
+final class Bulkhead {
+    private static final int RUNNING = 0;
+    private static final int FINISHED_INLINE = 1;
+    private static final int RUNNING_ASYNC = 2;
+    private static final int FINISHED = 3;
+
+    private final int maxConcurrency;
+    private final ArrayDeque<Consumer<Runnable>> parkedTasks = new ArrayDeque<>();
+    private int running;
+
+    Bulkhead(int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("The bulkhead concurrency must be greater than zero.");
+        }
+
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Tries to claim a slot for {@code task}. If no slot is free, the task is parked until one becomes available.
+     *
+     * @param task the task to run; it's given the callback that releases its slot, which it must invoke exactly once
+     * @return {@code true} if the caller must start {@code task} now using {@link #newSlotRunner}, or {@code false} if
+     *         the task was parked
+     */
+    synchronized boolean admit(Consumer<Runnable> task) {
+        if (this.running < this.maxConcurrency) {
+            this.running++;
+            return true;
+        }
+
+        this.parkedTasks.addLast(task);
+        return false;
+    }
+
+    /**
+     * Gives back a slot claimed by {@link #admit} whose task never started, for example because the executor rejected
+     * its slot runner. Parked tasks stay parked, since the executor can't run them either.
+     */
+    synchronized void releaseUnstarted() {
+        this.running--;
+    }
+
+    /**
+     * Gets a value indicating whether the number of parked tasks is small enough that the worker can keep asking the
+     * sidecar for more work items while they wait.
+     *
+     * @return {@code true} if there are no more parked tasks than the bulkhead's concurrency, otherwise {@code false}
+     */
+    synchronized boolean hasParkingCapacity() {
+        return this.parkedTasks.size() <= this.maxConcurrency;
+    }
+
+    /**
+     * Creates a task that runs {@code firstTask} in a slot claimed by {@link #admit} and then keeps running parked
+     * tasks in the same slot until there are none left.
+     *
+     * @param firstTask the task that claimed the slot
+     * @param executor runs the parked tasks that take over a slot after it was released asynchronously
+     * @return a task to submit to an executor
+     */
+    Runnable newSlotRunner(Consumer<Runnable> firstTask, Executor executor) {
+        return () -> this.runInSlot(firstTask, executor);
+    }
+
+    private void runInSlot(Consumer<Runnable> firstTask, Executor executor) {
+        Consumer<Runnable> next = firstTask;
+        while (next != null) {
+            AtomicInteger state = new AtomicInteger(RUNNING);
+            Runnable releaseSlot = () -> {
+                if (state.compareAndSet(RUNNING, FINISHED_INLINE)) {
+                    // The loop below picks up the next parked task
+                    return;
+                }
+                if (state.compareAndSet(RUNNING_ASYNC, FINISHED)) {
+                    this.continueAsync(executor);
+                }
+            };
+
+            try {
+                next.accept(releaseSlot);
+            } catch (RuntimeException e) {
+                // A failing task must not strand the tasks that are parked behind it
+                Thread currentThread = Thread.currentThread();
+                currentThread.getUncaughtExceptionHandler().uncaughtException(currentThread, e);
+                releaseSlot.run();
+            }
+
+            if (state.compareAndSet(RUNNING, RUNNING_ASYNC)) {
+                // The task is still running, so its completion takes care of the slot
+                return;
+            }
+            state.set(FINISHED);
+            next = this.releaseOrPoll();
+        }
+    }
+
+    private void continueAsync(Executor executor) {
+        Consumer<Runnable> next = this.releaseOrPoll();
+        if (next == null) {
+            return;
+        }
+
+        try {
+            executor.execute(() -> this.runInSlot(next, executor));
+        } catch (RejectedExecutionException e) {
+            // The worker is shutting down, and the sidecar will redeliver the parked work items
+            synchronized (this) {
+                this.running--;
+            }
+        }
+    }
+
+    private synchronized Consumer<Runnable> releaseOrPoll() {
+        Consumer<Runnable> next = this.parkedTasks.pollFirst();
+        if (next == null) {
+            this.running--;
+        }
+        return next;
+    }
+
+    synchronized int getRunningCount() {
+        return this.running;
+    }
+}
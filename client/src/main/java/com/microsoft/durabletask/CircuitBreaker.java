@@ -0,0 +1,85 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import java.time.Duration;
+
+/**
+ * Circuit breaker that stops calls to a failing dependency for a while and then probes whether it has recovered.
+ * <p>
+ * The breaker starts out closed and lets all calls through. After a number of consecutive failures, it opens and
+ * rejects every call for the configured break duration. After that, it becomes half-open and lets a single probe
+ * call through. The breaker closes again if the probe succeeds and re-opens if the probe fails.
+ * <p>
+ * Calls report their outcome using the permit returned by {@link #tryAcquire}. Outcomes of calls that were started
+ * before the breaker last changed state are ignored, so a slow call that succeeds after the breaker opened can't close
+ * it again.
+ */
+final class CircuitBreaker {
+    static final long REJECTED = -1;
+
+    private enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long breakDurationNanos;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private long generation;
+
+    CircuitBreaker(int failureThreshold, Duration breakDuration) {
+        this.failureThreshold = failureThreshold;
+        this.breakDurationNanos = breakDuration.toNanos();
+    }
+
+    /**
+     * Asks the breaker for permission to make a call.
+     *
+     * @return a permit to pass to {@link #onSuccess} or {@link #onFailure}, or {@link #REJECTED} if the call must not
+     *         be made
+     */
+    synchronized long tryAcquire() {
+        switch (this.state) {
+            case CLOSED:
+                return this.generation;
+            case OPEN:
+                if (System.nanoTime() - this.openedAt < this.breakDurationNanos) {
+                    return REJECTED;
+                }
+                // This call becomes the probe. Everyone else is rejected until it completes.
+                this.transitionTo(State.HALF_OPEN);
+                return this.generation;
+            default:
+                return REJECTED;
+        }
+    }
+
+    synchronized void onSuccess(long permit) {
+        if (permit != this.generation) {
+            return;
+        }
+
+        if (this.state == State.HALF_OPEN) {
+            this.transitionTo(State.CLOSED);
+        }
+        this.consecutiveFailures = 0;
+    }
+
+    synchronized void onFailure(long permit) {
+        if (permit != this.generation) {
+            return;
+        }
+
+        if (this.state == State.HALF_OPEN || ++this.consecutiveFailures >= this.failureThreshold) {
+            this.openedAt = System.nanoTime();
+            this.transitionTo(State.OPEN);
+        }
+    }
+
+    private void transitionTo(State newState) {
+        this.state = newState;
+        this.consecutiveFailures = 0;
+        this.generation++;
+    }
+}
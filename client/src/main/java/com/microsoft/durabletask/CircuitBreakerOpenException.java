@@ -0,0 +1,20 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+/**
+ * Exception that is used to fail an activity without running it because the activity's circuit breaker is open.
+ * <p>
+ * A circuit breaker opens after an activity has failed several times in a row, which usually means that a dependency
+ * of the activity is unavailable. Orchestrations observe this as a {@link TaskFailedException} whose failure details
+ * can be checked using {@code getErrorDetails().isCausedBy(CircuitBreakerOpenException.class)}. The activity can be
+ * retried using a {@link RetryPolicy} with a retry interval that's longer than the circuit breaker's break duration.
+ */
+public final class CircuitBreakerOpenException extends RuntimeException {
+    // Only intended to be created within this package
+    CircuitBreakerOpenException(String activityName) {
+        super(String.format(
+                "The activity '%s' was not executed because its circuit breaker is open after repeated failures.",
+                activityName));
+    }
+}
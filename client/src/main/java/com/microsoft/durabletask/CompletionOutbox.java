@@ -0,0 +1,281 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Memory-mapped log of work-item completions that haven't been acknowledged by the sidecar yet.
+ * <p>
+ * Every completion is written to the outbox before it's sent and is marked as acknowledged once the sidecar accepts
+ * it. Completions that couldn't be delivered, for example because the connection dropped, stay in the outbox and are
+ * sent again when the worker reconnects, including after the worker process restarts. This avoids re-running
+ * expensive activities whose results were already computed.
+ * <p>
+ * The file starts with a header, followed by two regions of equal size. Only one region is active at a time. It holds
+ * records of the form {@code [length][state][kind][payload]}, where a length of zero marks the end of the log. Once the
+ * active region is full, the records that are still pending are copied to the start of the other region, which then
+ * becomes the active one. The header only switches to the other region after the copy is complete, so the log stays
+ * readable if the worker crashes while compacting. The log is also reset to the start of its region whenever no
+ * unacknowledged records remain. Writes go to the OS page cache, so records survive a crash of the worker process but
+ * not necessarily a crash of the machine.
+ * <p>
+ * Records are identified by IDs that are assigned when they're written or loaded, because compaction moves records
+ * to a different position in the file.
+ */
+final class CompletionOutbox implements AutoCloseable {
+    static final byte KIND_ACTIVITY = 1;
+    static final byte KIND_ORCHESTRATOR = 2;
+
+    private static final int MAGIC = 0x4454_4F42; // "DTOB"
+    private static final int VERSION = 2;
+    private static final int ACTIVE_REGION_OFFSET = 8;
+    private static final int HEADER_SIZE = 12;
+    private static final int RECORD_HEADER_SIZE = 6;
+    private static final byte STATE_PENDING = 1;
+    private static final byte STATE_ACKNOWLEDGED = 2;
+
+    private final FileChannel fileChannel;
+    private final MappedByteBuffer buffer;
+    private final int regionSize;
+
+    // Positions of the records that haven't been acknowledged by record ID, in the order they were written, and the
+    // IDs of the records that are currently being sent
+    private final LinkedHashMap<Integer, Integer> pendingRecords = new LinkedHashMap<>();
+    private final Set<Integer> sendingRecords = new HashSet<>();
+    private int nextRecordId;
+    private int activeRegion;
+    private int writePosition;
+
+    private CompletionOutbox(FileChannel fileChannel, MappedByteBuffer buffer) {
+        this.fileChannel = fileChannel;
+        this.buffer = buffer;
+        this.regionSize = (buffer.capacity() - HEADER_SIZE) / 2;
+    }
+
+    /**
+     * Opens the outbox file, creating it if it doesn't exist, and loads any records that were left unacknowledged by
+     * a previous run of the worker.
+     *
+     * @param file the path of the outbox file
+     * @param capacity the size of the outbox file in bytes; half of it can hold unacknowledged completions
+     * @return the opened outbox
+     * @throws IOException if the file can't be opened or isn't an outbox file
+     */
+    static CompletionOutbox open(Path file, int capacity) throws IOException {
+        FileChannel fileChannel = FileChannel.open(
+                file,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            boolean isNew = fileChannel.size() == 0;
+            long mappedSize = Math.max(capacity, fileChannel.size());
+            MappedByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, mappedSize);
+            CompletionOutbox outbox = new CompletionOutbox(fileChannel, buffer);
+            if (isNew) {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                outbox.setActiveRegion(0);
+                outbox.reset();
+            } else {
+                int activeRegion = buffer.getInt(ACTIVE_REGION_OFFSET);
+                if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || (activeRegion & ~1) != 0) {
+                    throw new IOException(String.format("The file '%s' isn't a completion outbox file.", file));
+                }
+                outbox.activeRegion = activeRegion;
+                outbox.load();
+            }
+            return outbox;
+        } catch (IOException | RuntimeException e) {
+            fileChannel.close();
+            throw e;
+        }
+    }
+
+    private void load() {
+        int position = this.getRegionStart(this.activeRegion);
+        int regionEnd = position + this.regionSize;
+        while (position + RECORD_HEADER_SIZE <= regionEnd) {
+            int length = this.buffer.getInt(position);
+            if (length <= 0 || position + RECORD_HEADER_SIZE + length > regionEnd) {
+                break;
+            }
+            if (this.buffer.get(position + 4) == STATE_PENDING) {
+                this.pendingRecords.put(this.nextRecordId(), position);
+            }
+            position += RECORD_HEADER_SIZE + length;
+        }
+
+        this.writePosition = position;
+        if (this.pendingRecords.isEmpty()) {
+            this.reset();
+        }
+    }
+
+    private void reset() {
+        this.writePosition = this.getRegionStart(this.activeRegion);
+        this.buffer.putInt(this.writePosition, 0);
+    }
+
+    private int getRegionStart(int region) {
+        return HEADER_SIZE + region * this.regionSize;
+    }
+
+    private void setActiveRegion(int region) {
+        this.activeRegion = region;
+        this.buffer.putInt(ACTIVE_REGION_OFFSET, region);
+    }
+
+    private int nextRecordId() {
+        int recordId = this.nextRecordId;
+        this.nextRecordId = (this.nextRecordId + 1) & Integer.MAX_VALUE;
+        return recordId;
+    }
+
+    /**
+     * Writes a completion to the outbox and marks it as being sent.
+     *
+     * @param kind {@link #KIND_ACTIVITY} or {@link #KIND_ORCHESTRATOR}
+     * @param payload the serialized completion message
+     * @return the ID of the record, or -1 if the outbox is full
+     */
+    synchronized int append(byte kind, byte[] payload) {
+        if (payload.length == 0) {
+            return -1;
+        }
+
+        // Leave room for the end-of-log marker
+        int recordSize = RECORD_HEADER_SIZE + payload.length;
+        if (!this.hasRoomFor(recordSize)) {
+            this.compact();
+            if (!this.hasRoomFor(recordSize)) {
+                return -1;
+            }
+        }
+
+        int position = this.writePosition;
+        int nextPosition = position + recordSize;
+
+        // Write the end marker and the record body before the length, which is what makes the record visible
+        this.buffer.putInt(nextPosition, 0);
+        this.buffer.put(position + 4, STATE_PENDING);
+        this.buffer.put(position + 5, kind);
+        ByteBuffer body = this.buffer.duplicate();
+        body.position(position + RECORD_HEADER_SIZE);
+        body.put(payload);
+        this.buffer.putInt(position, payload.length);
+
+        this.writePosition = nextPosition;
+        int recordId = this.nextRecordId();
+        this.pendingRecords.put(recordId, position);
+        this.sendingRecords.add(recordId);
+        return recordId;
+    }
+
+    private boolean hasRoomFor(int recordSize) {
+        return this.writePosition + recordSize + 4 <= this.getRegionStart(this.activeRegion) + this.regionSize;
+    }
+
+    /**
+     * Copies the pending records to the start of the inactive region and makes it the active region, which reclaims
+     * the space of all acknowledged records.
+     */
+    private void compact() {
+        int targetRegion = 1 - this.activeRegion;
+        int position = this.getRegionStart(targetRegion);
+        for (Map.Entry<Integer, Integer> pendingRecord : this.pendingRecords.entrySet()) {
+            int sourcePosition = pendingRecord.getValue();
+            int recordSize = RECORD_HEADER_SIZE + this.buffer.getInt(sourcePosition);
+            ByteBuffer source = this.buffer.duplicate();
+            source.position(sourcePosition).limit(sourcePosition + recordSize);
+            ByteBuffer target = this.buffer.duplicate();
+            target.position(position);
+            target.put(source);
+            pendingRecord.setValue(position);
+            position += recordSize;
+        }
+
+        // The pending records fit into the active region together with its end marker, so they also fit here
+        this.buffer.putInt(position, 0);
+        this.setActiveRegion(targetRegion);
+        this.writePosition = position;
+    }
+
+    /**
+     * Marks a record as delivered so that it's never sent again.
+     */
+    synchronized void acknowledge(int recordId) {
+        Integer position = this.pendingRecords.remove(recordId);
+        this.sendingRecords.remove(recordId);
+        if (position == null) {
+            return;
+        }
+
+        this.buffer.put(position + 4, STATE_ACKNOWLEDGED);
+        if (this.pendingRecords.isEmpty()) {
+            this.reset();
+        }
+    }
+
+    /**
+     * Marks a record as no longer being sent. The record stays pending and is returned by the next call to
+     * {@link #takeUnsentRecords}.
+     */
+    synchronized void release(int recordId) {
+        this.sendingRecords.remove(recordId);
+    }
+
+    /**
+     * Gets all pending records that aren't currently being sent, in the order in which they were written, and marks
+     * them as being sent.
+     */
+    synchronized List<Record> takeUnsentRecords() {
+        List<Record> records = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> pendingRecord : this.pendingRecords.entrySet()) {
+            int recordId = pendingRecord.getKey();
+            if (this.sendingRecords.add(recordId)) {
+                int position = pendingRecord.getValue();
+                byte[] payload = new byte[this.buffer.getInt(position)];
+                ByteBuffer body = this.buffer.duplicate();
+                body.position(position + RECORD_HEADER_SIZE);
+                body.get(payload);
+                records.add(new Record(recordId, this.buffer.get(position + 5), payload));
+            }
+        }
+        return records;
+    }
+
+    synchronized boolean hasUnsentRecords() {
+        return this.sendingRecords.size() < this.pendingRecords.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.buffer.force();
+        this.fileChannel.close();
+    }
+
+    static final class Record {
+        final int id;
+        final byte kind;
+        final byte[] payload;
+
+        Record(int id, byte kind, byte[] payload) {
+            this.id = id;
+            this.kind = kind;
+            this.payload = payload;
+        }
+    }
+}
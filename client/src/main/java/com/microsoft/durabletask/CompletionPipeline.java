@@ -0,0 +1,259 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import com.microsoft.durabletask.implementation.protobuf.OrchestratorService.*;
+import com.microsoft.durabletask.implementation.protobuf.TaskHubSidecarServiceGrpc.TaskHubSidecarServiceStub;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+
+import java.time.Duration;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sends work-item completions to the sidecar using the asynchronous gRPC stub.
+ * <p>
+ * Callers don't wait for the sidecar to acknowledge a completion, so a work-item thread can move on to the next work
+ * item as soon as it has handed off its result. The number of completion RPCs that can be in flight at the same time
+ * is bounded, and completions that fail with a transient error are retried with exponential backoff.
+ * <p>
+ * If a {@link CompletionOutbox} is configured, every completion is written to it before it's sent. Completions that
+ * still can't be delivered after all retries stay in the outbox and are sent again by {@link #resendFromOutbox}.
+ */
+final class CompletionPipeline {
+    private static final int MAX_ATTEMPTS = 5;
+    private static final Duration FIRST_RETRY_DELAY = Duration.ofMillis(200);
+    private static final Duration MAX_RETRY_DELAY = Duration.ofSeconds(5);
+
+    private final ScheduledExecutorService retryScheduler;
+    private final Semaphore outstandingCompletions;
+    private final int maxOutstandingCompletions;
+    private final CompletionOutbox outbox;
+    private final Logger logger;
+
+    CompletionPipeline(
+            int maxOutstandingCompletions,
+            ScheduledExecutorService retryScheduler,
+            Logger logger) {
+        this(maxOutstandingCompletions, retryScheduler, null, logger);
+    }
+
+    /**
+     * @param outbox the outbox that keeps completions until they're acknowledged, or {@code null} to not keep them
+     */
+    CompletionPipeline(
+            int maxOutstandingCompletions,
+            ScheduledExecutorService retryScheduler,
+            CompletionOutbox outbox,
+            Logger logger) {
+        this.outbox = outbox;
+        this.maxOutstandingCompletions = maxOutstandingCompletions;
+        this.outstandingCompletions = new Semaphore(maxOutstandingCompletions);
+        this.retryScheduler = retryScheduler;
+        this.logger = logger;
+    }
+
+    /**
+     * Sends an activity completion to the sidecar, blocking only if too many completions are already outstanding.
+     *
+     * @param sidecarClient the client of the connection to send the completion on
+     * @param response the activity result to send
+     * @throws InterruptedException if the calling thread is interrupted while waiting for an outstanding completion
+     */
+    void completeActivityTask(
+            TaskHubSidecarServiceStub sidecarClient,
+            ActivityResponse response) throws InterruptedException {
+        String description = String.format(
+                "activity #%d of orchestration '%s'",
+                response.getTaskId(),
+                response.getInstanceId());
+        this.outstandingCompletions.acquire();
+        int outboxRecordId = this.writeToOutbox(CompletionOutbox.KIND_ACTIVITY, response.toByteArray(), description);
+        this.send(description, response, sidecarClient::completeActivityTask, 1, outboxRecordId);
+    }
+
+    /**
+     * Sends an orchestrator completion to the sidecar, blocking only if too many completions are already outstanding.
+     *
+     * @param sidecarClient the client of the connection to send the completion on
+     * @param response the orchestrator actions to send
+     * @throws InterruptedException if the calling thread is interrupted while waiting for an outstanding completion
+     */
+    void completeOrchestratorTask(
+            TaskHubSidecarServiceStub sidecarClient,
+            OrchestratorResponse response) throws InterruptedException {
+        String description = String.format("orchestration '%s'", response.getInstanceId());
+        this.outstandingCompletions.acquire();
+        int outboxRecordId = this.writeToOutbox(CompletionOutbox.KIND_ORCHESTRATOR, response.toByteArray(), description);
+        this.send(description, response, sidecarClient::completeOrchestratorTask, 1, outboxRecordId);
+    }
+
+    private int writeToOutbox(byte kind, byte[] payload, String description) {
+        if (this.outbox == null) {
+            return -1;
+        }
+
+        int recordId = this.outbox.append(kind, payload);
+        if (recordId < 0) {
+            this.logger.log(Level.WARNING, String.format(
+                    "The completion outbox is full. The result of %s won't be kept if it can't be delivered.",
+                    description));
+        }
+        return recordId;
+    }
+
+    /**
+     * Sends all completions from the outbox that were not delivered earlier and aren't currently being sent. This is
+     * called whenever the worker (re)connects to the sidecar.
+     *
+     * @param sidecarClient the client of the connection to send the completions on
+     * @throws InterruptedException if the calling thread is interrupted while waiting for an outstanding completion
+     */
+    void resendFromOutbox(TaskHubSidecarServiceStub sidecarClient) throws InterruptedException {
+        if (this.outbox == null || !this.outbox.hasUnsentRecords()) {
+            return;
+        }
+
+        for (CompletionOutbox.Record record : this.outbox.takeUnsentRecords()) {
+            try {
+                if (record.kind == CompletionOutbox.KIND_ACTIVITY) {
+                    ActivityResponse response = ActivityResponse.parseFrom(record.payload);
+                    String description = String.format(
+                            "activity #%d of orchestration '%s'",
+                            response.getTaskId(),
+                            response.getInstanceId());
+                    this.outstandingCompletions.acquire();
+                    this.send(description, response, sidecarClient::completeActivityTask, 1, record.id);
+                } else {
+                    OrchestratorResponse response = OrchestratorResponse.parseFrom(record.payload);
+                    String description = String.format("orchestration '%s'", response.getInstanceId());
+                    this.outstandingCompletions.acquire();
+                    this.send(description, response, sidecarClient::completeOrchestratorTask, 1, record.id);
+                }
+            } catch (InvalidProtocolBufferException e) {
+                this.logger.log(Level.WARNING, "Discarding a corrupt record from the completion outbox.", e);
+                this.outbox.acknowledge(record.id);
+            } catch (InterruptedException e) {
+                this.outbox.release(record.id);
+                throw e;
+            }
+        }
+    }
+
+    private <T> void send(
+            String description,
+            T request,
+            BiConsumer<T, StreamObserver<CompleteTaskResponse>> rpc,
+            int attempt,
+            int outboxRecordId) {
+        StreamObserver<CompleteTaskResponse> responseObserver = new StreamObserver<CompleteTaskResponse>() {
+            @Override
+            public void onNext(CompleteTaskResponse value) {
+                // Completion responses don't carry any data
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                Status status = Status.fromThrowable(t);
+                if (isTransient(status) && attempt < MAX_ATTEMPTS) {
+                    Duration delay = getRetryDelay(attempt);
+                    logger.log(Level.INFO, String.format(
+                            "Failed to deliver the result of %s (%s). Retrying in %d ms.",
+                            description,
+                            status.getCode(),
+                            delay.toMillis()));
+                    try {
+                        retryScheduler.schedule(
+                                () -> send(description, request, rpc, attempt + 1, outboxRecordId),
+                                delay.toMillis(),
+                                TimeUnit.MILLISECONDS);
+                        return;
+                    } catch (RuntimeException e) {
+                        // The scheduler was shut down because the worker is closing
+                    }
+                }
+
+                if (outboxRecordId >= 0 && isTransient(status)) {
+                    logger.log(
+                            Level.WARNING,
+                            String.format(
+                                    "Failed to deliver the result of %s after %d attempt(s). It will be sent again from the completion outbox after reconnecting.",
+                                    description,
+                                    attempt),
+                            t);
+                    outbox.release(outboxRecordId);
+                } else {
+                    logger.log(
+                            Level.WARNING,
+                            String.format(
+                                    "Failed to deliver the result of %s after %d attempt(s). The sidecar will redeliver the work item.",
+                                    description,
+                                    attempt),
+                            t);
+                    if (outboxRecordId >= 0) {
+                        // The sidecar rejected the completion, so sending it again won't help
+                        outbox.acknowledge(outboxRecordId);
+                    }
+                }
+                outstandingCompletions.release();
+            }
+
+            @Override
+            public void onCompleted() {
+                if (outboxRecordId >= 0) {
+                    outbox.acknowledge(outboxRecordId);
+                }
+                outstandingCompletions.release();
+            }
+        };
+
+        try {
+            rpc.accept(request, responseObserver);
+        } catch (RuntimeException e) {
+            responseObserver.onError(e);
+        }
+    }
+
+    private static boolean isTransient(Status status) {
+        switch (status.getCode()) {
+            case UNAVAILABLE:
+            case DEADLINE_EXCEEDED:
+            case RESOURCE_EXHAUSTED:
+            case ABORTED:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static Duration getRetryDelay(int attempt) {
+        long delayInMillis = FIRST_RETRY_DELAY.toMillis() << Math.min(attempt - 1, 16);
+        return Duration.ofMillis(Math.min(delayInMillis, MAX_RETRY_DELAY.toMillis()));
+    }
+
+    /**
+     * Waits for all outstanding completions to either be acknowledged by the sidecar or given up on.
+     *
+     * @param timeout the maximum amount of time to wait
+     * @return {@code true} if there are no more outstanding completions, otherwise {@code false}
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    boolean awaitOutstandingCompletions(Duration timeout) throws InterruptedException {
+        if (this.outstandingCompletions.tryAcquire(
+                this.maxOutstandingCompletions,
+                timeout.toNanos(),
+                TimeUnit.NANOSECONDS)) {
+            this.outstandingCompletions.release(this.maxOutstandingCompletions);
+            return true;
+        }
+
+        return false;
+    }
+}
@@ -11,9 +11,31 @@ import com.microsoft.durabletask.implementation.protobuf.TaskHubSidecarServiceGr
 
 import io.grpc.*;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -24,25 +46,89 @@ public final class DurableTaskGrpcWorker implements AutoCloseable {
     private static final int DEFAULT_PORT = 4001;
     private static final Logger logger = Logger.getLogger(DurableTaskGrpcWorker.class.getPackage().getName());
     private static final Duration DEFAULT_MAXIMUM_TIMER_INTERVAL = Duration.ofDays(3);
+    private static final int ORCHESTRATION_LANE_CAPACITY = 16;
+    private static final int DEFAULT_VIRTUAL_THREAD_ACTIVITY_CONCURRENCY = 1000;
+    private static final int MAX_PLATFORM_THREAD_SESSIONS = 100;
+    private static final int DEFAULT_MAX_OUTSTANDING_COMPLETIONS = 100;
+    private static final int DEFAULT_COMPLETION_OUTBOX_CAPACITY = 64 * 1024 * 1024;
+    private static final Duration DEFAULT_SHUTDOWN_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration MEMORY_PRESSURE_CHECK_INTERVAL = Duration.ofMillis(100);
 
     private final HashMap<String, TaskOrchestrationFactory> orchestrationFactories = new HashMap<>();
     private final HashMap<String, TaskActivityFactory> activityFactories = new HashMap<>();
+    private final HashMap<String, InstanceProvider<TaskOrchestration>> orchestrationInstances = new HashMap<>();
+    private final HashMap<String, InstanceProvider<TaskActivity>> activityInstances = new HashMap<>();
+    private final HashMap<String, Integer> orchestrationPriorities = new HashMap<>();
+    private final HashMap<String, Integer> activityPriorities = new HashMap<>();
+    private final HashMap<String, Bulkhead> activityBulkheads = new HashMap<>();
+    private final HashMap<String, TokenBucket> activityRateLimits = new HashMap<>();
+    private final HashMap<String, ExpiringCache<String, ActivityResponse>> activityMemoizations = new HashMap<>();
+    private final HashMap<String, ActivityBatcher> activityBatchers = new HashMap<>();
+    private final WorkerMetrics metrics = new WorkerMetrics();
 
-    private final ManagedChannel managedSidecarChannel;
+    private final List<ManagedChannel> managedSidecarChannels = new ArrayList<>();
     private final DataConverter dataConverter;
     private final Duration maximumTimerInterval;
+    private final BoundedExecutor activityExecutor;
+    private final OrchestrationLanes orchestrationExecutor;
+    private final WorkItemBudget activityBudget;
+    private final WorkItemBudget orchestrationBudget;
+    private final ExecutorService workItemDispatcher;
+    private final AdaptiveConcurrencyLimiter activityLimiter;
+    private final AdaptiveConcurrencyLimiter orchestrationLimiter;
+    private final ScheduledExecutorService completionRetryScheduler;
+    private final ScheduledExecutorService activityWatchdog;
+    private final ScheduledExecutorService rateLimitScheduler;
+    private final ScheduledExecutorService activityBatchScheduler;
+    private final ScheduledExecutorService activityRetryScheduler;
+    private final MemoryAdmissionController memoryAdmissionController;
+    private final CompletionOutbox completionOutbox;
+    private final ExpiringCache<String, ActivityResponse> activityResultCache;
+    private final CompletionPipeline completionPipeline;
 
-    private final TaskHubSidecarServiceBlockingStub sidecarClient;
+    private final TaskOrchestrationExecutor taskOrchestrationExecutor;
+    private final TaskActivityExecutor taskActivityExecutor;
+    private final int maxWorkItemsPerStream;
+    private final Duration shutdownTimeout;
+    private final Set<WorkItemStream> activeStreams = ConcurrentHashMap.newKeySet();
+    private final Set<CompletableFuture<Boolean>> pendingAsyncActivities = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean isShuttingDown = new AtomicBoolean();
+    private final ReconnectPolicy reconnectPolicy;
+    private final Set<CountDownLatch> reconnectWaits = ConcurrentHashMap.newKeySet();
+
+    // One client per work-item stream. Streams may share the same underlying channel.
+    private final List<TaskHubSidecarServiceStub> streamClients = new ArrayList<>();
 
     DurableTaskGrpcWorker(DurableTaskGrpcWorkerBuilder builder) {
         this.orchestrationFactories.putAll(builder.orchestrationFactories);
         this.activityFactories.putAll(builder.activityFactories);
+        this.orchestrationFactories.forEach((name, factory) -> this.orchestrationInstances.put(
+                name,
+                new InstanceProvider<>(
+                        name,
+                        factory::create,
+                        builder.orchestrationLifecycles.getOrDefault(name, InstanceLifecycle.perCall()))));
+        this.activityFactories.forEach((name, factory) -> this.activityInstances.put(
+                name,
+                new InstanceProvider<>(
+                        name,
+                        factory::create,
+                        builder.activityLifecycles.getOrDefault(name, InstanceLifecycle.perCall()))));
+        this.orchestrationPriorities.putAll(builder.orchestrationPriorities);
+        this.activityPriorities.putAll(builder.activityPriorities);
+        builder.activityBulkheads.forEach((name, maxConcurrency) ->
+                this.activityBulkheads.put(name, new Bulkhead(maxConcurrency)));
+        builder.activityRateLimits.forEach((name, rateLimit) ->
+                this.activityRateLimits.put(name, new TokenBucket(rateLimit.permitsPerSecond, rateLimit.burst)));
+        builder.activityMemoizations.forEach((name, memoization) ->
+                this.activityMemoizations.put(name, new ExpiringCache<>(memoization.maxEntries, memoization.timeToLive)));
 
-        Channel sidecarGrpcChannel;
+        int workItemStreamCount = builder.workItemStreamCount > 0 ? builder.workItemStreamCount : 1;
         if (builder.channel != null) {
             // The caller is responsible for managing the channel lifetime
-            this.managedSidecarChannel = null;
-            sidecarGrpcChannel = builder.channel;
+            for (int i = 0; i < workItemStreamCount; i++) {
+                this.streamClients.add(TaskHubSidecarServiceGrpc.newStub(builder.channel));
+            }
         } else {
             // Construct our own channel using localhost + a port number
             int port = DEFAULT_PORT;
@@ -50,17 +136,255 @@ public final class DurableTaskGrpcWorker implements AutoCloseable {
                 port = builder.port;
             }
 
-            // Need to keep track of this channel so we can dispose it on close()
-            this.managedSidecarChannel = ManagedChannelBuilder
-                    .forAddress("localhost", port)
-                    .usePlaintext()
-                    .build();
-            sidecarGrpcChannel = this.managedSidecarChannel;
+            // Need to keep track of these channels so we can dispose them on close()
+            int channelCount = builder.useSeparateStreamChannels ? workItemStreamCount : 1;
+            for (int i = 0; i < channelCount; i++) {
+                this.managedSidecarChannels.add(ManagedChannelBuilder
+                        .forAddress("localhost", port)
+                        .usePlaintext()
+                        .build());
+            }
+
+            for (int i = 0; i < workItemStreamCount; i++) {
+                ManagedChannel channel = this.managedSidecarChannels.get(i % channelCount);
+                this.streamClients.add(TaskHubSidecarServiceGrpc.newStub(channel));
+            }
         }
 
-        this.sidecarClient = TaskHubSidecarServiceGrpc.newBlockingStub(sidecarGrpcChannel);
+        this.completionRetryScheduler = Executors.newSingleThreadScheduledExecutor(
+                newThreadFactory("durabletask-completion-"));
+        if (builder.completionOutboxFile != null) {
+            try {
+                this.completionOutbox = CompletionOutbox.open(
+                        builder.completionOutboxFile,
+                        builder.completionOutboxCapacity > 0 ?
+                                builder.completionOutboxCapacity :
+                                DEFAULT_COMPLETION_OUTBOX_CAPACITY);
+            } catch (IOException e) {
+                throw new IllegalStateException(
+                        String.format("Failed to open the completion outbox '%s'.", builder.completionOutboxFile),
+                        e);
+            }
+        } else {
+            this.completionOutbox = null;
+        }
+        this.completionPipeline = new CompletionPipeline(
+                builder.maxOutstandingCompletions > 0 ?
+                        builder.maxOutstandingCompletions :
+                        DEFAULT_MAX_OUTSTANDING_COMPLETIONS,
+                this.completionRetryScheduler,
+                this.completionOutbox,
+                logger);
+        if (builder.maxInFlightWorkItemBytes > 0 || builder.maxHeapUsage > 0) {
+            this.memoryAdmissionController = new MemoryAdmissionController(
+                    builder.maxInFlightWorkItemBytes > 0 ? builder.maxInFlightWorkItemBytes : Long.MAX_VALUE,
+                    builder.maxHeapUsage > 0 ? builder.maxHeapUsage : Double.MAX_VALUE,
+                    logger);
+
+            // Heap usage can drop without any work item finishing, for example after a garbage collection
+            this.completionRetryScheduler.scheduleWithFixedDelay(
+                    this.memoryAdmissionController::recheck,
+                    MEMORY_PRESSURE_CHECK_INTERVAL.toMillis(),
+                    MEMORY_PRESSURE_CHECK_INTERVAL.toMillis(),
+                    TimeUnit.MILLISECONDS);
+        } else {
+            this.memoryAdmissionController = null;
+        }
         this.dataConverter = builder.dataConverter != null ? builder.dataConverter : new JacksonDataConverter();
         this.maximumTimerInterval = builder.maximumTimerInterval != null ? builder.maximumTimerInterval : DEFAULT_MAXIMUM_TIMER_INTERVAL;
+        this.activityResultCache = builder.activityDeduplicationMaxEntries > 0 ?
+                new ExpiringCache<>(builder.activityDeduplicationMaxEntries, builder.activityDeduplicationTimeToLive) :
+                null;
+        this.shutdownTimeout = builder.shutdownTimeout != null ? builder.shutdownTimeout : DEFAULT_SHUTDOWN_TIMEOUT;
+        this.reconnectPolicy = builder.reconnectPolicy != null ? builder.reconnectPolicy : new ReconnectPolicy();
+
+        int activityMaxConcurrency = builder.activityMaxConcurrency;
+        if (activityMaxConcurrency <= 0) {
+            activityMaxConcurrency = builder.useVirtualThreads ?
+                    DEFAULT_VIRTUAL_THREAD_ACTIVITY_CONCURRENCY :
+                    Runtime.getRuntime().availableProcessors();
+        }
+        int activityQueueCapacity = builder.activityQueueCapacity >= 0 ?
+                builder.activityQueueCapacity :
+                activityMaxConcurrency;
+        this.activityExecutor = new BoundedExecutor(
+                newActivityThreadPool(builder, activityMaxConcurrency),
+                activityMaxConcurrency + activityQueueCapacity);
+
+        int orchestrationConcurrency = builder.orchestrationConcurrency > 0 ?
+                builder.orchestrationConcurrency :
+                Runtime.getRuntime().availableProcessors();
+        StripedExecutor standardOrchestrationLanes = new StripedExecutor(
+                orchestrationConcurrency,
+                ORCHESTRATION_LANE_CAPACITY,
+                newOrchestrationThreadFactory(builder, "durabletask-orchestration-"));
+        StripedExecutor largeOrchestrationLanes = null;
+        int largeOrchestrationConcurrency = 0;
+        if (builder.largeOrchestrationThreshold > 0) {
+            largeOrchestrationConcurrency = builder.largeOrchestrationConcurrency > 0 ?
+                    builder.largeOrchestrationConcurrency :
+                    Math.max(1, orchestrationConcurrency / 4);
+            largeOrchestrationLanes = new StripedExecutor(
+                    largeOrchestrationConcurrency,
+                    ORCHESTRATION_LANE_CAPACITY,
+                    newOrchestrationThreadFactory(builder, "durabletask-large-orchestration-"));
+        }
+        this.orchestrationExecutor = new OrchestrationLanes(
+                standardOrchestrationLanes,
+                largeOrchestrationLanes,
+                builder.largeOrchestrationThreshold);
+
+        // With adaptive concurrency, the configured concurrency values become upper bounds and the
+        // effective limits start halfway and are adjusted based on work-item latency and failures.
+        if (builder.useAdaptiveConcurrency) {
+            this.activityLimiter = new AdaptiveConcurrencyLimiter(
+                    1,
+                    Math.max(1, activityMaxConcurrency / 2),
+                    activityMaxConcurrency);
+            this.orchestrationLimiter = new AdaptiveConcurrencyLimiter(
+                    1,
+                    Math.max(1, orchestrationConcurrency / 2),
+                    orchestrationConcurrency);
+        } else {
+            this.activityLimiter = null;
+            this.orchestrationLimiter = null;
+        }
+
+        // Activities and orchestrations each get their own share of the work items, so that a flood of one kind
+        // can't use up the flow-control window of the other. By default, only ask the sidecar for as many work items
+        // as the executors can take without blocking. The work items are shared evenly between the streams.
+        int activityWorkItems = activityMaxConcurrency + activityQueueCapacity;
+        int orchestrationWorkItems = orchestrationConcurrency + largeOrchestrationConcurrency;
+        int maxConcurrentWorkItems = activityWorkItems + orchestrationWorkItems;
+        if (builder.maxConcurrentWorkItems > 0) {
+            // A smaller window is split between the two kinds in the same proportion
+            if (builder.maxConcurrentWorkItems < maxConcurrentWorkItems) {
+                activityWorkItems = (int) Math.max(
+                        1,
+                        (long) builder.maxConcurrentWorkItems * activityWorkItems / maxConcurrentWorkItems);
+                orchestrationWorkItems = Math.max(1, builder.maxConcurrentWorkItems - activityWorkItems);
+            }
+            maxConcurrentWorkItems = builder.maxConcurrentWorkItems;
+        }
+
+        // Queued work items are dispatched once another work item completes. Dispatching blocks until the executor
+        // has room, so it can't happen on the executor's own threads, which might be waiting for themselves.
+        this.workItemDispatcher = Executors.newSingleThreadExecutor(
+                newThreadFactory("durabletask-work-item-dispatcher-"));
+        this.activityBudget = new WorkItemBudget(
+                activityWorkItems,
+                activityWorkItems,
+                this.activityLimiter,
+                this.workItemDispatcher);
+        this.orchestrationBudget = new WorkItemBudget(
+                orchestrationWorkItems,
+                orchestrationWorkItems,
+                this.orchestrationLimiter,
+                this.workItemDispatcher);
+        this.maxWorkItemsPerStream = Math.max(1, maxConcurrentWorkItems / workItemStreamCount);
+
+        // Each parked orchestrator blocks its thread, which is only cheap if it's a virtual thread
+        int maxSessions = builder.extendedSessionMaxSessions;
+        if (maxSessions > MAX_PLATFORM_THREAD_SESSIONS && !VirtualThreads.isSupported()) {
+            logger.log(
+                    Level.WARNING,
+                    "Virtual threads aren't available, so extended sessions are limited to {0} instead of {1}.",
+                    new Object[] { MAX_PLATFORM_THREAD_SESSIONS, maxSessions });
+            maxSessions = MAX_PLATFORM_THREAD_SESSIONS;
+        }
+        this.taskOrchestrationExecutor = new TaskOrchestrationExecutor(
+                this.orchestrationInstances,
+                this.dataConverter,
+                this.maximumTimerInterval,
+                logger,
+                maxSessions,
+                builder.extendedSessionIdleTimeout,
+                newSessionThreadFactory());
+        if (builder.extendedSessionMaxSessions > 0) {
+            // Idle sessions would otherwise keep their threads until the cache is next used
+            long sessionSweepIntervalMillis = Math.max(1, builder.extendedSessionIdleTimeout.toMillis() / 2);
+            this.completionRetryScheduler.scheduleWithFixedDelay(
+                    this.taskOrchestrationExecutor::evictIdleSessions,
+                    sessionSweepIntervalMillis,
+                    sessionSweepIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+
+        // The watchdog thread is only needed if activities can time out
+        boolean hasActivityTimeouts = builder.defaultActivityTimeout != null || !builder.activityTimeouts.isEmpty();
+        this.activityWatchdog = hasActivityTimeouts ?
+                Executors.newSingleThreadScheduledExecutor(newThreadFactory("durabletask-activity-watchdog-")) :
+                null;
+        this.rateLimitScheduler = !this.activityRateLimits.isEmpty() ?
+                Executors.newSingleThreadScheduledExecutor(newThreadFactory("durabletask-rate-limiter-")) :
+                null;
+        this.activityBatchScheduler = !builder.batchActivities.isEmpty() ?
+                Executors.newSingleThreadScheduledExecutor(newThreadFactory("durabletask-activity-batcher-")) :
+                null;
+        builder.batchActivities.forEach((name, batchActivity) -> {
+            int priority = this.activityPriorities.getOrDefault(name, PrioritizedTask.DEFAULT_PRIORITY);
+            this.activityBatchers.put(name, new ActivityBatcher(
+                    batchActivity.maxBatchSize,
+                    batchActivity.lingerTime,
+                    this.activityBatchScheduler,
+                    batch -> this.activityExecutor.execute(
+                            () -> this.executeActivityBatch(name, batchActivity.activity, batch),
+                            priority)));
+        });
+        this.activityRetryScheduler = !builder.activityLocalRetryPolicies.isEmpty() ?
+                Executors.newSingleThreadScheduledExecutor(newThreadFactory("durabletask-activity-retry-")) :
+                null;
+        HashMap<String, CircuitBreaker> circuitBreakers = new HashMap<>();
+        builder.activityCircuitBreakers.forEach((name, options) -> circuitBreakers.put(
+                name,
+                new CircuitBreaker(options.failureThreshold, options.breakDuration)));
+        this.taskActivityExecutor = new TaskActivityExecutor(
+                this.activityInstances,
+                this.dataConverter,
+                logger,
+                new HashMap<>(builder.activityTimeouts),
+                builder.defaultActivityTimeout,
+                this.activityWatchdog,
+                circuitBreakers,
+                new HashMap<>(builder.activityLocalRetryPolicies),
+                this.activityRetryScheduler,
+                task -> this.activityExecutor.executeAdmitted(task, PrioritizedTask.DEFAULT_PRIORITY));
+    }
+
+    private static ThreadFactory newOrchestrationThreadFactory(DurableTaskGrpcWorkerBuilder builder, String namePrefix) {
+        return builder.useVirtualThreads ?
+                VirtualThreads.newThreadFactory(namePrefix) :
+                newThreadFactory(namePrefix);
+    }
+
+    private static ThreadFactory newSessionThreadFactory() {
+        // Parked orchestrators hold on to their threads, which is much cheaper with virtual threads
+        return VirtualThreads.isSupported() ?
+                VirtualThreads.newThreadFactory("durabletask-orchestration-session-") :
+                newThreadFactory("durabletask-orchestration-session-");
+    }
+
+    private static ExecutorService newActivityThreadPool(DurableTaskGrpcWorkerBuilder builder, int maxConcurrency) {
+        if (builder.useVirtualThreads && builder.activityThreadFactory == null) {
+            // Virtual threads are cheap and shouldn't be pooled, so each activity gets a new one
+            return VirtualThreads.newThreadPerTaskExecutor("durabletask-activity-");
+        }
+
+        ThreadFactory activityThreadFactory = builder.activityThreadFactory != null ?
+                builder.activityThreadFactory :
+                newThreadFactory("durabletask-activity-");
+
+        // The executor's own queue is unbounded because BoundedExecutor already limits how many items can be queued.
+        // It's a priority queue so that high-priority activities can skip ahead of a backlog of other activities.
+        ThreadPoolExecutor activityThreadPool = new ThreadPoolExecutor(
+                maxConcurrency,
+                maxConcurrency,
+                60,
+                TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(),
+                activityThreadFactory);
+        activityThreadPool.allowCoreThreadTimeOut(true);
+        return activityThreadPool;
     }
 
     /**
@@ -75,25 +399,123 @@ public final class DurableTaskGrpcWorker implements AutoCloseable {
     }
 
     /**
-     * Closes the internally managed gRPC channel, if one exists.
+     * Gracefully stops the worker and closes the internally managed gRPC channels, if any exist.
+     * <p>
+     * The worker first stops receiving new work items from the sidecar. Activities and orchestrations that are already
+     * executing are then given until the configured shutdown timeout to finish and to deliver their results to the
+     * sidecar. Any work that is still running after the shutdown timeout is interrupted, and the sidecar will
+     * redeliver it to another worker.
      * <p>
-     * This method is a no-op if this client object was created using a builder with a gRPC channel object explicitly
-     * configured.
+     * gRPC channels that were provided using {@link DurableTaskGrpcWorkerBuilder#grpcChannel} are not closed.
      */
     public void close() {
-        if (this.managedSidecarChannel != null) {
+        if (!this.isShuttingDown.compareAndSet(false, true)) {
+            return;
+        }
+
+        // Stop accepting new work items. Work items that were already received keep running.
+        for (WorkItemStream workItemStream : this.activeStreams) {
+            workItemStream.cancel("The worker is shutting down.");
+        }
+        for (CountDownLatch reconnectWait : this.reconnectWaits) {
+            reconnectWait.countDown();
+        }
+
+        // Activities that are still waiting for their rate limit haven't started yet, so leave them to the sidecar
+        if (this.rateLimitScheduler != null) {
+            this.rateLimitScheduler.shutdownNow();
+        }
+
+        // Invocations that are waiting for their batch to fill up were already accepted, so run them now
+        if (this.activityBatchScheduler != null) {
+            this.activityBatchScheduler.shutdownNow();
             try {
-                this.managedSidecarChannel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+                for (ActivityBatcher batcher : this.activityBatchers.values()) {
+                    batcher.flush();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        long deadline = System.nanoTime() + this.shutdownTimeout.toNanos();
+        this.activityExecutor.shutdown();
+        this.orchestrationExecutor.shutdown();
+        try {
+            boolean drained = this.activityExecutor.awaitTermination(remainingNanos(deadline), TimeUnit.NANOSECONDS) &&
+                    this.orchestrationExecutor.awaitTermination(remainingNanos(deadline), TimeUnit.NANOSECONDS) &&
+                    this.awaitAsyncActivities(remainingNanos(deadline)) &&
+                    this.completionPipeline.awaitOutstandingCompletions(Duration.ofNanos(remainingNanos(deadline)));
+            if (!drained) {
+                logger.log(
+                        Level.WARNING,
+                        "Durable Task worker didn't finish its in-flight work items within {0}. The remaining work items will be redelivered by the sidecar.",
+                        this.shutdownTimeout);
+            }
+        } catch (InterruptedException e) {
+            // Give up on draining but still release all resources below
+            Thread.currentThread().interrupt();
+        }
+
+        this.workItemDispatcher.shutdownNow();
+        this.activityExecutor.shutdownNow();
+        this.orchestrationExecutor.shutdownNow();
+        this.taskOrchestrationExecutor.closeSessions();
+        this.completionRetryScheduler.shutdownNow();
+        if (this.activityWatchdog != null) {
+            this.activityWatchdog.shutdownNow();
+        }
+        if (this.activityRetryScheduler != null) {
+            this.activityRetryScheduler.shutdownNow();
+        }
+        for (ManagedChannel managedSidecarChannel : this.managedSidecarChannels) {
+            try {
+                managedSidecarChannel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
             } catch (InterruptedException e) {
                 // Best effort. Also note that AutoClose documentation recommends NOT having
                 // close() methods throw InterruptedException:
                 // https://docs.oracle.com/javase/7/docs/api/java/lang/AutoCloseable.html
             }
         }
+
+        // Undelivered completions stay in the file and are sent the next time a worker opens it
+        if (this.completionOutbox != null) {
+            try {
+                this.completionOutbox.close();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to close the completion outbox.", e);
+            }
+        }
+    }
+
+    private boolean awaitAsyncActivities(long timeoutNanos) throws InterruptedException {
+        CompletableFuture<?>[] activities = this.pendingAsyncActivities.toArray(new CompletableFuture<?>[0]);
+        try {
+            CompletableFuture.allOf(activities).get(timeoutNanos, TimeUnit.NANOSECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            // Failed activities have already reported their failure
+            return true;
+        }
+    }
+
+    private static long remainingNanos(long deadline) {
+        return Math.max(0, deadline - System.nanoTime());
+    }
+
+    /**
+     * Gets the runtime metrics of this worker, like the time that activities spent waiting for their rate limits.
+     *
+     * @return the runtime metrics of this worker
+     */
+    public WorkerMetrics getMetrics() {
+        return this.metrics;
     }
 
     private String getSidecarAddress() {
-        return this.sidecarClient.getChannel().authority();
+        return this.streamClients.get(0).getChannel().authority();
     }
 
     /**
@@ -107,79 +529,77 @@ public final class DurableTaskGrpcWorker implements AutoCloseable {
      * continues until either a connection succeeds or the process receives an interrupt signal.
      */
     public void startAndBlock() {
+        this.warmUp();
         logger.log(Level.INFO, "Durable Task worker is connecting to sidecar at {0}.", this.getSidecarAddress());
 
-        TaskOrchestrationExecutor taskOrchestrationExecutor = new TaskOrchestrationExecutor(
-                this.orchestrationFactories,
-                this.dataConverter,
-                this.maximumTimerInterval,
-                logger);
-        TaskActivityExecutor taskActivityExecutor = new TaskActivityExecutor(
-                this.activityFactories,
-                this.dataConverter,
-                logger);
+        // The first stream is read on the current thread and any additional streams are read on their own threads
+        List<Thread> streamThreads = new ArrayList<>();
+        for (int i = 1; i < this.streamClients.size(); i++) {
+            TaskHubSidecarServiceStub streamClient = this.streamClients.get(i);
+            Thread streamThread = new Thread(
+                    () -> this.processWorkItemStream(streamClient),
+                    "durabletask-work-item-stream-" + i);
+            streamThread.setDaemon(true);
+            streamThread.start();
+            streamThreads.add(streamThread);
+        }
+
+        try {
+            this.processWorkItemStream(this.streamClients.get(0));
+        } finally {
+            for (Thread streamThread : streamThreads) {
+                streamThread.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Runs the warm-up hooks of all factories and creates their shared and pooled instances. A failed warm-up is
+     * logged, and the worker starts anyway.
+     */
+    private void warmUp() {
+        this.orchestrationFactories.forEach((name, factory) ->
+                this.warmUp("orchestration", name, factory::warmUp, this.orchestrationInstances.get(name)));
+        this.activityFactories.forEach((name, factory) ->
+                this.warmUp("activity", name, factory::warmUp, this.activityInstances.get(name)));
+    }
+
+    private void warmUp(String kind, String name, Runnable warmUpHook, InstanceProvider<?> instances) {
+        try {
+            warmUpHook.run();
+            instances.warmUp();
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, String.format("Failed to warm up the %s '%s'.", kind, name), e);
+        }
+    }
 
-        // TODO: How do we interrupt manually?
-        while (true) {
+    private void processWorkItemStream(TaskHubSidecarServiceStub streamClient) {
+        int failedAttempts = 0;
+        while (!this.isShuttingDown.get()) {
+            WorkItemStream workItemStream = new WorkItemStream(
+                    this.maxWorkItemsPerStream,
+                    this::getWorkItemBudget,
+                    (workItem, onCompleted) -> this.admitWorkItem(streamClient, workItem, onCompleted));
+            this.activeStreams.add(workItemStream);
+            long openTime = System.nanoTime();
             try {
-                GetWorkItemsRequest getWorkItemsRequest = GetWorkItemsRequest.newBuilder().build();
-                Iterator<WorkItem> workItemStream = this.sidecarClient.getWorkItems(getWorkItemsRequest);
-                while (workItemStream.hasNext()) {
-                    WorkItem workItem = workItemStream.next();
-                    RequestCase requestType = workItem.getRequestCase();
-                    if (requestType == RequestCase.ORCHESTRATORREQUEST) {
-                        OrchestratorRequest orchestratorRequest = workItem.getOrchestratorRequest();
-
-                        // TODO: Run this on a worker pool thread: https://www.baeldung.com/thread-pool-java-and-guava
-                        // TODO: Error handling
-                        TaskOrchestratorResult taskOrchestratorResult = taskOrchestrationExecutor.execute(
-                                orchestratorRequest.getPastEventsList(),
-                                orchestratorRequest.getNewEventsList());
-
-                        OrchestratorResponse response = OrchestratorResponse.newBuilder()
-                                .setInstanceId(orchestratorRequest.getInstanceId())
-                                .addAllActions(taskOrchestratorResult.getActions())
-                                .setCustomStatus(StringValue.of(taskOrchestratorResult.getCustomStatus()))
-                                .build();
-
-                        this.sidecarClient.completeOrchestratorTask(response);
-                    } else if (requestType == RequestCase.ACTIVITYREQUEST) {
-                        ActivityRequest activityRequest = workItem.getActivityRequest();
-
-                        // TODO: Run this on a worker pool thread: https://www.baeldung.com/thread-pool-java-and-guava
-                        String output = null;
-                        TaskFailureDetails failureDetails = null;
-                        try {
-                            output = taskActivityExecutor.execute(
-                                activityRequest.getName(),
-                                activityRequest.getInput().getValue(),
-                                activityRequest.getTaskId());
-                        } catch (Throwable e) {
-                            failureDetails = TaskFailureDetails.newBuilder()
-                                .setErrorType(e.getClass().getName())
-                                .setErrorMessage(e.getMessage())
-                                .setStackTrace(StringValue.of(FailureDetails.getFullStackTrace(e)))
-                                .build();
-                        }
-
-                        ActivityResponse.Builder responseBuilder = ActivityResponse.newBuilder()
-                                .setInstanceId(activityRequest.getOrchestrationInstance().getInstanceId())
-                                .setTaskId(activityRequest.getTaskId());
-
-                        if (output != null) {
-                            responseBuilder.setResult(StringValue.of(output));
-                        }
-
-                        if (failureDetails != null) {
-                            responseBuilder.setFailureDetails(failureDetails);
-                        }
-
-                        this.sidecarClient.completeActivityTask(responseBuilder.build());
-                    } else {
-                        logger.log(Level.WARNING, "Received and dropped an unknown '{0}' work-item from the sidecar.", requestType);
-                    }
+                // Covers a shutdown that started before this stream was registered
+                if (this.isShuttingDown.get()) {
+                    break;
                 }
+
+                // Results that couldn't be delivered earlier go out before any new work is accepted
+                this.completionPipeline.resendFromOutbox(streamClient);
+
+                GetWorkItemsRequest getWorkItemsRequest = GetWorkItemsRequest.newBuilder().build();
+                streamClient.getWorkItems(getWorkItemsRequest, workItemStream);
+                workItemStream.awaitClose();
             } catch (StatusRuntimeException e) {
+                if (this.isShuttingDown.get()) {
+                    logger.log(Level.INFO, "Durable Task worker has stopped receiving work-items from {0}.", this.getSidecarAddress());
+                    break;
+                }
+
                 if (e.getStatus().getCode() == Status.Code.UNAVAILABLE) {
                     logger.log(Level.INFO, "The sidecar at address {0} is unavailable. Will continue retrying.", this.getSidecarAddress());
                 } else if (e.getStatus().getCode() == Status.Code.CANCELLED) {
@@ -188,18 +608,527 @@ public final class DurableTaskGrpcWorker implements AutoCloseable {
                     logger.log(Level.WARNING, "Unexpected failure connecting to {0}.", this.getSidecarAddress());
                 }
 
-                // Retry after 5 seconds
+                failedAttempts = this.reconnectPolicy.getFailedAttempts(
+                        failedAttempts,
+                        workItemStream.hasReceivedWorkItems(),
+                        Duration.ofNanos(System.nanoTime() - openTime));
+                Duration delay = this.reconnectPolicy.getDelay(failedAttempts);
+                if (!delay.isZero()) {
+                    logger.log(Level.FINE, "Reconnecting to {0} in up to {1} ms.", new Object[] {
+                            this.getSidecarAddress(),
+                            delay.toMillis()});
+                }
+
                 try {
-                    Thread.sleep(5000);
+                    this.awaitReconnect(streamClient.getChannel(), delay);
                 } catch (InterruptedException ex) {
                     break;
                 }
+            } catch (InterruptedException e) {
+                logger.log(Level.INFO, "Durable Task worker was interrupted and will stop processing work-items.");
+                workItemStream.cancel("The worker was interrupted.");
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                this.activeStreams.remove(workItemStream);
+            }
+        }
+    }
+
+    /**
+     * Waits for {@code delay} to elapse before reconnecting, returning early if the channel becomes ready or if the
+     * worker starts shutting down.
+     */
+    private void awaitReconnect(Channel channel, Duration delay) throws InterruptedException {
+        if (delay.isZero()) {
+            return;
+        }
+
+        CountDownLatch wakeUp = new CountDownLatch(1);
+        this.reconnectWaits.add(wakeUp);
+        try {
+            if (this.isShuttingDown.get()) {
+                return;
+            }
+
+            // Connectivity notifications are only available on channels that expose their connection state
+            if (channel instanceof ManagedChannel) {
+                notifyWhenReady((ManagedChannel) channel, wakeUp);
+            }
+
+            wakeUp.await(delay.toNanos(), TimeUnit.NANOSECONDS);
+        } finally {
+            // Releasing the latch also stops any pending connectivity callbacks from re-registering
+            wakeUp.countDown();
+            this.reconnectWaits.remove(wakeUp);
+        }
+    }
+
+    private static void notifyWhenReady(ManagedChannel channel, CountDownLatch wakeUp) {
+        // Passing true asks an idle channel to start connecting
+        ConnectivityState state = channel.getState(true);
+        if (state == ConnectivityState.READY || state == ConnectivityState.SHUTDOWN) {
+            // If the channel is already connected, then the stream failed for some other reason
+            // and we should wait out the full delay instead of hammering the sidecar.
+            return;
+        }
+
+        channel.notifyWhenStateChanged(state, () -> {
+            if (wakeUp.getCount() == 0) {
+                return;
+            }
+
+            if (channel.getState(false) == ConnectivityState.READY) {
+                wakeUp.countDown();
+            } else {
+                notifyWhenReady(channel, wakeUp);
+            }
+        });
+    }
+
+    private WorkItemBudget getWorkItemBudget(WorkItem workItem) {
+        switch (workItem.getRequestCase()) {
+            case ACTIVITYREQUEST:
+                return this.activityBudget;
+            case ORCHESTRATORREQUEST:
+                return this.orchestrationBudget;
+            default:
+                return null;
+        }
+    }
+
+    private void admitWorkItem(
+            TaskHubSidecarServiceStub sidecarClient,
+            WorkItem workItem,
+            Runnable onCompleted) throws InterruptedException {
+        MemoryAdmissionController admissionController = this.memoryAdmissionController;
+        if (admissionController == null) {
+            this.dispatchWorkItem(sidecarClient, workItem, onCompleted);
+            return;
+        }
+
+        long workItemBytes = workItem.getSerializedSize();
+        admissionController.onReceived(workItemBytes);
+        this.dispatchWorkItem(
+                sidecarClient,
+                workItem,
+                () -> admissionController.onCompleted(workItemBytes, onCompleted));
+    }
+
+    private void dispatchWorkItem(
+            TaskHubSidecarServiceStub sidecarClient,
+            WorkItem workItem,
+            Runnable onCompleted) throws InterruptedException {
+        RequestCase requestType = workItem.getRequestCase();
+        if (requestType == RequestCase.ORCHESTRATORREQUEST) {
+            OrchestratorRequest orchestratorRequest = workItem.getOrchestratorRequest();
+
+            int historyEventCount = orchestratorRequest.getPastEventsCount() + orchestratorRequest.getNewEventsCount();
+
+            // Replay times of large orchestrations aren't comparable to those of other orchestrations,
+            // so they would only confuse the adaptive concurrency limit. They still count towards it.
+            AdaptiveConcurrencyLimiter limiter = this.orchestrationExecutor.isLarge(historyEventCount) ?
+                    null :
+                    this.orchestrationLimiter;
+
+            // Work items for the same instance always land on the same lane, which guarantees that
+            // an orchestration instance is never replayed by two threads at the same time.
+            this.orchestrationExecutor.execute(
+                    orchestratorRequest.getInstanceId(),
+                    historyEventCount,
+                    () -> runWithLimiter(
+                            limiter,
+                            () -> CompletableFuture.completedFuture(
+                                    this.executeOrchestrator(sidecarClient, orchestratorRequest)),
+                            new AtomicReference<>(onCompleted)),
+                    this.getOrchestrationPriority(orchestratorRequest));
+        } else if (requestType == RequestCase.ACTIVITYREQUEST) {
+            ActivityRequest activityRequest = workItem.getActivityRequest();
+            ActivityResponse cachedResponse = this.getCachedActivityResponse(activityRequest);
+            if (cachedResponse != null) {
+                // The activity doesn't need to run, so it doesn't need to wait for rate limits or bulkheads either
+                this.activityExecutor.execute(
+                        () -> {
+                            try {
+                                this.sendActivityResponse(sidecarClient, cachedResponse);
+                            } finally {
+                                onCompleted.run();
+                            }
+                        },
+                        PrioritizedTask.DEFAULT_PRIORITY);
+                return;
+            }
+
+            TokenBucket rateLimit = this.activityRateLimits.get(activityRequest.getName());
+            long delayNanos = rateLimit != null ? rateLimit.reserve() : 0;
+            if (delayNanos == 0) {
+                this.dispatchActivity(sidecarClient, activityRequest, onCompleted);
+            } else {
+                // Hold the activity until its token is available without tying up a thread. It keeps its stream
+                // credit while it waits, so a heavily rate-limited activity slows down how fast we take new work.
+                this.metrics.recordRateLimitWait(activityRequest.getName(), delayNanos);
+                this.rateLimitScheduler.schedule(
+                        () -> this.dispatchDelayedActivity(sidecarClient, activityRequest, onCompleted),
+                        delayNanos,
+                        TimeUnit.NANOSECONDS);
+            }
+        } else {
+            logger.log(Level.WARNING, "Received and dropped an unknown '{0}' work-item from the sidecar.", requestType);
+            onCompleted.run();
+        }
+    }
+
+    /**
+     * Gets the response for an activity that was already redelivered or whose result is memoized.
+     *
+     * @return the response to send, or {@code null} if the activity needs to run
+     */
+    ActivityResponse getCachedActivityResponse(ActivityRequest activityRequest) {
+        if (this.activityResultCache != null) {
+            ActivityResponse response = this.activityResultCache.get(getActivityResultKey(activityRequest));
+            if (response != null) {
+                logger.log(Level.FINE, "Resending the cached result of activity #{0} of orchestration ''{1}''.", new Object[] {
+                        activityRequest.getTaskId(),
+                        activityRequest.getOrchestrationInstance().getInstanceId()});
+                return response;
+            }
+        }
+
+        ExpiringCache<String, ActivityResponse> memoizedResults = this.activityMemoizations.get(activityRequest.getName());
+        if (memoizedResults != null) {
+            ActivityResponse memoizedResponse = memoizedResults.get(getInputHash(activityRequest));
+            if (memoizedResponse == null) {
+                this.metrics.recordMemoizationMiss(activityRequest.getName());
+                return null;
+            }
+
+            this.metrics.recordMemoizationHit(activityRequest.getName());
+            return memoizedResponse.toBuilder()
+                    .setInstanceId(activityRequest.getOrchestrationInstance().getInstanceId())
+                    .setTaskId(activityRequest.getTaskId())
+                    .build();
+        }
+
+        return null;
+    }
+
+    private void dispatchActivity(
+            TaskHubSidecarServiceStub sidecarClient,
+            ActivityRequest activityRequest,
+            Runnable onCompleted) throws InterruptedException {
+        ActivityBatcher batcher = this.activityBatchers.get(activityRequest.getName());
+        if (batcher != null) {
+            batcher.add(new ActivityBatcher.Entry(sidecarClient, activityRequest, onCompleted));
+            return;
+        }
+
+        int priority = this.activityPriorities.getOrDefault(activityRequest.getName(), PrioritizedTask.DEFAULT_PRIORITY);
+        AtomicReference<Runnable> credit = new AtomicReference<>(onCompleted);
+        Supplier<CompletionStage<Boolean>> activityTask = () -> runWithLimiter(
+                this.activityLimiter,
+                () -> this.executeActivity(sidecarClient, activityRequest),
+                credit);
+
+        Bulkhead bulkhead = this.activityBulkheads.get(activityRequest.getName());
+        if (bulkhead == null) {
+            this.activityExecutor.execute(activityTask::get, priority);
+            return;
+        }
+
+        // Asynchronous activities keep their bulkhead slot until their stage completes
+        Consumer<Runnable> slotTask = releaseSlot -> activityTask.get().whenComplete((r, e) -> releaseSlot.run());
+        if (bulkhead.admit(slotTask)) {
+            try {
+                this.activityExecutor.execute(
+                        bulkhead.newSlotRunner(slotTask, task -> this.activityExecutor.executeAdmitted(task, priority)),
+                        priority);
+            } catch (InterruptedException | RejectedExecutionException e) {
+                // The activity never started, so it can't release its slot itself
+                bulkhead.releaseUnstarted();
+                throw e;
+            }
+        } else if (bulkhead.hasParkingCapacity()) {
+            // The parked activity doesn't need a thread, so let the sidecar send us something else in the meantime
+            runCredit(credit.getAndSet(null));
+        }
+    }
+
+    private void dispatchDelayedActivity(
+            TaskHubSidecarServiceStub sidecarClient,
+            ActivityRequest activityRequest,
+            Runnable onCompleted) {
+        try {
+            this.dispatchActivity(sidecarClient, activityRequest, onCompleted);
+        } catch (InterruptedException | RejectedExecutionException e) {
+            // The worker is shutting down. The sidecar will redeliver the work item.
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            onCompleted.run();
+        }
+    }
+
+    /**
+     * Runs a work item and then returns its stream credit. Work items that complete asynchronously, like
+     * {@link AsyncTaskActivity} activities, keep their credit until they complete. The work item's budget already
+     * checked the adaptive concurrency limit before dispatching it, so the limiter only learns how the work item went.
+     *
+     * @param limiter the adaptive concurrency limit to report the work item's latency and outcome to, or {@code null}
+     * @param workItem starts the work item and returns a stage that completes with whether it succeeded
+     * @param credit holds the callback that asks the sidecar for another work item; it's taken exactly once, and may
+     *               already have been taken if the credit was returned before the work item started
+     * @return a stage that completes once the work item finished
+     */
+    private static CompletionStage<Boolean> runWithLimiter(
+            AdaptiveConcurrencyLimiter limiter,
+            Supplier<CompletionStage<Boolean>> workItem,
+            AtomicReference<Runnable> credit) {
+        long startTime = System.nanoTime();
+        CompletionStage<Boolean> result;
+        try {
+            result = workItem.get();
+        } catch (RuntimeException | Error e) {
+            recordOutcome(limiter, startTime, false);
+            runCredit(credit.getAndSet(null));
+            throw e;
+        }
+        return result.whenComplete((succeeded, e) -> {
+            recordOutcome(limiter, startTime, e == null && succeeded);
+            runCredit(credit.getAndSet(null));
+        });
+    }
+
+    private static void recordOutcome(AdaptiveConcurrencyLimiter limiter, long startTime, boolean succeeded) {
+        if (limiter != null) {
+            limiter.recordOutcome(System.nanoTime() - startTime, succeeded);
+        }
+    }
+
+    private static void runCredit(Runnable credit) {
+        if (credit != null) {
+            credit.run();
+        }
+    }
+
+    private int getOrchestrationPriority(OrchestratorRequest orchestratorRequest) {
+        if (this.orchestrationPriorities.isEmpty()) {
+            return PrioritizedTask.DEFAULT_PRIORITY;
+        }
+
+        // The orchestration name is only available in the ExecutionStarted event. Every work item for an instance
+        // resolves to the same name, which keeps the instance's work items in order on its lane.
+        String name = null;
+        for (HistoryEvent e : orchestratorRequest.getPastEventsList()) {
+            if (e.hasExecutionStarted()) {
+                name = e.getExecutionStarted().getName();
+                break;
+            }
+        }
+        if (name == null) {
+            for (HistoryEvent e : orchestratorRequest.getNewEventsList()) {
+                if (e.hasExecutionStarted()) {
+                    name = e.getExecutionStarted().getName();
+                    break;
+                }
             }
         }
+
+        return name != null ?
+                this.orchestrationPriorities.getOrDefault(name, PrioritizedTask.DEFAULT_PRIORITY) :
+                PrioritizedTask.DEFAULT_PRIORITY;
+    }
+
+    private boolean executeOrchestrator(TaskHubSidecarServiceStub sidecarClient, OrchestratorRequest orchestratorRequest) {
+        TaskOrchestratorResult taskOrchestratorResult;
+        try {
+            taskOrchestratorResult = this.taskOrchestrationExecutor.execute(
+                    orchestratorRequest.getInstanceId(),
+                    orchestratorRequest.getPastEventsList(),
+                    orchestratorRequest.getNewEventsList());
+        } catch (InterruptedException e) {
+            // The worker is shutting down. The sidecar will redeliver the work item.
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (RuntimeException e) {
+            // Orchestrator code failures are reported by the executor itself. Anything that escapes is an internal
+            // error, so we don't respond and allow the sidecar to redeliver the work item.
+            logger.log(
+                    Level.WARNING,
+                    String.format(
+                            "Unexpected failure executing orchestration '%s'.",
+                            orchestratorRequest.getInstanceId()),
+                    e);
+            return false;
+        }
+
+        OrchestratorResponse response = OrchestratorResponse.newBuilder()
+                .setInstanceId(orchestratorRequest.getInstanceId())
+                .addAllActions(taskOrchestratorResult.getActions())
+                .setCustomStatus(StringValue.of(taskOrchestratorResult.getCustomStatus()))
+                .build();
+
+        try {
+            this.completionPipeline.completeOrchestratorTask(sidecarClient, response);
+        } catch (InterruptedException e) {
+            // The worker is shutting down. The sidecar will redeliver the work item.
+            Thread.currentThread().interrupt();
+        }
+        return true;
+    }
+
+    /**
+     * Executes an activity and sends its result to the sidecar.
+     *
+     * @return {@code true} if the activity succeeded, {@code false} if it failed
+     */
+    private CompletionStage<Boolean> executeActivity(
+            TaskHubSidecarServiceStub sidecarClient,
+            ActivityRequest activityRequest) {
+        CompletableFuture<Boolean> result = this.taskActivityExecutor.execute(
+                activityRequest.getName(),
+                activityRequest.getInput().getValue(),
+                activityRequest.getTaskId()).handle((output, failure) -> {
+                    this.completeActivity(sidecarClient, activityRequest, output, failure);
+                    return failure == null;
+                });
+
+        // Asynchronous activities are still running at this point, so shutdown has to wait for them separately
+        if (!result.isDone()) {
+            this.pendingAsyncActivities.add(result);
+            result.whenComplete((succeeded, e) -> this.pendingAsyncActivities.remove(result));
+        }
+        return result;
+    }
+
+    private void executeActivityBatch(String name, BatchTaskActivity activity, List<ActivityBatcher.Entry> batch) {
+        List<String> inputs = new ArrayList<>(batch.size());
+        for (ActivityBatcher.Entry entry : batch) {
+            inputs.add(entry.activityRequest.getInput().getValue());
+        }
+
+        List<String> outputs = null;
+        Throwable failure = null;
+        try {
+            outputs = this.taskActivityExecutor.executeBatch(name, activity, inputs);
+        } catch (Throwable e) {
+            failure = e;
+        }
+
+        // Every invocation gets its own response, so the sidecar can't tell that they ran as a batch
+        for (int i = 0; i < batch.size(); i++) {
+            ActivityBatcher.Entry entry = batch.get(i);
+            this.completeActivity(
+                    entry.sidecarClient,
+                    entry.activityRequest,
+                    outputs != null ? outputs.get(i) : null,
+                    failure);
+        }
+        for (ActivityBatcher.Entry entry : batch) {
+            runCredit(entry.credit.getAndSet(null));
+        }
+    }
+
+    private void completeActivity(
+            TaskHubSidecarServiceStub sidecarClient,
+            ActivityRequest activityRequest,
+            String output,
+            Throwable failure) {
+        TaskFailureDetails failureDetails = null;
+        if (failure instanceof CircuitBreakerOpenException) {
+            // The activity never ran, so there's no useful stack trace to send
+            failureDetails = TaskFailureDetails.newBuilder()
+                .setErrorType(failure.getClass().getName())
+                .setErrorMessage(failure.getMessage())
+                .build();
+        } else if (failure != null) {
+            failureDetails = TaskFailureDetails.newBuilder()
+                .setErrorType(failure.getClass().getName())
+                .setErrorMessage(failure.getMessage())
+                .setStackTrace(StringValue.of(FailureDetails.getFullStackTrace(failure)))
+                .build();
+        }
+
+        ActivityResponse.Builder responseBuilder = ActivityResponse.newBuilder()
+                .setInstanceId(activityRequest.getOrchestrationInstance().getInstanceId())
+                .setTaskId(activityRequest.getTaskId());
+
+        if (output != null) {
+            responseBuilder.setResult(StringValue.of(output));
+        }
+
+        if (failureDetails != null) {
+            responseBuilder.setFailureDetails(failureDetails);
+        }
+
+        ActivityResponse response = responseBuilder.build();
+        this.rememberActivityResponse(activityRequest, response, failure);
+        this.sendActivityResponse(sidecarClient, response);
+    }
+
+    /**
+     * Remembers an activity's response for redeliveries and, if the activity is memoizable, for later invocations with
+     * the same input.
+     *
+     * @param failure the exception that the activity failed with, or {@code null} if it succeeded
+     */
+    void rememberActivityResponse(ActivityRequest activityRequest, ActivityResponse response, Throwable failure) {
+        // An activity that was rejected by its circuit breaker never ran, so there's nothing to remember
+        if (this.activityResultCache != null && !(failure instanceof CircuitBreakerOpenException)) {
+            this.activityResultCache.put(getActivityResultKey(activityRequest), response);
+        }
+
+        ExpiringCache<String, ActivityResponse> memoizedResults = this.activityMemoizations.get(activityRequest.getName());
+        if (memoizedResults != null && failure == null) {
+            memoizedResults.put(getInputHash(activityRequest), response);
+        }
+    }
+
+    /**
+     * Gets a SHA-256 hash of an activity's serialized input, which identifies the input without keeping a copy of it.
+     */
+    private static String getInputHash(ActivityRequest activityRequest) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(activityRequest.getInput().getValue().getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void sendActivityResponse(TaskHubSidecarServiceStub sidecarClient, ActivityResponse response) {
+        try {
+            this.completionPipeline.completeActivityTask(sidecarClient, response);
+        } catch (InterruptedException e) {
+            // The worker is shutting down. The sidecar will redeliver the work item.
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Identifies an activity invocation. The execution ID is part of the key because task IDs start over when an
+     * orchestration continues as new.
+     */
+    private static String getActivityResultKey(ActivityRequest activityRequest) {
+        OrchestrationInstance instance = activityRequest.getOrchestrationInstance();
+        return instance.getInstanceId() + '\u0000' +
+                instance.getExecutionId().getValue() + '\u0000' +
+                activityRequest.getTaskId();
+    }
+
+    private static ThreadFactory newThreadFactory(String namePrefix) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
     }
 
     /**
      * Stops the current worker's listen loop, preventing any new orchestrator or activity events from being processed.
+     * In-flight work items are drained as described in {@link #close}.
      */
     public void stop() {
         this.close();
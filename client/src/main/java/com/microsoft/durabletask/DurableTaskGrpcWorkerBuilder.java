@@ -4,8 +4,10 @@ package com.microsoft.durabletask;
 
 import io.grpc.Channel;
 
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.HashMap;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Builder object for constructing customized {@link DurableTaskGrpcWorker} instances.
@@ -13,10 +15,44 @@ import java.util.HashMap;
 public final class DurableTaskGrpcWorkerBuilder {
     final HashMap<String, TaskOrchestrationFactory> orchestrationFactories = new HashMap<>();
     final HashMap<String, TaskActivityFactory> activityFactories = new HashMap<>();
+    final HashMap<String, Integer> orchestrationPriorities = new HashMap<>();
+    final HashMap<String, Integer> activityPriorities = new HashMap<>();
+    final HashMap<String, Duration> activityTimeouts = new HashMap<>();
+    final HashMap<String, Integer> activityBulkheads = new HashMap<>();
+    final HashMap<String, ActivityRateLimit> activityRateLimits = new HashMap<>();
+    final HashMap<String, ActivityCircuitBreaker> activityCircuitBreakers = new HashMap<>();
+    final HashMap<String, ActivityMemoization> activityMemoizations = new HashMap<>();
+    final HashMap<String, BatchActivity> batchActivities = new HashMap<>();
+    final HashMap<String, RetryPolicy> activityLocalRetryPolicies = new HashMap<>();
+    final HashMap<String, InstanceLifecycle> orchestrationLifecycles = new HashMap<>();
+    final HashMap<String, InstanceLifecycle> activityLifecycles = new HashMap<>();
     int port;
     Channel channel;
     DataConverter dataConverter;
     Duration maximumTimerInterval;
+    int activityMaxConcurrency;
+    int activityQueueCapacity = -1;
+    ThreadFactory activityThreadFactory;
+    int orchestrationConcurrency;
+    boolean useVirtualThreads;
+    int maxOutstandingCompletions;
+    int maxConcurrentWorkItems;
+    int workItemStreamCount;
+    boolean useSeparateStreamChannels;
+    Duration shutdownTimeout;
+    ReconnectPolicy reconnectPolicy;
+    Duration defaultActivityTimeout;
+    boolean useAdaptiveConcurrency;
+    long maxInFlightWorkItemBytes;
+    double maxHeapUsage;
+    int largeOrchestrationThreshold;
+    int largeOrchestrationConcurrency;
+    Path completionOutboxFile;
+    int completionOutboxCapacity;
+    int activityDeduplicationMaxEntries;
+    Duration activityDeduplicationTimeToLive;
+    int extendedSessionMaxSessions;
+    Duration extendedSessionIdleTimeout;
 
     /**
      * Adds an orchestration factory to be used by the constructed {@link DurableTaskGrpcWorker}.
@@ -39,6 +75,21 @@ public final class DurableTaskGrpcWorkerBuilder {
         return this;
     }
 
+    /**
+     * Adds an orchestration factory to be used by the constructed {@link DurableTaskGrpcWorker}, and sets how the
+     * worker obtains orchestration instances from it.
+     *
+     * @param factory an orchestration factory to be used by the constructed {@link DurableTaskGrpcWorker}
+     * @param lifecycle controls whether each execution gets a new, shared, or pooled orchestration instance
+     * @return this builder object
+     */
+    public DurableTaskGrpcWorkerBuilder addOrchestration(TaskOrchestrationFactory factory, InstanceLifecycle lifecycle) {
+        Helpers.throwIfArgumentNull(lifecycle, "lifecycle");
+        this.addOrchestration(factory);
+        this.orchestrationLifecycles.put(factory.getName(), lifecycle);
+        return this;
+    }
+
     /**
      * Adds an activity factory to be used by the constructed {@link DurableTaskGrpcWorker}.
      *
@@ -52,7 +103,7 @@ public final class DurableTaskGrpcWorkerBuilder {
             throw new IllegalArgumentException("A non-empty task activity name is required.");
         }
 
-        if (this.activityFactories.containsKey(key)) {
+        if (this.activityFactories.containsKey(key) || this.batchActivities.containsKey(key)) {
             throw new IllegalArgumentException(
                     String.format("A task activity factory named %s is already registered.", key));
         }
@@ -61,6 +112,62 @@ public final class DurableTaskGrpcWorkerBuilder {
         return this;
     }
 
+    /**
+     * Adds an activity factory to be used by the constructed {@link DurableTaskGrpcWorker}, and sets how the worker
+     * obtains activity instances from it.
+     *
+     * @param factory an activity factory to be used by the constructed {@link DurableTaskGrpcWorker}
+     * @param lifecycle controls whether each execution gets a new, shared, or pooled activity instance
+     * @return this builder object
+     */
+    public DurableTaskGrpcWorkerBuilder addActivity(TaskActivityFactory factory, InstanceLifecycle lifecycle) {
+        Helpers.throwIfArgumentNull(lifecycle, "lifecycle");
+        this.addActivity(factory);
+        this.activityLifecycles.put(factory.getName(), lifecycle);
+        return this;
+    }
+
+    /**
+     * Adds an activity that processes multiple invocations at once to be used by the constructed
+     * {@link DurableTaskGrpcWorker}.
+     * <p>
+     * The worker collects invocations of the activity into batches of up to {@code maxBatchSize} invocations. A batch
+     * runs as soon as it's full, or when its first invocation has waited for {@code lingerTime}, whichever comes first.
+     * Each batch runs as a single activity execution on the activity thread pool, so rate limits apply to individual
+     * invocations, while timeouts and circuit breakers apply to whole batches. Bulkheads don't apply to batch
+     * activities. Adaptive concurrency limits count each waiting or running invocation, but aren't adjusted based on
+     * batch latencies.
+     *
+     * @param name the name of the activity
+     * @param activity the activity implementation, which must be safe to call from multiple threads at the same time
+     * @param maxBatchSize the maximum number of invocations in a batch
+     * @param lingerTime the maximum amount of time that an invocation waits for its batch to fill up
+     * @return this builder object
+     */
+    public DurableTaskGrpcWorkerBuilder addBatchActivity(
+            String name,
+            BatchTaskActivity activity,
+            int maxBatchSize,
+            Duration lingerTime) {
+        Helpers.throwIfArgumentNullOrWhiteSpace(name, "name");
+        Helpers.throwIfArgumentNull(activity, "activity");
+        Helpers.throwIfArgumentNull(lingerTime, "lingerTime");
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("The maximum batch size must be greater than zero.");
+        }
+        if (lingerTime.isNegative()) {
+            throw new IllegalArgumentException("The linger time must not be negative.");
+        }
+
+        if (this.activityFactories.containsKey(name) || this.batchActivities.containsKey(name)) {
+            throw new IllegalArgumentException(
+                    String.format("A task activity factory named %s is already registered.", name));
+        }
+
+        this.batchActivities.put(name, new BatchActivity(activity, maxBatchSize, lingerTime));
+        return this;
+    }
+
     /**
      * Sets the gRPC channel to use for communicating with the sidecar process.
      * <p>
@@ -113,11 +220,698 @@ public final class DurableTaskGrpcWorkerBuilder {
         return this;
     }
 
+    /**
+     * Sets the maximum number of activity work items that the worker will execute concurrently. If not specified,
+     * the number of available processors is used, or 1000 when virtual threads are enabled.
+     *
+     * @param maxConcurrency the maximum number of activities to execute in parallel
+     * @return this builder object
+     */
+    public DurableTaskGrpcWorkerBuilder activityMaxConcurrency(int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("The maximum activity concurrency must be greater than zero.");
+        }
+
+        this.activityMaxConcurrency = maxConcurrency;
+        return this;
+    }
+
+    /**
+     * Adds a bulkhead that caps the number of activities with the given name that can run concurrently on this worker.
+     * This caps how much of the worker's activity capacity a single activity can use, so that a slow activity can't
+     * starve the other activities registered with the same worker. {@link AsyncTaskActivity} activities count towards
+     * the bulkhead until their stage completes.
+     * <p>
+     * Activities that arrive while the limit is reached wait without occupying a thread, and the worker keeps taking
+     * other work items from the sidecar while they wait. Only when many such activities are waiting does the worker
+     * stop taking new work items until they start running.
+     * <p>
+     * The activity must be registered using {@link #addActivity} by the time {@link #build} is called. Bulkheads don't
+     * apply to batch activities.
+     *
+     * @param name the name of the activity
+     * @param maxConcurrency the maximum number of concurrently running activities with the given name
+     * @return this builder object
+     */
+    public DurableTaskGrpcWorkerBuilder activityBulkhead(String name, int maxConcurrency) {
+        Helpers.throwIfArgumentNullOrWhiteSpace(name, "name");
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("The maximum activity concurrency must be greater than zero.");
+        }
+
+        this.activityBulkheads.put(name, maxConcurrency);
+        return this;
+    }
+
+    /**
+     * Sets the number of activity work items that can be queued locally while all activity threads are busy. If not
+     * specified, the queue capacity is the same as the maximum activity concurrency.
+     * <p>
+     * Activities that arrive while the queue is full wait in a local overflow queue without blocking the work-item
+     * stream. The first of them, up to the number of activities that can run or be queued, hand their flow-control
+     * credit back to the sidecar so that orchestration work items keep arriving. Any further activities keep their
+     * credit until they complete.
+     *
+     * @param queueCapacity the number of activity work items that can wait for an available thread
+     * @return this builder object
+     */
+    public DurableTaskGrpcWorkerBuilder activityQueueCapacity(int queueCapacity) {
+        if (queueCapacity < 0) {
+            throw new IllegalArgumentException("The activity queue capacity must not be negative.");
+        }
+
+        this.activityQueueCapacity = queueCapacity;
+        return this;
+    }
+
+    /**
+     * Sets the {@link ThreadFactory} used to create the threads that execute activities. If not specified, the
+     * worker creates daemon threads named {@code durabletask-activity-N}.
+     * <p>
+     * A custom thread factory takes precedence over {@link #useVirtualThreads}.
+     *
+     * @param threadFactory the thread factory to use for activity threads
+     * @return this builder object
+     */
+    public DurableTaskGrpcWorkerBuilder activityThreadFactory(ThreadFactory threadFactory) {
+        this.activityThreadFactory = threadFactory;
+        return this;
+    }
+
+    /**
+     * Sets the number of orchestration work items that the worker can replay in parallel. If not specified, the
+     * number of available processors is used.
+     * <p>
+     * Orchestration work items are assigned to one of {@code concurrency} execution lanes based on a hash of the
+     * orchestration instance ID. Work items for the same orchestration instance always run on the same lane, so
+     * they are never executed concurrently and are always processed in the order they were received.
+     *
+     * @param concurrency the number of orchestration execution lanes
+     * @return this builder object
+     */
+    public DurableTaskGrpcWorkerBuilder orchestrationConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("The orchestration concurrency must be greater than zero.");
+        }
+
+        this.orchestrationConcurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * Configures the worker to execute activities and orchestrations on virtual threads instead of platform threads.
+     * Virtual threads are disabled by default and require a Java 21 or later runtime.
+     * <p>
+     * When enabled, each activity work item runs on its own virtual thread, which allows a worker to have a large
+     * number of blocking activities, like HTTP or database calls, in flight without sizing a platform thread pool.
+     * The number of in-flight activities is still limited by {@link #activityMaxConcurrency}.
+     *
+     * @param useVirtualThreads {@code true} to run work items on virtual threads, otherwise {@code false}
+     * @return this builder object
+     * @throws IllegalStateException if {@code useVirtualThreads} is {@code true} and the current runtime doesn't
+     *                               support virtual threads
+     */
+    public DurableTaskGrpcWorkerBuilder useVirtualThreads(boolean useVirtualThreads) {
+        if (useVirtualThreads && !VirtualThreads.isSupported()) {
+            throw new IllegalStateException("Virtual threads require Java 21 or later.");
+        }
+
+        this.useVirtualThreads = useVirtualThreads;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of work-item completions that can be in flight to the sidecar at the same time. If not
+     * specified, a default of 100 is used.
+     * <p>
+     * Completions are sent asynchronously so that work-item threads don't wait for a round trip to the sidecar.
+     * Once this many completions are waiting to be acknowledged, threads that finish a work item wait until one of
+     * the outstanding completions is acknowledged.
+     *
+     * @param maxOutstandingCompletions the maximum number of unacknowledged completions
+     * @return this builder object
+     */
+    public DurableTaskGrpcWorkerBuilder maxOutstandingCompletions(int maxOutstandingCompletions) {
+        if (maxOutstandingCompletions < 1) {
+            throw new IllegalArgumentException("The maximum number of outstanding completions must be greater than zero.");
+        }
+
+        this.maxOutstandingCompletions = maxOutstandingCompletions;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of work items that the sidecar can push to this worker before the worker has finished
+     * executing any of them. If not specified, this is the sum of the maximum activity concurrency, the activity queue
+     * capacity, and the orchestration concurrency. A smaller value is split between activities and orchestrations in
+     * the same proportion, and each kind of work item only ever dispatches its own share at a time.
+     * <p>
+     * The worker uses gRPC flow control to request one new work item from the sidecar each time a work item finishes
+     * executing. Work items that the worker doesn't have the capacity to run stay with the sidecar, where they can be
+     * picked up by other workers, instead of being buffered in this worker's memory.
+     *
+     * @param maxConcurrentWorkItems the maximum number of work items that can be in flight on this worker
+     * @return this builder object
+     */
+    public DurableTaskGrpcWorkerBuilder maxConcurrentWorkItems(int maxConcurrentWorkItems) {
+        if (maxConcurrentWorkItems < 1) {
+            throw new IllegalArgumentException("The maximum number of concurrent work items must be greater than zero.");
+        }
+
+        this.maxConcurrentWorkItems = maxConcurrentWorkItems;
+        return this;
+    }
+
+    /**
+     * Sets the number of {@code GetWorkItems} streams that the worker opens to the sidecar. If not specified, a single
+     * stream is used.
+     * <p>
+     * Each stream is read on its own thread and all streams share the worker's activity and orchestration executors.
+     * Opening multiple streams lets a worker on a large host receive work items at a rate that matches its capacity.
+     * The work-item limit configured with {@link #maxConcurrentWorkItems} is split evenly between the streams.
+     *
+     * @param streamCount the number of work-item streams to open
+     * @return this builder object
+     */
+    public DurableTaskGrpcWorkerBuilder workItemStreams(int streamCount) {
+        if (streamCount < 1) {
+            throw new IllegalArgumentException("The number of work-item streams must be greater than zero.");
+        }
+
+        this.workItemStreamCount = streamCount;
+        return this;
+    }
+
+    /**
+     * Configures the worker to open a separate gRPC channel, and therefore a separate connection, for each work-item
+     * stream. By default, all work-item streams are multiplexed over a single channel.
+     * <p>
+     * This setting has no effect when a channel is provided using {@link #grpcChannel}.
+     *
+     * @param useSeparateStreamChannels {@code true} to use one channel per work-item stream, otherwise {@code false}
+     * @return this builder object
+     */
+    public DurableTaskGrpcWorkerBuilder useSeparateStreamChannels(boolean useSeparateStreamChannels) {
+        this.useSeparateStreamChannels = useSeparateStreamChannels;
+        return this;
+    }
+
+    /**
+     * Sets the maximum amount of time that {@link DurableTaskGrpcWorker#close} waits for in-flight work items to finish
+     * and for their results to be delivered to the sidecar. If not specified, a default of 30 seconds is used.
+     * <p>
+     * Use {@link Duration#ZERO} to interrupt in-flight work immediately when the worker is closed.
+     *
+     * @param shutdownTimeout the maximum amount of time to wait for in-flight work items when closing the worker
+     * @return this builder object
+     */
+    public DurableTaskGrpcWorkerBuilder shutdownTimeout(Duration shutdownTimeout) {
+        Helpers.throwIfArgumentNull(shutdownTimeout, "shutdownTimeout");
+        if (shutdownTimeout.isNegative()) {
+            throw new IllegalArgumentException("The shutdown timeout must not be negative.");
+        }
+
+        this.shutdownTimeout = shutdownTimeout;
+        return this;
+    }
+
+    /**
+     * Sets the policy that controls how the worker reconnects to the sidecar after its work-item stream is
+     * interrupted. If not specified, a {@link ReconnectPolicy} with default settings is used.
+     *
+     * @param reconnectPolicy the reconnect policy to use
+     * @return this builder object
+     */
+    public DurableTaskGrpcWorkerBuilder reconnectPolicy(ReconnectPolicy reconnectPolicy) {
+        Helpers.throwIfArgumentNull(reconnectPolicy, "reconnectPolicy");
+        this.reconnectPolicy = reconnectPolicy;
+        return this;
+    }
+
+    /**
+     * Sets the execution priority of the orchestration with the given name. Orchestration work items with a higher
+     * priority are replayed before waiting work items with a lower priority. Orchestrations that aren't given a
+     * priority have a priority of zero.
+     * <p>
+     * Orchestration and activity work items run on separate threads and each kind has its own share of the work
+     * items that the sidecar can push to the worker, so a backlog of activities doesn't hold up orchestration replays.
+     * Only a backlog that also overflows the worker's local activity queues can take up the whole flow-control window.
+     * Priorities only control the order of work items of the same kind.
+     *
+     * @param name the name of the orchestration
+     * @param priority the priority of the orchestration; can be negative
+     * @return this builder object
+     */
+    public DurableTaskGrpcWorkerBuilder orchestrationPriority(String name, int priority) {
+        Helpers.throwIfArgumentNullOrWhiteSpace(name, "name");
+        this.orchestrationPriorities.put(name, priority);
+        return this;
+    }
+
+    /**
+     * Sets the execution priority of the activity with the given name. Activity work items with a higher priority are
+     * started before waiting work items with a lower priority. Activities that aren't given a priority have a
+     * priority of zero.
+     * <p>
+     * Priorities only affect activities that are waiting for an available thread, so they have no effect when the
+     * worker runs activities on virtual threads.
+     *
+     * @param name the name of the activity
+     * @param priority the priority of the activity; can be negative
+     * @return this builder object
+     */
+    public DurableTaskGrpcWorkerBuilder activityPriority(String name, int priority) {
+        Helpers.throwIfArgumentNullOrWhiteSpace(name, "name");
+        this.activityPriorities.put(name, priority);
+        return this;
+    }
+
+    /**
+     * Sets the maximum amount of time that any activity can run for before it is interrupted and failed with an
+     * {@link ActivityTimeoutException}. If not specified, activities can run for an unlimited amount of time.
+     * <p>
+     * Timeouts for specific activities can be configured using {@link #activityTimeout(String, Duration)}. Activities
+     * must respond to thread interruption, for example by not swallowing {@link InterruptedException}, for a timeout
+     * to free up the thread that the activity is running on.
+     *
+     * @param timeout the default activity timeout
+     * @return this builder object
+     */
+    public DurableTaskGrpcWorkerBuilder defaultActivityTimeout(Duration timeout) {
+        this.defaultActivityTimeout = validateActivityTimeout(timeout);
+        return this;
+    }
+
+    /**
+     * Sets the maximum amount of time that the activity with the given name can run for before it is interrupted and
+     * failed with an {@link ActivityTimeoutException}. This overrides the {@link #defaultActivityTimeout}.
+     *
+     * @param name the name of the activity
+     * @param timeout the timeout of the activity
+     * @return this builder object
+     */
+    public DurableTaskGrpcWorkerBuilder activityTimeout(String name, Duration timeout) {
+        Helpers.throwIfArgumentNullOrWhiteSpace(name, "name");
+        this.activityTimeouts.put(name, validateActivityTimeout(timeout));
+        return this;
+    }
+
+    private static Duration validateActivityTimeout(Duration timeout) {
+        Helpers.throwIfArgumentNull(timeout, "timeout");
+        if (timeout.isZero() || timeout.isNegative()) {
+            throw new IllegalArgumentException("The activity timeout must be greater than zero.");
+        }
+        return timeout;
+    }
+
+    /**
+     * Configures the worker to adjust the number of concurrently executing activities and orchestrations based on
+     * observed work-item latency and failures. The default is {@code false}.
+     * <p>
+     * When enabled, {@link #activityMaxConcurrency} and {@link #orchestrationConcurrency} become upper bounds. The
+     * worker raises its concurrency while work items complete quickly and successfully, and lowers it when work items
+     * fail or take much longer than usual, which usually means that a downstream dependency is overloaded. The worker
+     * also asks the sidecar for fewer work items while its concurrency is reduced, so that the work stays available to
+     * other workers.
+     *
+     * @param useAdaptiveConcurrency {@code true} to adjust concurrency automatically, otherwise {@code false}
+     * @return this builder object
+     */
+    public DurableTaskGrpcWorkerBuilder useAdaptiveConcurrency(boolean useAdaptiveConcurrency) {
+        this.useAdaptiveConcurrency = useAdaptiveConcurrency;
+        return this;
+    }
+
+    /**
+     * Limits how often activities with the given name can start on this worker, for example to stay within the
+     * quota of a third-party API that the activity calls.
+     * <p>
+     * Activities that exceed the rate limit are held by the worker until they're allowed to start, rather than
+     * failing and being retried by the orchestration. Starts are spaced evenly at the given rate. Use
+     * {@link #activityRateLimit(String, double, int)} to allow short bursts. The time that activities spend waiting
+     * for their rate limit is reported by {@link DurableTaskGrpcWorker#getMetrics}.
+     * <p>
+     * The rate limit applies to each worker separately. When running multiple workers, divide the quota between them.
+     *
+     * @param name the name of the activity
+     * @param permitsPerSecond the maximum number of activities with the given name that can start per second
+     * @return this builder object
+     */
+    public DurableTaskGrpcWorkerBuilder activityRateLimit(String name, double permitsPerSecond) {
+        return this.activityRateLimit(name, permitsPerSecond, 1);
+    }
+
+    /**
+     * Limits how often activities with the given name can start on this worker, allowing up to {@code burst}
+     * activities to start at once after a quiet period. See {@link #activityRateLimit(String, double)} for details.
+     *
+     * @param name the name of the activity
+     * @param permitsPerSecond the maximum average number of activities with the given name that can start per second
+     * @param burst the maximum number of activities with the given name that can start at the same time
+     * @return this builder object
+     */
+    public DurableTaskGrpcWorkerBuilder activityRateLimit(String name, double permitsPerSecond, int burst) {
+        Helpers.throwIfArgumentNullOrWhiteSpace(name, "name");
+        if (!(permitsPerSecond > 0) || Double.isInfinite(permitsPerSecond)) {
+            throw new IllegalArgumentException("The activity rate limit must be a positive number.");
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("The activity rate limit burst must be greater than zero.");
+        }
+
+        this.activityRateLimits.put(name, new ActivityRateLimit(permitsPerSecond, burst));
+        return this;
+    }
+
+    /**
+     * Configures the worker to retry failed invocations of the activity with the given name in-process before
+     * reporting the failure to the orchestration.
+     * <p>
+     * A local retry avoids the round trips and history events of a durable retry, where the orchestration replays,
+     * waits on a durable timer, and schedules the activity again. It's meant for transient failures that clear up
+     * within a short, bounded delay. Delays between local retries don't occupy a thread, but the activity stays in
+     * flight on this worker until it succeeds or the policy is exhausted. If the worker stops while a local retry is
+     * pending, the most recent failure is reported.
+     * <p>
+     * Local retries back off exactly like durable retries with the same policy. Once the next delay would exceed 30
+     * seconds, the failure is reported to the orchestration instead of being retried locally. Use a durable
+     * {@link RetryPolicy} with {@link TaskOptions} for long back-offs. Both can be combined, in which case each durable
+     * attempt makes up to {@link RetryPolicy#getMaxNumberOfAttempts} local attempts.
+     * <p>
+     * Invocations rejected by a circuit breaker aren't retried locally.
+     *
+     * @param name the name of the activity
+     * @param retryPolicy the policy that controls the number of local attempts and the delays between them
+     * @return this builder object
+     */
+    public DurableTaskGrpcWorkerBuilder activityLocalRetry(String name, RetryPolicy retryPolicy) {
+        Helpers.throwIfArgumentNullOrWhiteSpace(name, "name");
+        Helpers.throwIfArgumentNull(retryPolicy, "retryPolicy");
+        this.activityLocalRetryPolicies.put(name, retryPolicy);
+        return this;
+    }
+
+    /**
+     * Adds a circuit breaker to the activity with the given name.
+     * <p>
+     * After the activity fails {@code failureThreshold} times in a row on this worker, the circuit breaker opens and
+     * the worker fails new invocations of the activity with a {@link CircuitBreakerOpenException} without running
+     * them. Once {@code breakDuration} has passed, the worker runs a single invocation as a probe. If the probe
+     * succeeds, the circuit breaker closes and the activity runs normally again. Otherwise, it stays open for another
+     * {@code breakDuration}.
+     *
+     * @param name the name of the activity
+     * @param failureThreshold the number of consecutive failures that opens the circuit breaker
+     * @param breakDuration how long the circuit breaker stays open before probing the activity again
+     * @return this builder object
+     */
+    public DurableTaskGrpcWorkerBuilder activityCircuitBreaker(String name, int failureThreshold, Duration breakDuration) {
+        Helpers.throwIfArgumentNullOrWhiteSpace(name, "name");
+        Helpers.throwIfArgumentNull(breakDuration, "breakDuration");
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("The circuit breaker failure threshold must be greater than zero.");
+        }
+        if (breakDuration.isZero() || breakDuration.isNegative()) {
+            throw new IllegalArgumentException("The circuit breaker break duration must be greater than zero.");
+        }
+
+        this.activityCircuitBreakers.put(name, new ActivityCircuitBreaker(failureThreshold, breakDuration));
+        return this;
+    }
+
+    /**
+     * Marks the activity with the given name as memoizable. The activity's result must only depend on its input.
+     * <p>
+     * The worker remembers the results of successful invocations of a memoizable activity, keyed by a hash of the
+     * serialized input. When the activity is invoked again with the same input, from any orchestration instance, the
+     * worker returns the remembered result without running the activity. Failed invocations aren't remembered. The
+     * number of invocations that were answered from memory can be obtained from {@link DurableTaskGrpcWorker#getMetrics}.
+     *
+     * @param name the name of the activity
+     * @param maxEntries the maximum number of results to remember; the least recently used are forgotten
+     * @param timeToLive how long to remember each result
+     * @return this builder object
+     */
+    public DurableTaskGrpcWorkerBuilder activityMemoization(String name, int maxEntries, Duration timeToLive) {
+        Helpers.throwIfArgumentNullOrWhiteSpace(name, "name");
+        Helpers.throwIfArgumentNull(timeToLive, "timeToLive");
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("The maximum number of memoized results must be greater than zero.");
+        }
+        if (timeToLive.isZero() || timeToLive.isNegative()) {
+            throw new IllegalArgumentException("The time to live of memoized results must be greater than zero.");
+        }
+
+        this.activityMemoizations.put(name, new ActivityMemoization(maxEntries, timeToLive));
+        return this;
+    }
+
+    /**
+     * Sets the maximum total serialized size of the work items that the worker holds in memory at the same time.
+     * Work items include orchestration histories and activity inputs, which can be large. If not specified, there is
+     * no limit.
+     * <p>
+     * While the limit is exceeded, the worker stops asking the sidecar for new work items until enough in-flight work
+     * items have finished. The limit is a soft limit: a single work item that is larger than the limit is still
+     * processed when the worker has nothing else in flight.
+     *
+     * @param maxBytes the maximum total serialized size of in-flight work items, in bytes
+     * @return this builder object
+     */
+    public DurableTaskGrpcWorkerBuilder maxInFlightWorkItemBytes(long maxBytes) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("The maximum in-flight work-item size must be greater than zero.");
+        }
+
+        this.maxInFlightWorkItemBytes = maxBytes;
+        return this;
+    }
+
+    /**
+     * Sets the fraction of the JVM's maximum heap size above which the worker stops asking the sidecar for new work
+     * items. For example, a value of {@code 0.8} pauses new work while more than 80% of the heap is in use. If not
+     * specified, heap usage doesn't affect the intake of work items.
+     * <p>
+     * Heap usage includes garbage that hasn't been collected yet, so the worker may pause briefly before a garbage
+     * collection. The worker keeps processing at least one work item at a time while paused.
+     *
+     * @param maxHeapUsage the heap usage watermark, greater than 0.0 and at most 1.0
+     * @return this builder object
+     */
+    public DurableTaskGrpcWorkerBuilder maxHeapUsage(double maxHeapUsage) {
+        if (!(maxHeapUsage > 0.0 && maxHeapUsage <= 1.0)) {
+            throw new IllegalArgumentException("The maximum heap usage must be greater than 0.0 and at most 1.0.");
+        }
+
+        this.maxHeapUsage = maxHeapUsage;
+        return this;
+    }
+
+    /**
+     * Configures the worker to replay orchestrations with at least the given number of history events on a separate
+     * set of threads. If not specified, all orchestrations share the same threads.
+     * <p>
+     * Replaying a large history takes much longer than replaying a small one. Separating the two keeps a few large
+     * orchestrations from delaying many small ones. The number of threads for large orchestrations can be configured
+     * using {@link #largeOrchestrationConcurrency}.
+     *
+     * @param historyEventCount the number of past and new history events at which an orchestration is considered large
+     * @return this builder object
+     */
+    public DurableTaskGrpcWorkerBuilder largeOrchestrationThreshold(int historyEventCount) {
+        if (historyEventCount < 1) {
+            throw new IllegalArgumentException("The large orchestration threshold must be greater than zero.");
+        }
+
+        this.largeOrchestrationThreshold = historyEventCount;
+        return this;
+    }
+
+    /**
+     * Sets the number of orchestrations with large histories that the worker can replay concurrently. If not
+     * specified, a quarter of the {@link #orchestrationConcurrency} is used, with a minimum of one. This setting only
+     * has an effect if {@link #largeOrchestrationThreshold} is configured.
+     *
+     * @param concurrency the number of large orchestrations that can be replayed concurrently
+     * @return this builder object
+     */
+    public DurableTaskGrpcWorkerBuilder largeOrchestrationConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("The large orchestration concurrency must be greater than zero.");
+        }
+
+        this.largeOrchestrationConcurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * Configures the worker to keep orchestrations running in memory between work items, so that they don't have to
+     * replay their history every time they receive new events. If not specified, orchestrations replay their full
+     * history for every work item, which takes longer the more history an orchestration has.
+     * <p>
+     * Each orchestration in an extended session runs on its own thread, which waits for new events while the
+     * orchestration awaits a task. Virtual threads are used when the runtime supports them, which makes waiting
+     * orchestrations cheap. On runtimes older than Java 21, each waiting orchestration blocks a platform thread along
+     * with its stack, so {@code maxSessions} is capped at 100 there, and a lower value is a better fit for most
+     * workers. At most {@code maxSessions} orchestrations wait at any time, and a background sweep stops the ones that
+     * haven't received new events within {@code idleTimeout}. Orchestrations whose session was evicted, or whose
+     * history doesn't match their session, for example because they ran on another worker in the meantime, replay
+     * their history as usual.
+     *
+     * @param maxSessions the maximum number of orchestrations to keep in memory; the least recently used are evicted
+     * @param idleTimeout how long an orchestration is kept in memory without receiving new events
+     * @return this builder object
+     */
+    public DurableTaskGrpcWorkerBuilder extendedSessions(int maxSessions, Duration idleTimeout) {
+        Helpers.throwIfArgumentNull(idleTimeout, "idleTimeout");
+        if (maxSessions < 1) {
+            throw new IllegalArgumentException("The maximum number of extended sessions must be greater than zero.");
+        }
+        if (idleTimeout.isZero() || idleTimeout.isNegative()) {
+            throw new IllegalArgumentException("The extended session idle timeout must be greater than zero.");
+        }
+
+        this.extendedSessionMaxSessions = maxSessions;
+        this.extendedSessionIdleTimeout = idleTimeout;
+        return this;
+    }
+
+    /**
+     * Configures the worker to keep the results of finished work items in a local file until the sidecar acknowledges
+     * them. If not specified, results that can't be delivered are lost and the sidecar redelivers the work items.
+     * <p>
+     * Results that still can't be delivered after retrying, for example because the sidecar was unavailable for a
+     * while, are sent again when the worker reconnects, including after the worker process restarts. This avoids
+     * re-running expensive activities whose results were already computed. The file is memory-mapped, so writing to
+     * it is cheap, and it must not be shared by multiple workers at the same time.
+     *
+     * @param file the path of the outbox file, which is created if it doesn't exist
+     * @return this builder object
+     */
+    public DurableTaskGrpcWorkerBuilder completionOutbox(Path file) {
+        Helpers.throwIfArgumentNull(file, "file");
+        this.completionOutboxFile = file;
+        this.completionOutboxCapacity = 0;
+        return this;
+    }
+
+    /**
+     * Configures the worker to keep the results of finished work items in a local file until the sidecar acknowledges
+     * them, using an outbox file of the given size. See {@link #completionOutbox(Path)} for details.
+     * <p>
+     * The size limits the total size of the results that can wait for delivery at the same time. Half of the file
+     * holds the waiting results, and the other half is used to reclaim the space of delivered results. When the outbox
+     * is full, results are still sent but aren't kept. The default size is 64 MB.
+     *
+     * @param file the path of the outbox file, which is created if it doesn't exist
+     * @param capacityBytes the size of the outbox file in bytes
+     * @return this builder object
+     */
+    public DurableTaskGrpcWorkerBuilder completionOutbox(Path file, int capacityBytes) {
+        Helpers.throwIfArgumentNull(file, "file");
+        if (capacityBytes < 1) {
+            throw new IllegalArgumentException("The completion outbox capacity must be greater than zero.");
+        }
+
+        this.completionOutboxFile = file;
+        this.completionOutboxCapacity = capacityBytes;
+        return this;
+    }
+
+    /**
+     * Configures the worker to remember the results of recently finished activities and to send them again, instead of
+     * re-running the activity, when the sidecar redelivers the same activity. If not specified, redelivered activities
+     * always run again.
+     * <p>
+     * The sidecar redelivers an activity when it didn't receive its result, for example after a lost connection or a
+     * sidecar failover. An activity is identified by its orchestration instance, execution, and task ID. Both
+     * successful results and failures are remembered, except for activities rejected by a circuit breaker.
+     *
+     * @param maxEntries the maximum number of activity results to remember; the least recently used are forgotten
+     * @param timeToLive how long to remember each activity result
+     * @return this builder object
+     */
+    public DurableTaskGrpcWorkerBuilder activityDeduplication(int maxEntries, Duration timeToLive) {
+        Helpers.throwIfArgumentNull(timeToLive, "timeToLive");
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("The maximum number of remembered activity results must be greater than zero.");
+        }
+        if (timeToLive.isZero() || timeToLive.isNegative()) {
+            throw new IllegalArgumentException("The time to live of remembered activity results must be greater than zero.");
+        }
+
+        this.activityDeduplicationMaxEntries = maxEntries;
+        this.activityDeduplicationTimeToLive = timeToLive;
+        return this;
+    }
+
     /**
      * Initializes a new {@link DurableTaskGrpcWorker} object with the settings specified in the current builder object.
      * @return a new {@link DurableTaskGrpcWorker} object
+     * @throws IllegalStateException if the settings contradict each other
      */
     public DurableTaskGrpcWorker build() {
+        for (String name : this.activityBulkheads.keySet()) {
+            if (!this.activityFactories.containsKey(name)) {
+                throw new IllegalStateException(String.format(
+                        "The bulkhead for activity '%s' doesn't match a registered non-batch activity.",
+                        name));
+            }
+        }
+
+        if (this.extendedSessionMaxSessions > 0) {
+            // Waiting orchestrations would hold on to their pooled instances and starve other orchestrations
+            this.orchestrationLifecycles.forEach((name, lifecycle) -> {
+                if (lifecycle.getMode() == InstanceLifecycle.Mode.POOLED) {
+                    throw new IllegalStateException(String.format(
+                            "The orchestration '%s' can't use a pooled lifecycle when extended sessions are enabled.",
+                            name));
+                }
+            });
+        }
+
         return new DurableTaskGrpcWorker(this);
     }
+
+    static final class ActivityRateLimit {
+        final double permitsPerSecond;
+        final int burst;
+
+        ActivityRateLimit(double permitsPerSecond, int burst) {
+            this.permitsPerSecond = permitsPerSecond;
+            this.burst = burst;
+        }
+    }
+
+    static final class ActivityCircuitBreaker {
+        final int failureThreshold;
+        final Duration breakDuration;
+
+        ActivityCircuitBreaker(int failureThreshold, Duration breakDuration) {
+            this.failureThreshold = failureThreshold;
+            this.breakDuration = breakDuration;
+        }
+    }
+
+    static final class ActivityMemoization {
+        final int maxEntries;
+        final Duration timeToLive;
+
+        ActivityMemoization(int maxEntries, Duration timeToLive) {
+            this.maxEntries = maxEntries;
+            this.timeToLive = timeToLive;
+        }
+    }
+
+    static final class BatchActivity {
+        final BatchTaskActivity activity;
+        final int maxBatchSize;
+        final Duration lingerTime;
+
+        BatchActivity(BatchTaskActivity activity, int maxBatchSize, Duration lingerTime) {
+            this.activity = activity;
+            this.maxBatchSize = maxBatchSize;
+            this.lingerTime = lingerTime;
+        }
+    }
 }
@@ -0,0 +1,159 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Bounded cache whose entries expire a fixed amount of time after they were added, or optionally after they were last
+ * used.
+ * <p>
+ * Once the cache is full, adding an entry evicts the least recently used one. Expired entries are removed when they're
+ * looked up, when new entries are added, and whenever {@link #evictExpired} is called. An optional eviction listener is
+ * called with the values that are evicted or that expire, while holding the cache's lock.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+final class ExpiringCache<K, V> {
+    private final int maxEntries;
+    private final long timeToLiveNanos;
+    private final boolean expireAfterAccess;
+    private final LinkedHashMap<K, CacheEntry<V>> entries;
+    private final Consumer<V> evictionListener;
+
+    ExpiringCache(int maxEntries, Duration timeToLive) {
+        this(maxEntries, timeToLive, false, value -> { });
+    }
+
+    /**
+     * @param expireAfterAccess {@code true} to measure the time to live from the last time an entry was looked up
+     *                          rather than from the time it was added
+     * @param evictionListener called with values that are evicted or that expire; must not block
+     */
+    ExpiringCache(int maxEntries, Duration timeToLive, boolean expireAfterAccess, Consumer<V> evictionListener) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("The maximum number of entries must be greater than zero.");
+        }
+        if (timeToLive.isZero() || timeToLive.isNegative()) {
+            throw new IllegalArgumentException("The time to live must be greater than zero.");
+        }
+
+        this.maxEntries = maxEntries;
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.expireAfterAccess = expireAfterAccess;
+        this.evictionListener = evictionListener;
+        this.entries = new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+                if (this.size() <= ExpiringCache.this.maxEntries) {
+                    return false;
+                }
+                ExpiringCache.this.evictionListener.accept(eldest.getValue().value);
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Gets the value for a key.
+     *
+     * @return the value, or {@code null} if there is no entry for the key or if it has expired
+     */
+    synchronized V get(K key) {
+        CacheEntry<V> entry = this.entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        long now = System.nanoTime();
+        if (now - entry.time > this.timeToLiveNanos) {
+            this.entries.remove(key);
+            this.evictionListener.accept(entry.value);
+            return null;
+        }
+        if (this.expireAfterAccess) {
+            entry.time = now;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Removes the entry for a key.
+     *
+     * @return the value of the removed entry, or {@code null} if there is no entry for the key or if it has expired
+     */
+    synchronized V remove(K key) {
+        CacheEntry<V> entry = this.entries.remove(key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime() - entry.time > this.timeToLiveNanos) {
+            this.evictionListener.accept(entry.value);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Evicts all expired entries, so that their values don't linger until the next time the cache is used.
+     */
+    synchronized void evictExpired() {
+        this.evictExpired(System.nanoTime(), true);
+    }
+
+    /**
+     * Evicts all entries.
+     */
+    synchronized void clear() {
+        for (CacheEntry<V> entry : this.entries.values()) {
+            this.evictionListener.accept(entry.value);
+        }
+        this.entries.clear();
+    }
+
+    synchronized void put(K key, V value) {
+        long now = System.nanoTime();
+        this.evictExpired(now, false);
+
+        CacheEntry<V> replaced = this.entries.put(key, new CacheEntry<>(value, now));
+        if (replaced != null && replaced.value != value) {
+            this.evictionListener.accept(replaced.value);
+        }
+    }
+
+    synchronized int size() {
+        return this.entries.size();
+    }
+
+    private void evictExpired(long now, boolean checkAllEntries) {
+        // Entries are ordered by when they were last used, which is the order in which they expire if expireAfterAccess
+        // is set. Otherwise, entries that were looked up can expire before the entries in front of them.
+        boolean canStopEarly = this.expireAfterAccess || !checkAllEntries;
+        Iterator<CacheEntry<V>> iterator = this.entries.values().iterator();
+        while (iterator.hasNext()) {
+            CacheEntry<V> entry = iterator.next();
+            if (now - entry.time <= this.timeToLiveNanos) {
+                if (canStopEarly) {
+                    break;
+                }
+                continue;
+            }
+            iterator.remove();
+            this.evictionListener.accept(entry.value);
+        }
+    }
+
+    private static final class CacheEntry<V> {
+        final V value;
+        long time;
+
+        CacheEntry(V value, long time) {
+            this.value = value;
+            this.time = time;
+        }
+    }
+}
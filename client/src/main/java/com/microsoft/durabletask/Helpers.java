@@ -36,6 +36,40 @@ final class Helpers {
         return timeout == null || timeout.isNegative() || timeout.equals(maxDuration);
     }
 
+    /**
+     * Computes the delay before the next attempt of a task according to the backoff settings of a retry policy. This
+     * is shared by durable and local retries, so that both back off the same way.
+     *
+     * @param retryPolicy the retry policy
+     * @param attemptNumber the number of attempts made so far
+     * @return the delay before the next attempt
+     * @throws ArithmeticException if the delay overflows and the policy has no maximum retry interval
+     */
+    static Duration getRetryDelay(RetryPolicy retryPolicy, int attemptNumber) throws ArithmeticException {
+        long maxDelayInMillis = retryPolicy.getMaxRetryInterval().toMillis();
+
+        long nextDelayInMillis;
+        try {
+            nextDelayInMillis = Math.multiplyExact(
+                    retryPolicy.getFirstRetryInterval().toMillis(),
+                    (long)powExact(retryPolicy.getBackoffCoefficient(), attemptNumber));
+        } catch (ArithmeticException overflowException) {
+            if (maxDelayInMillis > 0) {
+                return retryPolicy.getMaxRetryInterval();
+            } else {
+                // If no maximum is specified, just throw
+                throw new ArithmeticException("The retry policy calculation resulted in an arithmetic overflow and no max retry interval was configured.");
+            }
+        }
+
+        // NOTE: A max delay of zero or less is interpreted to mean no max delay
+        if (nextDelayInMillis > maxDelayInMillis && maxDelayInMillis > 0) {
+            return retryPolicy.getMaxRetryInterval();
+        } else {
+            return Duration.ofMillis(nextDelayInMillis);
+        }
+    }
+
     static double powExact(double base, double exponent) throws ArithmeticException {
         if (base == 0.0) {
             return 0.0;
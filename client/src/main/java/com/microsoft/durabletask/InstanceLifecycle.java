@@ -0,0 +1,108 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import java.time.Duration;
+
+/**
+ * Controls how a {@link DurableTaskGrpcWorker} obtains instances of an activity or orchestration from its factory.
+ * <p>
+ * By default, the worker calls the factory's {@code create} method for every execution. Activities that hold expensive
+ * state, like compiled templates, HTTP clients, or machine learning models, can instead use a single shared instance or
+ * a pool of reusable instances. Shared and pooled instances are created when the worker starts, so the first
+ * executions don't pay for their construction.
+ * <p>
+ * Lifecycles are configured when registering a factory, using
+ * {@link DurableTaskGrpcWorkerBuilder#addActivity(TaskActivityFactory, InstanceLifecycle)} or
+ * {@link DurableTaskGrpcWorkerBuilder#addOrchestration(TaskOrchestrationFactory, InstanceLifecycle)}.
+ */
+public final class InstanceLifecycle {
+    private static final Duration DEFAULT_POOL_ACQUIRE_TIMEOUT = Duration.ofMinutes(1);
+    private static final InstanceLifecycle PER_CALL = new InstanceLifecycle(Mode.PER_CALL, 0, null);
+    private static final InstanceLifecycle SINGLETON = new InstanceLifecycle(Mode.SINGLETON, 1, null);
+
+    enum Mode {
+        PER_CALL,
+        SINGLETON,
+        POOLED,
+    }
+
+    private final Mode mode;
+    private final int poolSize;
+    private final Duration acquireTimeout;
+
+    private InstanceLifecycle(Mode mode, int poolSize, Duration acquireTimeout) {
+        this.mode = mode;
+        this.poolSize = poolSize;
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    /**
+     * Gets a lifecycle that creates a new instance for every execution. This is the default.
+     *
+     * @return the per-call lifecycle
+     */
+    public static InstanceLifecycle perCall() {
+        return PER_CALL;
+    }
+
+    /**
+     * Gets a lifecycle that uses a single instance for all executions. The instance is used by multiple threads at the
+     * same time, so it must be thread-safe.
+     *
+     * @return the singleton lifecycle
+     */
+    public static InstanceLifecycle singleton() {
+        return SINGLETON;
+    }
+
+    /**
+     * Gets a lifecycle that reuses instances from a pool of {@code poolSize} instances. Each instance is only used by
+     * one execution at a time, so instances don't need to be thread-safe.
+     * <p>
+     * No more than {@code poolSize} instances ever exist. An execution that starts while all instances are in use waits
+     * up to one minute for one of them to be returned, and fails with an {@link IllegalStateException} otherwise.
+     * <p>
+     * Orchestrations in an extended session keep their instance while they wait for new events, so orchestrations
+     * can't use a pooled lifecycle when extended sessions are enabled.
+     *
+     * @param poolSize the number of instances in the pool
+     * @return a pooled lifecycle
+     * @throws IllegalArgumentException if {@code poolSize} is less than one
+     */
+    public static InstanceLifecycle pooled(int poolSize) {
+        return pooled(poolSize, DEFAULT_POOL_ACQUIRE_TIMEOUT);
+    }
+
+    /**
+     * Gets a lifecycle that reuses instances from a pool of {@code poolSize} instances, as described in
+     * {@link #pooled(int)}, and that waits up to {@code acquireTimeout} for an instance to be returned to the pool.
+     *
+     * @param poolSize the number of instances in the pool
+     * @param acquireTimeout how long an execution waits for an instance while all of them are in use
+     * @return a pooled lifecycle
+     * @throws IllegalArgumentException if {@code poolSize} is less than one or {@code acquireTimeout} is negative
+     */
+    public static InstanceLifecycle pooled(int poolSize, Duration acquireTimeout) {
+        Helpers.throwIfArgumentNull(acquireTimeout, "acquireTimeout");
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("The pool size must be greater than zero.");
+        }
+        if (acquireTimeout.isNegative()) {
+            throw new IllegalArgumentException("The acquire timeout must not be negative.");
+        }
+        return new InstanceLifecycle(Mode.POOLED, poolSize, acquireTimeout);
+    }
+
+    Mode getMode() {
+        return this.mode;
+    }
+
+    int getPoolSize() {
+        return this.poolSize;
+    }
+
+    Duration getAcquireTimeout() {
+        return this.acquireTimeout;
+    }
+}
@@ -0,0 +1,145 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Provides instances of an activity or orchestration according to its {@link InstanceLifecycle}.
+ * <p>
+ * Every instance obtained from {@link #acquire} must be handed back using {@link #release} once the execution that
+ * used it has finished. For pooled lifecycles, this is what makes the instance available to the next execution.
+ *
+ * @param <T> the type of the instances
+ */
+final class InstanceProvider<T> {
+    private final String name;
+    private final Supplier<T> factory;
+    private final InstanceLifecycle lifecycle;
+    private final ArrayDeque<T> idleInstances = new ArrayDeque<>();
+    private final Semaphore pooledInstances;
+    private volatile T singleton;
+
+    /**
+     * @param name the name of the activity or orchestration, used in error messages
+     * @param factory creates new instances
+     */
+    InstanceProvider(String name, Supplier<T> factory, InstanceLifecycle lifecycle) {
+        this.name = name;
+        this.factory = factory;
+        this.lifecycle = lifecycle;
+        this.pooledInstances = lifecycle.getMode() == InstanceLifecycle.Mode.POOLED ?
+                new Semaphore(lifecycle.getPoolSize()) :
+                null;
+    }
+
+    T acquire() {
+        switch (this.lifecycle.getMode()) {
+            case SINGLETON:
+                T instance = this.singleton;
+                if (instance == null) {
+                    synchronized (this) {
+                        instance = this.singleton;
+                        if (instance == null) {
+                            instance = this.create();
+                            this.singleton = instance;
+                        }
+                    }
+                }
+                return instance;
+            case POOLED:
+                return this.acquirePooled();
+            default:
+                return this.create();
+        }
+    }
+
+    private T acquirePooled() {
+        try {
+            long timeoutNanos = this.lifecycle.getAcquireTimeout().toNanos();
+            if (!this.pooledInstances.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new IllegalStateException(String.format(
+                        "None of the %d pooled instances of '%s' became available within %s.",
+                        this.lifecycle.getPoolSize(),
+                        this.name,
+                        this.lifecycle.getAcquireTimeout()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(
+                    String.format("Interrupted while waiting for a pooled instance of '%s'.", this.name),
+                    e);
+        }
+
+        // Holding a permit guarantees that there's either an idle instance or room to create one
+        synchronized (this) {
+            T idleInstance = this.idleInstances.pollFirst();
+            if (idleInstance != null) {
+                return idleInstance;
+            }
+        }
+        try {
+            return this.create();
+        } catch (RuntimeException | Error e) {
+            this.pooledInstances.release();
+            throw e;
+        }
+    }
+
+    void release(T instance) {
+        if (this.lifecycle.getMode() == InstanceLifecycle.Mode.POOLED) {
+            synchronized (this) {
+                this.idleInstances.addFirst(instance);
+            }
+            this.pooledInstances.release();
+        }
+    }
+
+    /**
+     * Creates the shared instance or fills the pool, so that the first executions don't have to create instances.
+     */
+    void warmUp() {
+        switch (this.lifecycle.getMode()) {
+            case SINGLETON:
+                this.release(this.acquire());
+                break;
+            case POOLED:
+                // Each available permit stands for either an idle instance or one that hasn't been created yet. Holding
+                // a permit while creating an instance keeps executions from creating one at the same time.
+                while (this.pooledInstances.tryAcquire()) {
+                    boolean isFull;
+                    synchronized (this) {
+                        isFull = this.idleInstances.size() > this.pooledInstances.availablePermits();
+                    }
+                    if (isFull) {
+                        this.pooledInstances.release();
+                        break;
+                    }
+
+                    T instance;
+                    try {
+                        instance = this.create();
+                    } catch (RuntimeException | Error e) {
+                        this.pooledInstances.release();
+                        throw e;
+                    }
+                    this.release(instance);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private T create() {
+        T instance = this.factory.get();
+        if (instance == null) {
+            throw new IllegalStateException(
+                    String.format("The task factory '%s' returned a null instance.", this.name));
+        }
+        return instance;
+    }
+}
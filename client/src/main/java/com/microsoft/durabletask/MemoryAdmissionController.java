@@ -0,0 +1,144 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pauses the intake of new work items while the worker is under memory pressure.
+ * <p>
+ * The controller tracks the serialized size of all work items that the worker has received but not yet finished, as
+ * well as the JVM's heap usage. While either one is above its watermark, finished work items park their stream
+ * credits instead of asking the sidecar for more work. Parked credits are returned once both values are back below
+ * their watermarks, which is checked whenever a work item finishes and periodically using {@link #recheck}. Only as
+ * many credits are returned as the remaining byte budget can hold, based on the average work-item size, so that the
+ * worker doesn't overshoot the watermark as soon as it resumes. To make sure the worker always makes progress, a
+ * credit is returned when nothing is in flight, even under memory pressure.
+ */
+final class MemoryAdmissionController {
+    private final long maxInFlightBytes;
+    private final double maxHeapUsage;
+    private final Logger logger;
+    private final ArrayDeque<Runnable> parkedCredits = new ArrayDeque<>();
+
+    private long inFlightBytes;
+    private int inFlightCount;
+    private int outstandingCredits;
+    private double averageWorkItemBytes;
+    private boolean isPaused;
+
+    /**
+     * @param maxInFlightBytes the maximum total serialized size of in-flight work items
+     * @param maxHeapUsage the maximum fraction of the maximum heap size that can be in use
+     */
+    MemoryAdmissionController(long maxInFlightBytes, double maxHeapUsage, Logger logger) {
+        this.maxInFlightBytes = maxInFlightBytes;
+        this.maxHeapUsage = maxHeapUsage;
+        this.logger = logger;
+    }
+
+    synchronized void onReceived(long workItemBytes) {
+        this.inFlightBytes += workItemBytes;
+        this.inFlightCount++;
+        if (this.outstandingCredits > 0) {
+            this.outstandingCredits--;
+        }
+        this.averageWorkItemBytes = this.averageWorkItemBytes == 0 ?
+                workItemBytes :
+                this.averageWorkItemBytes + 0.2 * (workItemBytes - this.averageWorkItemBytes);
+    }
+
+    /**
+     * Records that a work item has finished and either returns its stream credit or parks it.
+     *
+     * @param workItemBytes the serialized size of the work item that was passed to {@link #onReceived}
+     * @param credit callback that asks the sidecar for another work item
+     */
+    void onCompleted(long workItemBytes, Runnable credit) {
+        List<Runnable> creditsToReturn;
+        synchronized (this) {
+            this.inFlightBytes -= workItemBytes;
+            this.inFlightCount--;
+            this.parkedCredits.addLast(credit);
+            creditsToReturn = this.takeAdmittedCredits();
+        }
+
+        creditsToReturn.forEach(Runnable::run);
+    }
+
+    /**
+     * Returns parked credits if the memory pressure has gone down since the last work item finished.
+     */
+    void recheck() {
+        List<Runnable> creditsToReturn;
+        synchronized (this) {
+            if (this.parkedCredits.isEmpty()) {
+                return;
+            }
+            creditsToReturn = this.takeAdmittedCredits();
+        }
+
+        creditsToReturn.forEach(Runnable::run);
+    }
+
+    private List<Runnable> takeAdmittedCredits() {
+        // Credits that were returned earlier will bring in more work items, so they count against the budget
+        double expectedBytes = this.inFlightBytes + this.outstandingCredits * this.averageWorkItemBytes;
+        String pressure = this.getMemoryPressure(expectedBytes);
+        int admittedCount;
+        if (pressure == null) {
+            if (this.isPaused) {
+                this.isPaused = false;
+                this.logger.log(Level.FINE, "Memory pressure has eased. Resuming work-item intake.");
+            }
+
+            double headroom = this.maxInFlightBytes - expectedBytes;
+            admittedCount = (int) Math.min(this.parkedCredits.size(), headroom / Math.max(1, this.averageWorkItemBytes));
+        } else {
+            if (!this.isPaused) {
+                this.isPaused = true;
+                this.logger.log(Level.FINE, "Pausing work-item intake: {0}.", pressure);
+            }
+            admittedCount = 0;
+        }
+
+        if (admittedCount == 0 && this.inFlightCount == 0 && this.outstandingCredits == 0) {
+            admittedCount = Math.min(1, this.parkedCredits.size());
+        }
+
+        List<Runnable> credits = new ArrayList<>(admittedCount);
+        for (int i = 0; i < admittedCount; i++) {
+            credits.add(this.parkedCredits.removeFirst());
+        }
+        this.outstandingCredits += admittedCount;
+        return credits;
+    }
+
+    /**
+     * @return a description of the memory pressure, or {@code null} if both values are below their watermarks
+     */
+    private String getMemoryPressure(double expectedBytes) {
+        if (expectedBytes >= this.maxInFlightBytes) {
+            return String.format(
+                    "in-flight work items use about %.0f bytes, reaching the limit of %d bytes",
+                    expectedBytes,
+                    this.maxInFlightBytes);
+        }
+
+        // This includes garbage that hasn't been collected yet, so it errs on the side of pausing too early
+        Runtime runtime = Runtime.getRuntime();
+        double heapUsage = (double) (runtime.totalMemory() - runtime.freeMemory()) / runtime.maxMemory();
+        if (heapUsage > this.maxHeapUsage) {
+            return String.format(
+                    "heap usage is at %.0f%%, more than the limit of %.0f%%",
+                    heapUsage * 100,
+                    this.maxHeapUsage * 100);
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,115 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes orchestration work items on instance-striped lanes, optionally with a separate set of lanes for
+ * orchestrations with large histories.
+ * <p>
+ * Replaying a history with thousands of events takes much longer than replaying a small one. Routing large
+ * orchestrations to their own lanes keeps them from delaying the small, latency-sensitive orchestrations that would
+ * otherwise share a lane with them. An instance's history can cross the size threshold between two work items, so an
+ * instance keeps using the lanes it's currently running on until all of its work items have finished. This preserves
+ * the guarantee that an instance is never replayed by two threads at the same time.
+ */
+final class OrchestrationLanes {
+    private final StripedExecutor standardLanes;
+    private final StripedExecutor largeLanes;
+    private final int largeHistoryThreshold;
+    private final ConcurrentHashMap<String, ActiveInstance> activeInstances = new ConcurrentHashMap<>();
+
+    /**
+     * @param standardLanes the lanes for orchestrations with small histories
+     * @param largeLanes the lanes for orchestrations with large histories, or {@code null} to use the standard lanes
+     *                   for all orchestrations
+     * @param largeHistoryThreshold the number of history events at which an orchestration is considered large
+     */
+    OrchestrationLanes(StripedExecutor standardLanes, StripedExecutor largeLanes, int largeHistoryThreshold) {
+        this.standardLanes = standardLanes;
+        this.largeLanes = largeLanes;
+        this.largeHistoryThreshold = largeHistoryThreshold;
+    }
+
+    boolean isLarge(int historyEventCount) {
+        return this.largeLanes != null && historyEventCount >= this.largeHistoryThreshold;
+    }
+
+    /**
+     * Schedules an orchestration work item, blocking the calling thread until its lane has room for it.
+     *
+     * @param instanceId the ID of the orchestration instance
+     * @param historyEventCount the number of past and new history events in the work item
+     * @param task the task that executes the work item
+     * @param priority the priority of the work item; must be the same for all work items of an instance
+     * @throws InterruptedException if the calling thread is interrupted while waiting for capacity
+     */
+    void execute(String instanceId, int historyEventCount, Runnable task, int priority) throws InterruptedException {
+        if (this.largeLanes == null) {
+            this.standardLanes.execute(instanceId, task, priority);
+            return;
+        }
+
+        StripedExecutor preferredLanes = this.isLarge(historyEventCount) ? this.largeLanes : this.standardLanes;
+        ActiveInstance activeInstance = this.activeInstances.compute(instanceId, (id, existing) -> {
+            ActiveInstance instance = existing != null ? existing : new ActiveInstance(preferredLanes);
+            instance.pendingWorkItems++;
+            return instance;
+        });
+
+        try {
+            activeInstance.lanes.execute(instanceId, () -> {
+                try {
+                    task.run();
+                } finally {
+                    this.onWorkItemFinished(instanceId);
+                }
+            }, priority);
+        } catch (InterruptedException | RuntimeException e) {
+            this.onWorkItemFinished(instanceId);
+            throw e;
+        }
+    }
+
+    private void onWorkItemFinished(String instanceId) {
+        this.activeInstances.computeIfPresent(
+                instanceId,
+                (id, instance) -> --instance.pendingWorkItems == 0 ? null : instance);
+    }
+
+    void shutdown() {
+        this.standardLanes.shutdown();
+        if (this.largeLanes != null) {
+            this.largeLanes.shutdown();
+        }
+    }
+
+    void shutdownNow() {
+        this.standardLanes.shutdownNow();
+        if (this.largeLanes != null) {
+            this.largeLanes.shutdownNow();
+        }
+    }
+
+    boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        if (!this.standardLanes.awaitTermination(timeout, unit)) {
+            return false;
+        }
+        return this.largeLanes == null ||
+                this.largeLanes.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    private static final class ActiveInstance {
+        final StripedExecutor lanes;
+
+        // Only accessed inside ConcurrentHashMap.compute, which serializes access per instance
+        int pendingWorkItems;
+
+        ActiveInstance(StripedExecutor lanes) {
+            this.lanes = lanes;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A task that can be ordered in a {@link java.util.concurrent.PriorityBlockingQueue}.
+ * <p>
+ * Tasks with a higher priority run first. Tasks with the same priority run in the order in which they were created,
+ * which preserves the per-instance ordering guarantees of {@link StripedExecutor}.
+ */
+final class PrioritizedTask implements Runnable, Comparable<PrioritizedTask> {
+    static final int DEFAULT_PRIORITY = 0;
+
+    private static final AtomicLong nextSequenceNumber = new AtomicLong();
+
+    private final Runnable task;
+    private final int priority;
+    private final long sequenceNumber;
+
+    PrioritizedTask(Runnable task, int priority) {
+        this.task = task;
+        this.priority = priority;
+        this.sequenceNumber = nextSequenceNumber.getAndIncrement();
+    }
+
+    @Override
+    public void run() {
+        this.task.run();
+    }
+
+    @Override
+    public int compareTo(PrioritizedTask other) {
+        if (this.priority != other.priority) {
+            return Integer.compare(other.priority, this.priority);
+        }
+        return Long.compare(this.sequenceNumber, other.sequenceNumber);
+    }
+}
@@ -0,0 +1,166 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Controls how a {@link DurableTaskGrpcWorker} reconnects to the sidecar after its work-item stream is interrupted.
+ * <p>
+ * The first reconnect attempt after a disconnect is made immediately, so that a brief sidecar interruption doesn't
+ * stall the worker. If that attempt also fails, subsequent attempts are delayed using exponential backoff, up to a
+ * maximum delay. A random jitter is subtracted from each delay so that many workers that lose their connection at the
+ * same time don't all reconnect in lockstep. When the worker owns its gRPC channel, it also reconnects as soon as the
+ * channel reports that the sidecar is reachable again, without waiting for the rest of the delay.
+ * <p>
+ * The backoff starts over once a stream delivered a work item or stayed open for at least the maximum retry interval,
+ * since either shows that the connection was healthy.
+ */
+public final class ReconnectPolicy {
+
+    private Duration firstRetryInterval = Duration.ofSeconds(1);
+    private Duration maxRetryInterval = Duration.ofSeconds(15);
+    private double backoffCoefficient = 2.0;
+    private double jitterFactor = 0.5;
+
+    /**
+     * Creates a new {@code ReconnectPolicy} object with the default settings.
+     */
+    public ReconnectPolicy() {
+    }
+
+    /**
+     * Sets the amount of time to delay between the second and third reconnect attempts. The default is 1 second.
+     *
+     * @param firstRetryInterval the delay used for the first backed-off reconnect attempt
+     * @return this reconnect policy object
+     * @throws IllegalArgumentException if {@code firstRetryInterval} is {@code null}, zero, or negative
+     */
+    public ReconnectPolicy setFirstRetryInterval(Duration firstRetryInterval) {
+        if (firstRetryInterval == null) {
+            throw new IllegalArgumentException("firstRetryInterval cannot be null.");
+        }
+        if (firstRetryInterval.isZero() || firstRetryInterval.isNegative()) {
+            throw new IllegalArgumentException("The value for firstRetryInterval must be greater than zero.");
+        }
+        this.firstRetryInterval = firstRetryInterval;
+        return this;
+    }
+
+    /**
+     * Sets the maximum time to delay between reconnect attempts. The default is 15 seconds.
+     *
+     * @param maxRetryInterval the maximum time to delay between reconnect attempts
+     * @return this reconnect policy object
+     * @throws IllegalArgumentException if {@code maxRetryInterval} is {@code null} or less than the first retry interval
+     */
+    public ReconnectPolicy setMaxRetryInterval(Duration maxRetryInterval) {
+        if (maxRetryInterval == null) {
+            throw new IllegalArgumentException("maxRetryInterval cannot be null.");
+        }
+        if (maxRetryInterval.compareTo(this.firstRetryInterval) < 0) {
+            throw new IllegalArgumentException("The value for maxRetryInterval must be greater than or equal to the value for firstRetryInterval.");
+        }
+        this.maxRetryInterval = maxRetryInterval;
+        return this;
+    }
+
+    /**
+     * Sets the exponential backoff coefficient used to determine the delay between subsequent reconnect attempts.
+     * Must be 1.0 or greater. The default is 2.0.
+     *
+     * @param backoffCoefficient the exponential backoff coefficient
+     * @return this reconnect policy object
+     * @throws IllegalArgumentException if {@code backoffCoefficient} is less than 1.0
+     */
+    public ReconnectPolicy setBackoffCoefficient(double backoffCoefficient) {
+        if (backoffCoefficient < 1.0) {
+            throw new IllegalArgumentException("The value for backoffCoefficient must be greater or equal to 1.0.");
+        }
+        this.backoffCoefficient = backoffCoefficient;
+        return this;
+    }
+
+    /**
+     * Sets the fraction of each delay that is randomized. Must be between 0.0 and 1.0. The default is 0.5.
+     * <p>
+     * A jitter factor of 0.5 means that each delay is a random value between half of the computed backoff delay and
+     * the full computed backoff delay. A jitter factor of 0.0 disables jitter.
+     *
+     * @param jitterFactor the fraction of each delay that is randomized
+     * @return this reconnect policy object
+     * @throws IllegalArgumentException if {@code jitterFactor} is less than 0.0 or greater than 1.0
+     */
+    public ReconnectPolicy setJitterFactor(double jitterFactor) {
+        if (jitterFactor < 0.0 || jitterFactor > 1.0) {
+            throw new IllegalArgumentException("The value for jitterFactor must be between 0.0 and 1.0.");
+        }
+        this.jitterFactor = jitterFactor;
+        return this;
+    }
+
+    /**
+     * Gets the configured amount of time to delay between the second and third reconnect attempts.
+     * @return the configured amount of time to delay between the second and third reconnect attempts
+     */
+    public Duration getFirstRetryInterval() {
+        return this.firstRetryInterval;
+    }
+
+    /**
+     * Gets the configured maximum time to delay between reconnect attempts.
+     * @return the configured maximum time to delay between reconnect attempts
+     */
+    public Duration getMaxRetryInterval() {
+        return this.maxRetryInterval;
+    }
+
+    /**
+     * Gets the configured exponential backoff coefficient.
+     * @return the configured exponential backoff coefficient
+     */
+    public double getBackoffCoefficient() {
+        return this.backoffCoefficient;
+    }
+
+    /**
+     * Gets the configured fraction of each delay that is randomized.
+     * @return the configured fraction of each delay that is randomized
+     */
+    public double getJitterFactor() {
+        return this.jitterFactor;
+    }
+
+    /**
+     * Counts the consecutive failed connection attempts after a work-item stream was closed.
+     *
+     * @param failedAttempts the number of consecutive failed connection attempts before the stream was opened
+     * @param receivedWorkItems whether the stream delivered any work items
+     * @param openDuration how long the stream was open
+     * @return the number of consecutive failed connection attempts, including the closed stream
+     */
+    int getFailedAttempts(int failedAttempts, boolean receivedWorkItems, Duration openDuration) {
+        if (receivedWorkItems || openDuration.compareTo(this.maxRetryInterval) >= 0) {
+            return 1;
+        }
+        return failedAttempts + 1;
+    }
+
+    /**
+     * Computes the delay before the given reconnect attempt.
+     *
+     * @param attempt the number of consecutive failed connection attempts so far; 1 for the first reconnect
+     * @return the amount of time to wait before reconnecting
+     */
+    Duration getDelay(int attempt) {
+        if (attempt <= 1) {
+            return Duration.ZERO;
+        }
+
+        double backoffMillis = this.firstRetryInterval.toMillis() * Math.pow(this.backoffCoefficient, attempt - 2);
+        double cappedMillis = Math.min(backoffMillis, this.maxRetryInterval.toMillis());
+        double jitterMillis = cappedMillis * this.jitterFactor * ThreadLocalRandom.current().nextDouble();
+        return Duration.ofMillis((long) (cappedMillis - jitterMillis));
+    }
+}
@@ -0,0 +1,97 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes tasks on a fixed number of single-threaded lanes, where the lane is selected by hashing a string key.
+ * <p>
+ * Tasks that share a key always run on the same lane and therefore run one at a time and in the order in which they
+ * were submitted. Tasks with different keys can run in parallel on different lanes. Within a lane, waiting tasks with
+ * a higher priority are started before tasks with a lower priority, so callers must use the same priority for every
+ * task that shares a key.
+ */
+final class StripedExecutor {
+    private final BoundedExecutor[] lanes;
+
+    StripedExecutor(int laneCount, int laneCapacity, ThreadFactory threadFactory) {
+        if (laneCount < 1) {
+            throw new IllegalArgumentException("The lane count must be greater than zero.");
+        }
+
+        this.lanes = new BoundedExecutor[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            ThreadPoolExecutor laneThread = new ThreadPoolExecutor(
+                    1,
+                    1,
+                    0,
+                    TimeUnit.MILLISECONDS,
+                    new PriorityBlockingQueue<>(),
+                    threadFactory);
+            this.lanes[i] = new BoundedExecutor(laneThread, laneCapacity);
+        }
+    }
+
+    /**
+     * Schedules {@code task} on the lane that owns {@code key}, blocking the calling thread until that lane has room
+     * for it.
+     *
+     * @param key the key used to select a lane, like an orchestration instance ID
+     * @param task the task to run
+     * @throws InterruptedException if the calling thread is interrupted while waiting for capacity
+     */
+    void execute(String key, Runnable task) throws InterruptedException {
+        this.execute(key, task, PrioritizedTask.DEFAULT_PRIORITY);
+    }
+
+    /**
+     * Schedules {@code task} with the given priority on the lane that owns {@code key}, blocking the calling thread
+     * until that lane has room for it.
+     *
+     * @param key the key used to select a lane, like an orchestration instance ID
+     * @param task the task to run
+     * @param priority the priority of the task; must be the same for all tasks that share {@code key}
+     * @throws InterruptedException if the calling thread is interrupted while waiting for capacity
+     */
+    void execute(String key, Runnable task, int priority) throws InterruptedException {
+        this.lanes[this.getLaneIndex(key)].execute(task, priority);
+    }
+
+    int getLaneIndex(String key) {
+        // Spread the hash bits so that keys with similar prefixes don't pile up on the same lane
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return Math.floorMod(hash, this.lanes.length);
+    }
+
+    int getLaneCount() {
+        return this.lanes.length;
+    }
+
+    void shutdown() {
+        for (BoundedExecutor lane : this.lanes) {
+            lane.shutdown();
+        }
+    }
+
+    void shutdownNow() {
+        for (BoundedExecutor lane : this.lanes) {
+            lane.shutdownNow();
+        }
+    }
+
+    boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (BoundedExecutor lane : this.lanes) {
+            long remaining = deadline - System.nanoTime();
+            if (!lane.awaitTermination(Math.max(0, remaining), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
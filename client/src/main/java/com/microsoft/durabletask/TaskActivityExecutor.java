@@ -2,40 +2,293 @@
 // Licensed under the MIT License.
 package com.microsoft.durabletask;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 final class TaskActivityExecutor {
-    private final HashMap<String, TaskActivityFactory> activityFactories;
+    // Local retries keep their work item in flight, so failures that need a longer delay are reported to the
+    // orchestration instead, where a durable retry policy can take over
+    static final Duration MAX_LOCAL_RETRY_DELAY = Duration.ofSeconds(30);
+
+    private final Map<String, InstanceProvider<TaskActivity>> activityInstances;
     private final DataConverter dataConverter;
     private final Logger logger;
+    private final Map<String, Duration> activityTimeouts;
+    private final Duration defaultActivityTimeout;
+    private final ScheduledExecutorService watchdog;
+    private final Map<String, CircuitBreaker> circuitBreakers;
+    private final Map<String, RetryPolicy> retryPolicies;
+    private final ScheduledExecutorService retryScheduler;
+    private final Executor retryExecutor;
 
     public TaskActivityExecutor(
             HashMap<String, TaskActivityFactory> activityFactories,
             DataConverter dataConverter,
             Logger logger) {
-        this.activityFactories = activityFactories;
+        this(
+                getPerCallInstances(activityFactories),
+                dataConverter,
+                logger,
+                Collections.emptyMap(),
+                null,
+                null,
+                Collections.emptyMap(),
+                Collections.emptyMap(),
+                null,
+                null);
+    }
+
+    /**
+     * Creates a {@code TaskActivityExecutor} that enforces activity timeouts and circuit breakers and retries failed
+     * activities locally.
+     *
+     * @param activityInstances provide the activity instances according to their lifecycles, keyed by activity name
+     * @param activityTimeouts timeouts for specific activities, keyed by activity name
+     * @param defaultActivityTimeout the timeout for activities not in {@code activityTimeouts}, or {@code null} for none
+     * @param watchdog the scheduler used to interrupt activities that exceed their timeout; required if any timeout is
+     *                 configured
+     * @param circuitBreakers circuit breakers for specific activities, keyed by activity name
+     * @param retryPolicies local retry policies for specific activities, keyed by activity name
+     * @param retryScheduler the scheduler used to wait between retries; required if any retry policy is configured
+     * @param retryExecutor the executor that runs retries once their delay has passed; required if any retry policy is
+     *                      configured
+     */
+    public TaskActivityExecutor(
+            Map<String, InstanceProvider<TaskActivity>> activityInstances,
+            DataConverter dataConverter,
+            Logger logger,
+            Map<String, Duration> activityTimeouts,
+            Duration defaultActivityTimeout,
+            ScheduledExecutorService watchdog,
+            Map<String, CircuitBreaker> circuitBreakers,
+            Map<String, RetryPolicy> retryPolicies,
+            ScheduledExecutorService retryScheduler,
+            Executor retryExecutor) {
+        this.activityInstances = activityInstances;
         this.dataConverter = dataConverter;
         this.logger = logger;
+        this.activityTimeouts = activityTimeouts;
+        this.defaultActivityTimeout = defaultActivityTimeout;
+        this.watchdog = watchdog;
+        this.circuitBreakers = circuitBreakers;
+        this.retryPolicies = retryPolicies;
+        this.retryScheduler = retryScheduler;
+        this.retryExecutor = retryExecutor;
     }
 
-    public String execute(String taskName, String input, int taskId) throws Throwable {
-        TaskActivityFactory factory = this.activityFactories.get(taskName);
-        if (factory == null) {
-            throw new IllegalStateException(
-                    String.format("No activity task named '%s' is registered.", taskName));
+    /**
+     * Runs an activity. Synchronous activities run on the calling thread and return a completed future.
+     * {@link AsyncTaskActivity} implementations return as soon as they've started, and the future completes when
+     * their stage completes.
+     * <p>
+     * If the activity has a local retry policy, failed attempts are retried on the retry executor after the policy's
+     * delay, and the future only completes exceptionally once the policy is exhausted.
+     *
+     * @return a future that completes with the serialized output, or exceptionally if the activity failed
+     */
+    public CompletableFuture<String> execute(String taskName, String input, int taskId) {
+        RetryPolicy retryPolicy = this.retryPolicies.get(taskName);
+        if (retryPolicy == null) {
+            return this.executeOnce(taskName, input);
         }
-        
-        TaskActivity activity = factory.create();
-        if (activity == null) {
-            throw new IllegalStateException(
-                    String.format("The task factory '%s' returned a null TaskActivity object.", taskName));
+
+        CompletableFuture<String> result = new CompletableFuture<>();
+        this.executeWithRetry(taskName, input, taskId, retryPolicy, 1, System.nanoTime(), result);
+        return result;
+    }
+
+    private void executeWithRetry(
+            String taskName,
+            String input,
+            int taskId,
+            RetryPolicy retryPolicy,
+            int attempt,
+            long startTime,
+            CompletableFuture<String> result) {
+        this.executeOnce(taskName, input).whenComplete((output, e) -> {
+            if (e == null) {
+                result.complete(output);
+                return;
+            }
+
+            Duration delay = getRetryDelay(retryPolicy, attempt, startTime);
+            if (delay == null || e instanceof CircuitBreakerOpenException) {
+                result.completeExceptionally(e);
+                return;
+            }
+
+            this.logger.log(Level.FINE, String.format(
+                    "Activity '%s' (#%d) failed on attempt %d and will be retried locally in %d ms: %s",
+                    taskName,
+                    taskId,
+                    attempt,
+                    delay.toMillis(),
+                    e));
+            Runnable retry = () -> this.executeWithRetry(
+                    taskName,
+                    input,
+                    taskId,
+                    retryPolicy,
+                    attempt + 1,
+                    startTime,
+                    result);
+            try {
+                this.retryScheduler.schedule(
+                        () -> {
+                            try {
+                                this.retryExecutor.execute(retry);
+                            } catch (RejectedExecutionException rejected) {
+                                result.completeExceptionally(e);
+                            }
+                        },
+                        delay.toNanos(),
+                        TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException rejected) {
+                // The worker is shutting down, so report the failure that we have
+                result.completeExceptionally(e);
+            }
+        });
+    }
+
+    /**
+     * Computes the delay before the next local retry using the same backoff rules as durable retries.
+     *
+     * @param attempt the number of attempts made so far
+     * @return the delay before the next attempt, or {@code null} if the policy is exhausted or if the delay is too
+     *         long for a local retry
+     */
+    private static Duration getRetryDelay(RetryPolicy retryPolicy, int attempt, long startTime) {
+        if (attempt >= retryPolicy.getMaxNumberOfAttempts()) {
+            return null;
+        }
+
+        Duration delay;
+        try {
+            delay = Helpers.getRetryDelay(retryPolicy, attempt);
+        } catch (ArithmeticException e) {
+            return null;
+        }
+
+        // Long back-offs are better served by a durable retry, which doesn't keep the work item in flight
+        if (delay.compareTo(MAX_LOCAL_RETRY_DELAY) > 0) {
+            return null;
+        }
+
+        // A retry timeout of zero means that there is no maximum
+        Duration retryTimeout = retryPolicy.getRetryTimeout();
+        if (retryTimeout.compareTo(Duration.ZERO) > 0 &&
+                Duration.ofNanos(System.nanoTime() - startTime).plus(delay).compareTo(retryTimeout) > 0) {
+            return null;
         }
+        return delay;
+    }
+
+    private CompletableFuture<String> executeOnce(String taskName, String input) {
+        // Fail fast without creating the activity if its dependency is known to be failing
+        CircuitBreaker circuitBreaker = this.circuitBreakers.get(taskName);
+        long permit = 0;
+        if (circuitBreaker != null) {
+            permit = circuitBreaker.tryAcquire();
+            if (permit == CircuitBreaker.REJECTED) {
+                return failedFuture(new CircuitBreakerOpenException(taskName));
+            }
+        }
+
+        CompletableFuture<String> output;
+        try {
+            InstanceProvider<TaskActivity> instances = this.activityInstances.get(taskName);
+            if (instances == null) {
+                throw new IllegalStateException(
+                        String.format("No activity task named '%s' is registered.", taskName));
+            }
+
+            TaskActivity activity = instances.acquire();
+            try {
+                output = activity instanceof AsyncTaskActivity ?
+                        this.runAsync((AsyncTaskActivity) activity, taskName, input) :
+                        CompletableFuture.completedFuture(this.run(activity, taskName, input));
+            } catch (Throwable e) {
+                instances.release(activity);
+                throw e;
+            }
+            output.whenComplete((value, e) -> instances.release(activity));
+        } catch (Throwable e) {
+            output = failedFuture(e);
+        }
+
+        if (circuitBreaker == null) {
+            return output;
+        }
+
+        // Update the circuit breaker before anyone who waits for the result can observe it
+        long acquiredPermit = permit;
+        CompletableFuture<String> result = new CompletableFuture<>();
+        output.whenComplete((value, e) -> {
+            if (e == null) {
+                circuitBreaker.onSuccess(acquiredPermit);
+                result.complete(value);
+            } else {
+                circuitBreaker.onFailure(acquiredPermit);
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Runs a batch activity for several invocations at once. Timeouts and circuit breakers apply to the batch as a
+     * whole.
+     *
+     * @param inputs the serialized inputs of the invocations
+     * @return the serialized outputs, in the same order as {@code inputs}
+     */
+    public List<String> executeBatch(String taskName, BatchTaskActivity activity, List<String> inputs) throws Throwable {
+        return this.runWithCircuitBreaker(taskName, () -> this.runBatch(activity, taskName, inputs));
+    }
+
+    private <T> T runWithCircuitBreaker(String taskName, ActivityInvocation<T> invocation) throws Throwable {
+        // Fail fast without creating the activity if its dependency is known to be failing
+        CircuitBreaker circuitBreaker = this.circuitBreakers.get(taskName);
+        if (circuitBreaker == null) {
+            return invocation.run();
+        }
+
+        long permit = circuitBreaker.tryAcquire();
+        if (permit == CircuitBreaker.REJECTED) {
+            throw new CircuitBreakerOpenException(taskName);
+        }
+
+        T output;
+        try {
+            output = invocation.run();
+        } catch (Throwable e) {
+            circuitBreaker.onFailure(permit);
+            throw e;
+        }
+        circuitBreaker.onSuccess(permit);
+        return output;
+    }
 
+    private String run(TaskActivity activity, String taskName, String input) {
         TaskActivityContextImpl context = new TaskActivityContextImpl(taskName, input);
 
         // Unhandled exceptions are allowed to escape
-        Object output = activity.run(context);
+        Object output = this.runWithTimeout(taskName, () -> activity.run(context));
         if (output != null) {
             return this.dataConverter.serialize(output);
         }
@@ -43,6 +296,158 @@ final class TaskActivityExecutor {
         return null;
     }
 
+    private CompletableFuture<String> runAsync(AsyncTaskActivity activity, String taskName, String input) {
+        CompletionStage<?> stage = activity.runAsync(new TaskActivityContextImpl(taskName, input));
+        if (stage == null) {
+            throw new IllegalStateException(
+                    String.format("The async activity '%s' returned a null CompletionStage.", taskName));
+        }
+
+        CompletableFuture<String> result = new CompletableFuture<>();
+
+        stage.whenComplete((output, e) -> {
+            if (e != null) {
+                result.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+                return;
+            }
+
+            try {
+                result.complete(output != null ? this.dataConverter.serialize(output) : null);
+            } catch (Throwable serializationFailure) {
+                result.completeExceptionally(serializationFailure);
+            }
+        });
+
+        // Nothing is blocked on the activity, so a timeout fails the result and cancels the stage instead of
+        // interrupting a thread
+        Duration timeout = this.activityTimeouts.getOrDefault(taskName, this.defaultActivityTimeout);
+        if (timeout != null && !result.isDone()) {
+            ScheduledFuture<?> timer = this.watchdog.schedule(
+                    () -> {
+                        if (result.completeExceptionally(new ActivityTimeoutException(taskName, timeout))) {
+                            cancelQuietly(stage);
+                        }
+                    },
+                    timeout.toNanos(),
+                    TimeUnit.NANOSECONDS);
+            result.whenComplete((output, e) -> timer.cancel(false));
+        }
+        return result;
+    }
+
+    private static Map<String, InstanceProvider<TaskActivity>> getPerCallInstances(
+            Map<String, TaskActivityFactory> activityFactories) {
+        Map<String, InstanceProvider<TaskActivity>> activityInstances = new HashMap<>();
+        activityFactories.forEach((name, factory) -> activityInstances.put(
+                name,
+                new InstanceProvider<>(name, factory::create, InstanceLifecycle.perCall())));
+        return activityInstances;
+    }
+
+    private static <T> CompletableFuture<T> failedFuture(Throwable e) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+        return future;
+    }
+
+    private static void cancelQuietly(CompletionStage<?> stage) {
+        try {
+            stage.toCompletableFuture().cancel(true);
+        } catch (UnsupportedOperationException e) {
+            // Not every CompletionStage implementation can be cancelled
+        }
+    }
+
+    private List<String> runBatch(BatchTaskActivity activity, String taskName, List<String> inputs) {
+        List<TaskActivityContext> contexts = new ArrayList<>(inputs.size());
+        for (String input : inputs) {
+            contexts.add(new TaskActivityContextImpl(taskName, input));
+        }
+
+        List<?> outputs = this.runWithTimeout(taskName, () -> activity.run(contexts));
+        if (outputs == null || outputs.size() != inputs.size()) {
+            throw new IllegalStateException(String.format(
+                    "The batch activity '%s' returned %d results for %d inputs.",
+                    taskName,
+                    outputs != null ? outputs.size() : 0,
+                    inputs.size()));
+        }
+
+        List<String> serializedOutputs = new ArrayList<>(outputs.size());
+        for (Object output : outputs) {
+            serializedOutputs.add(output != null ? this.dataConverter.serialize(output) : null);
+        }
+        return serializedOutputs;
+    }
+
+    private <T> T runWithTimeout(String taskName, Supplier<T> activityCode) {
+        Duration timeout = this.activityTimeouts.getOrDefault(taskName, this.defaultActivityTimeout);
+        if (timeout == null) {
+            return activityCode.get();
+        }
+
+        Watchdog watchdog = new Watchdog(Thread.currentThread());
+        ScheduledFuture<?> timer = this.watchdog.schedule(watchdog::expire, timeout.toNanos(), TimeUnit.NANOSECONDS);
+        T output;
+        try {
+            output = activityCode.get();
+        } catch (Throwable e) {
+            // Errors finish the watchdog too, so that its interrupt can't reach the next work item on this thread
+            if (watchdog.finish() && e instanceof RuntimeException) {
+                throw new ActivityTimeoutException(taskName, timeout);
+            }
+            throw e;
+        } finally {
+            timer.cancel(false);
+        }
+
+        // An activity that ignores the interrupt and returns a result after its deadline still counts as timed out
+        if (watchdog.finish()) {
+            throw new ActivityTimeoutException(taskName, timeout);
+        }
+        return output;
+    }
+
+    @FunctionalInterface
+    private interface ActivityInvocation<T> {
+        T run() throws Throwable;
+    }
+
+    /**
+     * Interrupts an activity thread when its timeout expires, making sure that the interrupt never leaks into
+     * whatever the thread runs after the activity has finished.
+     */
+    private static final class Watchdog {
+        private final Thread activityThread;
+        private boolean finished;
+        private boolean expired;
+
+        Watchdog(Thread activityThread) {
+            this.activityThread = activityThread;
+        }
+
+        synchronized void expire() {
+            if (!this.finished) {
+                this.expired = true;
+                this.activityThread.interrupt();
+            }
+        }
+
+        /**
+         * Marks the activity as finished and returns whether it timed out. Must be called on the activity thread.
+         */
+        synchronized boolean finish() {
+            if (!this.finished) {
+                this.finished = true;
+                if (this.expired) {
+                    // Clear the interrupt that we delivered so that it doesn't affect the next work item
+                    Thread.interrupted();
+                }
+            }
+            return this.expired;
+        }
+    }
+
     private class TaskActivityContextImpl implements TaskActivityContext {
         private final String name;
         private final String rawInput;
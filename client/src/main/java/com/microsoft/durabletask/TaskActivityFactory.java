@@ -17,4 +17,14 @@ public interface TaskActivityFactory {
      * @return the created activity instance
      */
     TaskActivity create();
+
+    /**
+     * Prepares the activity for its first execution, for example by loading a model or opening connections. Called once when the worker starts, before
+     * it receives any work items. The default implementation does nothing.
+     * <p>
+     * If the activity is registered with a singleton or pooled {@link InstanceLifecycle}, its instances are created
+     * right after this method returns.
+     */
+    default void warmUp() {
+    }
 }
@@ -3,7 +3,6 @@
 package com.microsoft.durabletask;
 
 import com.google.protobuf.StringValue;
-import com.google.protobuf.Timestamp;
 import com.microsoft.durabletask.interruption.ContinueAsNewInterruption;
 import com.microsoft.durabletask.interruption.OrchestratorBlockedException;
 import com.microsoft.durabletask.implementation.protobuf.OrchestratorService.*;
@@ -18,33 +17,152 @@ import java.util.*;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.IntFunction;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 final class TaskOrchestrationExecutor {
 
     private static final String EMPTY_STRING = "";
-    private final HashMap<String, TaskOrchestrationFactory> orchestrationFactories;
+    private final Map<String, InstanceProvider<TaskOrchestration>> orchestrationInstances;
     private final DataConverter dataConverter;
     private final Logger logger;
     private final Duration maximumTimerInterval;
+    private final ExpiringCache<String, OrchestrationSession> sessions;
+    private final ThreadFactory sessionThreadFactory;
 
     public TaskOrchestrationExecutor(
             HashMap<String, TaskOrchestrationFactory> orchestrationFactories,
             DataConverter dataConverter,
             Duration maximumTimerInterval,
             Logger logger) {
-        this.orchestrationFactories = orchestrationFactories;
+        this(getPerCallInstances(orchestrationFactories), dataConverter, maximumTimerInterval, logger);
+    }
+
+    /**
+     * Creates a {@code TaskOrchestrationExecutor} that obtains orchestration instances according to their lifecycles.
+     *
+     * @param orchestrationInstances provide the orchestration instances, keyed by orchestration name
+     */
+    public TaskOrchestrationExecutor(
+            Map<String, InstanceProvider<TaskOrchestration>> orchestrationInstances,
+            DataConverter dataConverter,
+            Duration maximumTimerInterval,
+            Logger logger) {
+        this(orchestrationInstances, dataConverter, maximumTimerInterval, logger, 0, null, null);
+    }
+
+    /**
+     * Creates a {@code TaskOrchestrationExecutor} that keeps orchestrations running between work items, as described
+     * in {@link #execute(String, List, List)}.
+     *
+     * @param maxSessions the maximum number of orchestrations to keep running, or zero to always replay the history
+     * @param sessionIdleTimeout how long an orchestration is kept running without receiving new events
+     * @param sessionThreadFactory creates the threads that orchestrations run on
+     */
+    public TaskOrchestrationExecutor(
+            Map<String, InstanceProvider<TaskOrchestration>> orchestrationInstances,
+            DataConverter dataConverter,
+            Duration maximumTimerInterval,
+            Logger logger,
+            int maxSessions,
+            Duration sessionIdleTimeout,
+            ThreadFactory sessionThreadFactory) {
+        this.orchestrationInstances = orchestrationInstances;
         this.dataConverter = dataConverter;
         this.maximumTimerInterval = maximumTimerInterval;
         this.logger = logger;
+        this.sessions = maxSessions > 0 ?
+                new ExpiringCache<>(maxSessions, sessionIdleTimeout, true, OrchestrationSession::abandon) :
+                null;
+        this.sessionThreadFactory = sessionThreadFactory;
+    }
+
+    private static Map<String, InstanceProvider<TaskOrchestration>> getPerCallInstances(
+            Map<String, TaskOrchestrationFactory> orchestrationFactories) {
+        Map<String, InstanceProvider<TaskOrchestration>> orchestrationInstances = new HashMap<>();
+        orchestrationFactories.forEach((name, factory) -> orchestrationInstances.put(
+                name,
+                new InstanceProvider<>(name, factory::create, InstanceLifecycle.perCall())));
+        return orchestrationInstances;
     }
 
     public TaskOrchestratorResult execute(List<HistoryEvent> pastEvents, List<HistoryEvent> newEvents) {
-        ContextImplTask context = new ContextImplTask(pastEvents, newEvents);
+        return this.runOrchestrator(new ContextImplTask(pastEvents, newEvents));
+    }
+
+    /**
+     * Executes an orchestration, reusing the orchestration's session from a previous work item if there is one.
+     * <p>
+     * When sessions are enabled, the orchestrator runs on its own thread, which parks whenever the orchestrator awaits
+     * an uncompleted task instead of unwinding the orchestrator's stack. The parked orchestrator is cached by instance
+     * ID. If the next work item for the instance has the previously processed events as the prefix of its past events,
+     * the remaining events are delivered to the parked orchestrator, which continues from where it stopped without
+     * replaying its history. Otherwise, for example after the session was evicted or the orchestration ran on a
+     * different worker in the meantime, the orchestrator is started again and replays its full history.
+     *
+     * @param instanceId the ID of the orchestration instance
+     * @param pastEvents the events that the orchestration has already processed
+     * @param newEvents the events that the orchestration hasn't processed yet
+     * @return the actions that the orchestrator scheduled and its custom status
+     * @throws InterruptedException if the calling thread was interrupted while waiting for the orchestrator's session;
+     *                              the orchestrator may still be running, so the work item must not be completed
+     */
+    public TaskOrchestratorResult execute(
+            String instanceId,
+            List<HistoryEvent> pastEvents,
+            List<HistoryEvent> newEvents) throws InterruptedException {
+        if (this.sessions == null) {
+            return this.execute(pastEvents, newEvents);
+        }
 
+        // Removing the session from the cache gives us exclusive use of it, and keeps it from being evicted while the
+        // orchestrator is running
+        OrchestrationSession session = this.sessions.remove(instanceId);
+        TaskOrchestratorResult result;
+        if (session != null && session.canResume(pastEvents)) {
+            result = session.resume(pastEvents, newEvents);
+        } else {
+            if (session != null) {
+                this.logger.fine(() -> String.format(
+                        "%s: the history doesn't match the orchestration's session, replaying the full history.",
+                        instanceId));
+                session.abandon();
+            }
+            session = new OrchestrationSession(pastEvents, newEvents);
+            result = session.start();
+        }
+
+        if (!session.isFinished()) {
+            this.sessions.put(instanceId, session);
+        }
+        return result;
+    }
+
+    /**
+     * Stops the parked orchestrators that haven't received new events within the session idle timeout. This is meant
+     * to be called periodically, so that idle sessions don't hold on to their threads until the next work item arrives.
+     */
+    public void evictIdleSessions() {
+        if (this.sessions != null) {
+            this.sessions.evictExpired();
+        }
+    }
+
+    /**
+     * Stops all parked orchestrators. Their orchestrations replay their history the next time they run.
+     */
+    public void closeSessions() {
+        if (this.sessions != null) {
+            this.sessions.clear();
+        }
+    }
+
+    private TaskOrchestratorResult runOrchestrator(ContextImplTask context) {
         boolean completed = false;
         try {
             // Play through the history events until either we've played through everything
@@ -68,7 +186,122 @@ final class TaskOrchestrationExecutor {
             context.complete(null);
         }
 
-        return new TaskOrchestratorResult(context.pendingActions.values(), context.getCustomStatus());
+        return new TaskOrchestratorResult(context.getPendingActions(), context.getCustomStatus());
+    }
+
+    /**
+     * Runs an orchestrator on a dedicated thread that parks between work items, so that the orchestrator's live
+     * context can receive new events without replaying the history.
+     * <p>
+     * The thread that calls {@link #start} or {@link #resume} waits until the orchestrator either parks or finishes.
+     * Only one of the two threads runs at a time, and the semaphores that hand control back and forth also make the
+     * context's state visible to the other thread.
+     */
+    private final class OrchestrationSession {
+        private final ContextImplTask context;
+        private final Semaphore resumed = new Semaphore(0);
+        private final Semaphore yielded = new Semaphore(0);
+        private volatile boolean abandoned;
+        private boolean finished;
+        private TaskOrchestratorResult finalResult;
+        private Throwable failure;
+        private int historyLength;
+        private HistoryEvent lastEvent;
+
+        OrchestrationSession(List<HistoryEvent> pastEvents, List<HistoryEvent> newEvents) {
+            this.context = new ContextImplTask(pastEvents, newEvents);
+            this.context.session = this;
+        }
+
+        TaskOrchestratorResult start() throws InterruptedException {
+            TaskOrchestrationExecutor.this.sessionThreadFactory.newThread(this::run).start();
+            return this.awaitYield(this.context.historyEventPlayer.pastEvents, this.context.historyEventPlayer.newEvents);
+        }
+
+        /**
+         * Checks whether the events that this session has processed are the beginning of the given past events.
+         */
+        boolean canResume(List<HistoryEvent> pastEvents) {
+            return this.historyLength > 0 &&
+                    pastEvents.size() >= this.historyLength &&
+                    pastEvents.get(this.historyLength - 1).equals(this.lastEvent);
+        }
+
+        TaskOrchestratorResult resume(
+                List<HistoryEvent> pastEvents,
+                List<HistoryEvent> newEvents) throws InterruptedException {
+            this.context.historyEventPlayer.continueWith(
+                    pastEvents.subList(this.historyLength, pastEvents.size()),
+                    newEvents);
+            this.resumed.release();
+            return this.awaitYield(pastEvents, newEvents);
+        }
+
+        boolean isFinished() {
+            return this.finished;
+        }
+
+        void abandon() {
+            this.abandoned = true;
+            this.resumed.release();
+        }
+
+        private TaskOrchestratorResult awaitYield(
+                List<HistoryEvent> pastEvents,
+                List<HistoryEvent> newEvents) throws InterruptedException {
+            try {
+                this.yielded.acquire();
+            } catch (InterruptedException e) {
+                // The orchestrator may still be running user code, so it stops once it next awaits something or
+                // finishes. Replaying the history in the meantime would run the orchestrator twice at the same time.
+                this.abandon();
+                throw e;
+            }
+
+            if (this.failure instanceof RuntimeException) {
+                throw (RuntimeException) this.failure;
+            } else if (this.failure instanceof Error) {
+                throw (Error) this.failure;
+            }
+            if (this.finished) {
+                return this.finalResult;
+            }
+
+            this.historyLength = pastEvents.size() + newEvents.size();
+            this.lastEvent = !newEvents.isEmpty() ?
+                    newEvents.get(newEvents.size() - 1) :
+                    pastEvents.isEmpty() ? null : pastEvents.get(pastEvents.size() - 1);
+
+            return new TaskOrchestratorResult(this.context.getPendingActions(), this.context.getCustomStatus());
+        }
+
+        /**
+         * Parks the orchestrator thread until the next work item delivers new events.
+         *
+         * @return {@code true} if there are new events, or {@code false} if the orchestrator should stop
+         */
+        private boolean awaitNewEvents() {
+            if (this.context.isComplete || this.context.continuedAsNew || this.abandoned) {
+                return false;
+            }
+
+            this.yielded.release();
+            this.resumed.acquireUninterruptibly();
+            return !this.abandoned;
+        }
+
+        private void run() {
+            try {
+                this.finalResult = TaskOrchestrationExecutor.this.runOrchestrator(this.context);
+            } catch (RuntimeException | Error e) {
+                this.failure = e;
+            }
+
+            this.finished = true;
+            if (!this.abandoned) {
+                this.yielded.release();
+            }
+        }
     }
 
     private class ContextImplTask implements TaskOrchestrationContext {
@@ -83,7 +316,7 @@ final class TaskOrchestrationExecutor {
         private int newUUIDCounter;
 
         // LinkedHashMap to maintain insertion order when returning the list of pending actions
-        private final LinkedHashMap<Integer, OrchestratorAction> pendingActions = new LinkedHashMap<>();
+        private final LinkedHashMap<Integer, PendingAction> pendingActions = new LinkedHashMap<>();
         private final HashMap<Integer, TaskRecord<?>> openTasks = new HashMap<>();
         private final LinkedHashMap<String, Queue<TaskRecord<?>>> outstandingEvents = new LinkedHashMap<>();
         private final LinkedList<HistoryEvent> unprocessedEvents = new LinkedList<>();
@@ -97,6 +330,7 @@ final class TaskOrchestrationExecutor {
         private Object continuedAsNewInput;
         private boolean preserveUnprocessedEvents;
         private Object customStatus;
+        private OrchestrationSession session;
 
         public ContextImplTask(List<HistoryEvent> pastEvents, List<HistoryEvent> newEvents) {
             this.historyEventPlayer = new OrchestrationHistoryIterator(pastEvents, newEvents);
@@ -172,6 +406,64 @@ final class TaskOrchestrationExecutor {
             this.isReplaying = false;
         }
 
+        private void addPendingAction(
+                int id,
+                OrchestratorAction.OrchestratorActionTypeCase kind,
+                @Nullable String name,
+                Supplier<OrchestratorAction> actionFactory) {
+            this.pendingActions.put(
+                    id,
+                    this.isReplaying ?
+                            new PendingAction(kind, name, actionFactory) :
+                            new PendingAction(actionFactory.get()));
+        }
+
+        private List<OrchestratorAction> getPendingActions() {
+            List<OrchestratorAction> actions = new ArrayList<>(this.pendingActions.size());
+            for (PendingAction pendingAction : this.pendingActions.values()) {
+                actions.add(pendingAction.getAction());
+            }
+            return actions;
+        }
+
+        /**
+         * Returns a supplier of the serialized input of an activity or sub-orchestration call. The input is serialized
+         * right away, so that serialization errors are thrown at the call site before the call takes a sequence number,
+         * unless the history being replayed shows that the call was already scheduled. Such a call's input was
+         * serialized successfully when it was first made, and the history event removes the call's action again, so
+         * its input is only serialized if it's ever needed.
+         * <p>
+         * Calls with retries are always serialized right away, because their later attempts are sent with the input
+         * as it was when the call was made.
+         */
+        private Supplier<String> serializeInput(
+                @Nullable Object value,
+                OrchestratorAction.OrchestratorActionTypeCase kind,
+                String name,
+                @Nullable TaskOptions options) {
+            boolean hasRetries = options != null && (options.hasRetryPolicy() || options.hasRetryHandler());
+            boolean isScheduled =
+                    this.isReplaying && this.historyEventPlayer.isScheduled(this.sequenceNumber, kind, name);
+            if (hasRetries || !isScheduled) {
+                String serializedValue = this.dataConverter.serialize(value);
+                return () -> serializedValue;
+            }
+
+            return new Supplier<String>() {
+                private boolean isSerialized;
+                private String serializedValue;
+
+                @Override
+                public String get() {
+                    if (!this.isSerialized) {
+                        this.serializedValue = ContextImplTask.this.dataConverter.serialize(value);
+                        this.isSerialized = true;
+                    }
+                    return this.serializedValue;
+                }
+            };
+        }
+
         public <V> Task<V> completedTask(V value) {
             CompletableTask<V> task = new CompletableTask<>();
             task.complete(value);
@@ -264,18 +556,24 @@ final class TaskOrchestrationExecutor {
                 throw new IllegalArgumentException("TaskOptions cannot be used as an input. Did you call the wrong method overload?");
             }
 
-            String serializedInput = this.dataConverter.serialize(input);
-            Builder scheduleTaskBuilder = ScheduleTaskAction.newBuilder().setName(name);
-            if (serializedInput != null) {
-                scheduleTaskBuilder.setInput(StringValue.of(serializedInput));
-            }
+            Supplier<String> serializedInput = this.serializeInput(
+                    input,
+                    OrchestratorAction.OrchestratorActionTypeCase.SCHEDULETASK,
+                    name,
+                    options);
 
             TaskFactory<V> taskFactory = () -> {
                 int id = this.sequenceNumber++;
-                this.pendingActions.put(id, OrchestratorAction.newBuilder()
-                        .setId(id)
-                        .setScheduleTask(scheduleTaskBuilder)
-                        .build());
+                this.addPendingAction(id, OrchestratorAction.OrchestratorActionTypeCase.SCHEDULETASK, name, () -> {
+                    Builder scheduleTaskBuilder = ScheduleTaskAction.newBuilder().setName(name);
+                    if (serializedInput.get() != null) {
+                        scheduleTaskBuilder.setInput(StringValue.of(serializedInput.get()));
+                    }
+                    return OrchestratorAction.newBuilder()
+                            .setId(id)
+                            .setScheduleTask(scheduleTaskBuilder)
+                            .build();
+                });
 
                 if (!this.isReplaying) {
                     this.logger.fine(() -> String.format(
@@ -283,7 +581,7 @@ final class TaskOrchestrationExecutor {
                             this.instanceId,
                             name,
                             id,
-                            serializedInput != null ? serializedInput : "(null)"));
+                            serializedInput.get() != null ? serializedInput.get() : "(null)"));
                 }
 
                 CompletableTask<V> task = new CompletableTask<>();
@@ -338,10 +636,10 @@ final class TaskOrchestrationExecutor {
                 builder.setData(StringValue.of(serializedEventData));
             }
 
-            this.pendingActions.put(id, OrchestratorAction.newBuilder()
+            this.pendingActions.put(id, new PendingAction(OrchestratorAction.newBuilder()
                     .setId(id)
                     .setSendEvent(builder)
-                    .build());
+                    .build()));
 
             if (!this.isReplaying) {
                 this.logger.fine(() -> String.format(
@@ -368,23 +666,32 @@ final class TaskOrchestrationExecutor {
                 throw new IllegalArgumentException("TaskOptions cannot be used as an input. Did you call the wrong method overload?");
             }
             
-            String serializedInput = this.dataConverter.serialize(input);
-            CreateSubOrchestrationAction.Builder createSubOrchestrationActionBuilder = CreateSubOrchestrationAction.newBuilder().setName(name);
-            if (serializedInput != null) {
-                createSubOrchestrationActionBuilder.setInput(StringValue.of(serializedInput));
-            }
+            Supplier<String> serializedInput = this.serializeInput(
+                    input,
+                    OrchestratorAction.OrchestratorActionTypeCase.CREATESUBORCHESTRATION,
+                    name,
+                    options);
 
-            if (instanceId == null) {
-                instanceId = this.newUUID().toString();
-            }
-            createSubOrchestrationActionBuilder.setInstanceId(instanceId);
+            // The generated instance ID must not be deferred because it consumes a deterministic UUID
+            String subOrchestrationInstanceId = instanceId != null ? instanceId : this.newUUID().toString();
 
             TaskFactory<V> taskFactory = () -> {
                 int id = this.sequenceNumber++;
-                this.pendingActions.put(id, OrchestratorAction.newBuilder()
-                        .setId(id)
-                        .setCreateSubOrchestration(createSubOrchestrationActionBuilder)
-                        .build());
+                OrchestratorAction.OrchestratorActionTypeCase kind =
+                        OrchestratorAction.OrchestratorActionTypeCase.CREATESUBORCHESTRATION;
+                this.addPendingAction(id, kind, name, () -> {
+                    CreateSubOrchestrationAction.Builder createSubOrchestrationActionBuilder =
+                            CreateSubOrchestrationAction.newBuilder()
+                                    .setName(name)
+                                    .setInstanceId(subOrchestrationInstanceId);
+                    if (serializedInput.get() != null) {
+                        createSubOrchestrationActionBuilder.setInput(StringValue.of(serializedInput.get()));
+                    }
+                    return OrchestratorAction.newBuilder()
+                            .setId(id)
+                            .setCreateSubOrchestration(createSubOrchestrationActionBuilder)
+                            .build();
+                });
 
                 if (!this.isReplaying) {
                     this.logger.fine(() -> String.format(
@@ -392,7 +699,7 @@ final class TaskOrchestrationExecutor {
                             this.instanceId,
                             name,
                             id,
-                            serializedInput != null ? serializedInput : "(null)"));
+                            serializedInput.get() != null ? serializedInput.get() : "(null)"));
                 }
 
                 CompletableTask<V> task = new CompletableTask<>();
@@ -477,7 +784,7 @@ final class TaskOrchestrationExecutor {
             // The history shows that this orchestrator created a durable task in a previous execution.
             // We can therefore remove it from the map of pending actions. If we can't find the pending
             // action, then we assume a non-deterministic code violation in the orchestrator.
-            OrchestratorAction taskAction = this.pendingActions.remove(taskId);
+            PendingAction taskAction = this.pendingActions.remove(taskId);
             if (taskAction == null) {
                 String message = String.format(
                         "Non-deterministic orchestrator detected: a history event scheduling an activity task with sequence ID %d and name '%s' was replayed but the current orchestrator implementation didn't actually schedule this task. Was a change made to the orchestrator code after this instance had already started running?",
@@ -485,6 +792,16 @@ final class TaskOrchestrationExecutor {
                         taskScheduled.getName());
                 throw new NonDeterministicOrchestratorException(message);
             }
+            if (!taskAction.matches(
+                    OrchestratorAction.OrchestratorActionTypeCase.SCHEDULETASK,
+                    taskScheduled.getName())) {
+                String message = String.format(
+                        "Non-deterministic orchestrator detected: a history event scheduling an activity task with sequence ID %d and name '%s' was replayed but the current orchestrator implementation scheduled %s with this sequence ID instead. Was a change made to the orchestrator code after this instance had already started running?",
+                        taskId,
+                        taskScheduled.getName(),
+                        taskAction.describe());
+                throw new NonDeterministicOrchestratorException(message);
+            }
         }
 
         @SuppressWarnings("unchecked")
@@ -611,10 +928,12 @@ final class TaskOrchestrationExecutor {
         }
 
         private CompletableTask<Void> createInstantTimer(int id, Instant fireAt) {
-            Timestamp ts = DataConverter.getTimestampFromInstant(fireAt);
-            this.pendingActions.put(id, OrchestratorAction.newBuilder()
+            OrchestratorAction.OrchestratorActionTypeCase kind =
+                    OrchestratorAction.OrchestratorActionTypeCase.CREATETIMER;
+            this.addPendingAction(id, kind, null, () -> OrchestratorAction.newBuilder()
                     .setId(id)
-                    .setCreateTimer(CreateTimerAction.newBuilder().setFireAt(ts))
+                    .setCreateTimer(CreateTimerAction.newBuilder()
+                            .setFireAt(DataConverter.getTimestampFromInstant(fireAt)))
                     .build());
 
             if (!this.isReplaying) {
@@ -639,7 +958,7 @@ final class TaskOrchestrationExecutor {
             // The history shows that this orchestrator created a durable timer in a previous execution.
             // We can therefore remove it from the map of pending actions. If we can't find the pending
             // action, then we assume a non-deterministic code violation in the orchestrator.
-            OrchestratorAction timerAction = this.pendingActions.remove(timerEventId);
+            PendingAction timerAction = this.pendingActions.remove(timerEventId);
             if (timerAction == null) {
                 String message = String.format(
                         "Non-deterministic orchestrator detected: a history event creating a timer with ID %d and fire-at time %s was replayed but the current orchestrator implementation didn't actually create this timer. Was a change made to the orchestrator code after this instance had already started running?",
@@ -647,6 +966,14 @@ final class TaskOrchestrationExecutor {
                         DataConverter.getInstantFromTimestamp(timerCreatedEvent.getFireAt()));
                 throw new NonDeterministicOrchestratorException(message);
             }
+            if (!timerAction.matches(OrchestratorAction.OrchestratorActionTypeCase.CREATETIMER, null)) {
+                String message = String.format(
+                        "Non-deterministic orchestrator detected: a history event creating a timer with ID %d and fire-at time %s was replayed but the current orchestrator implementation scheduled %s with this ID instead. Was a change made to the orchestrator code after this instance had already started running?",
+                        timerEventId,
+                        DataConverter.getInstantFromTimestamp(timerCreatedEvent.getFireAt()),
+                        timerAction.describe());
+                throw new NonDeterministicOrchestratorException(message);
+            }
         }
 
         public void handleTimerFired(HistoryEvent e) {
@@ -669,7 +996,7 @@ final class TaskOrchestrationExecutor {
         private void handleSubOrchestrationCreated(HistoryEvent e) {
             int taskId = e.getEventId();
             SubOrchestrationInstanceCreatedEvent subOrchestrationInstanceCreated = e.getSubOrchestrationInstanceCreated();
-            OrchestratorAction taskAction = this.pendingActions.remove(taskId);
+            PendingAction taskAction = this.pendingActions.remove(taskId);
             if (taskAction == null) {
                 String message = String.format(
                         "Non-deterministic orchestrator detected: a history event scheduling an sub-orchestration task with sequence ID %d and name '%s' was replayed but the current orchestrator implementation didn't actually schedule this task. Was a change made to the orchestrator code after this instance had already started running?",
@@ -677,6 +1004,16 @@ final class TaskOrchestrationExecutor {
                         subOrchestrationInstanceCreated.getName());
                 throw new NonDeterministicOrchestratorException(message);
             }
+            if (!taskAction.matches(
+                    OrchestratorAction.OrchestratorActionTypeCase.CREATESUBORCHESTRATION,
+                    subOrchestrationInstanceCreated.getName())) {
+                String message = String.format(
+                        "Non-deterministic orchestrator detected: a history event scheduling a sub-orchestration task with sequence ID %d and name '%s' was replayed but the current orchestrator implementation scheduled %s with this sequence ID instead. Was a change made to the orchestrator code after this instance had already started running?",
+                        taskId,
+                        subOrchestrationInstanceCreated.getName(),
+                        taskAction.describe());
+                throw new NonDeterministicOrchestratorException(message);
+            }
         }
 
         private void handleSubOrchestrationCompleted(HistoryEvent e) {
@@ -786,7 +1123,7 @@ final class TaskOrchestrationExecutor {
                     .setId(id)
                     .setCompleteOrchestration(builder.build())
                     .build();
-            this.pendingActions.put(id, action);
+            this.pendingActions.put(id, new PendingAction(action));
             this.isComplete = true;
         }
 
@@ -818,6 +1155,10 @@ final class TaskOrchestrationExecutor {
             return this.historyEventPlayer.moveNext();
         }
 
+        private boolean awaitNewEvents() {
+            return this.session != null && this.session.awaitNewEvents();
+        }
+
         private void processEvent(HistoryEvent e) {
             boolean overrideSuspension = e.getEventTypeCase() == HistoryEvent.EventTypeCase.EXECUTIONRESUMED || e.getEventTypeCase() == HistoryEvent.EventTypeCase.EXECUTIONTERMINATED;
             if (this.isSuspended && !overrideSuspension) {
@@ -839,14 +1180,19 @@ final class TaskOrchestrationExecutor {
                         this.setInstanceId(instanceId);
                         String input = startedEvent.getInput().getValue();
                         this.setInput(input);
-                        TaskOrchestrationFactory factory = TaskOrchestrationExecutor.this.orchestrationFactories.get(name);
-                        if (factory == null) {
+                        InstanceProvider<TaskOrchestration> instances =
+                                TaskOrchestrationExecutor.this.orchestrationInstances.get(name);
+                        if (instances == null) {
                             // Try getting the default orchestrator
-                            factory = TaskOrchestrationExecutor.this.orchestrationFactories.get("*");
+                            instances = TaskOrchestrationExecutor.this.orchestrationInstances.get("*");
                         }
                         // TODO: Throw if the factory is null (orchestration by that name doesn't exist)
-                        TaskOrchestration orchestrator = factory.create();
-                        orchestrator.run(this);
+                        TaskOrchestration orchestrator = instances.acquire();
+                        try {
+                            orchestrator.run(this);
+                        } finally {
+                            instances.release(orchestrator);
+                        }
                         break;
 //                case EXECUTIONCOMPLETED:
 //                    break;
@@ -902,6 +1248,76 @@ final class TaskOrchestrationExecutor {
             }
         }
 
+        /**
+         * An action that the orchestrator scheduled. The protobuf message of an action that was scheduled while
+         * replaying is only built if the action is still pending when the replay ends, because the next history event
+         * usually shows that the action was already scheduled and removes it again. The kind and name of the action
+         * are always known, so that the history event can be checked against them.
+         */
+        private class PendingAction {
+            private final OrchestratorAction.OrchestratorActionTypeCase kind;
+            @Nullable
+            private final String name;
+            private Supplier<OrchestratorAction> actionFactory;
+            private OrchestratorAction action;
+
+            PendingAction(OrchestratorAction action) {
+                this.kind = action.getOrchestratorActionTypeCase();
+                this.name = getName(action);
+                this.action = action;
+            }
+
+            PendingAction(
+                    OrchestratorAction.OrchestratorActionTypeCase kind,
+                    @Nullable String name,
+                    Supplier<OrchestratorAction> actionFactory) {
+                this.kind = kind;
+                this.name = name;
+                this.actionFactory = actionFactory;
+            }
+
+            boolean matches(OrchestratorAction.OrchestratorActionTypeCase kind, @Nullable String name) {
+                return this.kind == kind && Objects.equals(this.name, name);
+            }
+
+            String describe() {
+                switch (this.kind) {
+                    case SCHEDULETASK:
+                        return String.format("an activity task named '%s'", this.name);
+                    case CREATESUBORCHESTRATION:
+                        return String.format("a sub-orchestration task named '%s'", this.name);
+                    case CREATETIMER:
+                        return "a timer";
+                    case SENDEVENT:
+                        return String.format("an event named '%s'", this.name);
+                    default:
+                        return String.format("a '%s' action", this.kind);
+                }
+            }
+
+            OrchestratorAction getAction() {
+                if (this.action == null) {
+                    this.action = this.actionFactory.get();
+                    this.actionFactory = null;
+                }
+                return this.action;
+            }
+
+            @Nullable
+            private String getName(OrchestratorAction action) {
+                switch (action.getOrchestratorActionTypeCase()) {
+                    case SCHEDULETASK:
+                        return action.getScheduleTask().getName();
+                    case CREATESUBORCHESTRATION:
+                        return action.getCreateSubOrchestration().getName();
+                    case SENDEVENT:
+                        return action.getSendEvent().getName();
+                    default:
+                        return null;
+                }
+            }
+        }
+
         private class TaskRecord<V> {
             private final CompletableTask<V> task;
             private final String taskName;
@@ -927,12 +1343,16 @@ final class TaskOrchestrationExecutor {
         }
 
         private class OrchestrationHistoryIterator {
-            private final List<HistoryEvent> pastEvents;
-            private final List<HistoryEvent> newEvents;
+            private List<HistoryEvent> pastEvents;
+            private List<HistoryEvent> newEvents;
 
             private List<HistoryEvent> currentHistoryList;
             private int currentHistoryIndex;
 
+            // Names of the activity and sub-orchestration calls in the past events, by sequence ID and built on demand
+            private Map<Integer, String> scheduledTaskNames;
+            private Map<Integer, String> createdSubOrchestrationNames;
+
             public OrchestrationHistoryIterator(List<HistoryEvent> pastEvents, List<HistoryEvent> newEvents) {
                 this.pastEvents = pastEvents;
                 this.newEvents = newEvents;
@@ -959,6 +1379,49 @@ final class TaskOrchestrationExecutor {
                 return true;
             }
 
+            /**
+             * Continues iterating over more events once all of the previous events have been processed.
+             */
+            void continueWith(List<HistoryEvent> pastEvents, List<HistoryEvent> newEvents) {
+                this.pastEvents = pastEvents;
+                this.newEvents = newEvents;
+                this.currentHistoryList = pastEvents;
+                this.currentHistoryIndex = 0;
+                this.scheduledTaskNames = null;
+                this.createdSubOrchestrationNames = null;
+                ContextImplTask.this.isReplaying = true;
+            }
+
+            /**
+             * Returns whether the past events show that a call with the given sequence ID, kind and name was already
+             * scheduled.
+             */
+            boolean isScheduled(int sequenceId, OrchestratorAction.OrchestratorActionTypeCase kind, String name) {
+                if (this.scheduledTaskNames == null) {
+                    this.scheduledTaskNames = new HashMap<>();
+                    this.createdSubOrchestrationNames = new HashMap<>();
+                    for (HistoryEvent event : this.pastEvents) {
+                        HistoryEvent.EventTypeCase eventType = event.getEventTypeCase();
+                        if (eventType == HistoryEvent.EventTypeCase.TASKSCHEDULED) {
+                            this.scheduledTaskNames.put(event.getEventId(), event.getTaskScheduled().getName());
+                        } else if (eventType == HistoryEvent.EventTypeCase.SUBORCHESTRATIONINSTANCECREATED) {
+                            this.createdSubOrchestrationNames.put(
+                                    event.getEventId(),
+                                    event.getSubOrchestrationInstanceCreated().getName());
+                        }
+                    }
+                }
+
+                switch (kind) {
+                    case SCHEDULETASK:
+                        return name.equals(this.scheduledTaskNames.get(sequenceId));
+                    case CREATESUBORCHESTRATION:
+                        return name.equals(this.createdSubOrchestrationNames.get(sequenceId));
+                    default:
+                        return false;
+                }
+            }
+
             List<HistoryEvent> getNewEvents() {
                 return this.newEvents;
             }
@@ -1205,28 +1668,7 @@ final class TaskOrchestrationExecutor {
 
             private Duration getNextDelay() {
                 if (this.policy != null) {
-                    long maxDelayInMillis = this.policy.getMaxRetryInterval().toMillis();
-
-                    long nextDelayInMillis;
-                    try {
-                        nextDelayInMillis = Math.multiplyExact(
-                                this.policy.getFirstRetryInterval().toMillis(),
-                                (long)Helpers.powExact(this.policy.getBackoffCoefficient(), this.attemptNumber));
-                    } catch (ArithmeticException overflowException) {
-                        if (maxDelayInMillis > 0) {
-                            return this.policy.getMaxRetryInterval();
-                        } else {
-                            // If no maximum is specified, just throw
-                            throw new ArithmeticException("The retry policy calculation resulted in an arithmetic overflow and no max retry interval was configured.");
-                        }
-                    }
-
-                    // NOTE: A max delay of zero or less is interpreted to mean no max delay
-                    if (nextDelayInMillis > maxDelayInMillis && maxDelayInMillis > 0) {
-                        return this.policy.getMaxRetryInterval();
-                    } else {
-                        return Duration.ofMillis(nextDelayInMillis);
-                    }
+                    return Helpers.getRetryDelay(this.policy, this.attemptNumber);
                 }
 
                 // If there's no declarative retry policy defined, then the custom code retry handler
@@ -1293,9 +1735,10 @@ final class TaskOrchestrationExecutor {
                             this.handleException(e);
                         }
                     }
-                } while (processNextEvent());
+                } while (processNextEvent() || ContextImplTask.this.awaitNewEvents());
 
                 // There's no more history left to replay and the current task is still not completed. This is normal.
+                // In an extended session, the orchestrator only gets here once its session has ended.
                 // The OrchestratorBlockedException exception allows us to yield the current thread back to the executor so
                 // that we can send the current set of actions back to the worker and wait for new events to come in.
                 // This is *not* an exception - it's a normal part of orchestrator control flow.
@@ -1308,6 +1751,9 @@ final class TaskOrchestrationExecutor {
                     return ContextImplTask.this.processNextEvent();
                 } catch (OrchestratorBlockedException | ContinueAsNewInterruption exception) {
                     throw exception;
+                } catch (NonDeterministicOrchestratorException exception) {
+                    // The history doesn't match what the orchestrator did, so the orchestration fails
+                    throw exception;
                 } catch (Exception e) {
                     // ignore
                     /**
@@ -17,4 +17,14 @@ public interface TaskOrchestrationFactory {
      * @return the created orchestration instance
      */
     TaskOrchestration create();
+
+    /**
+     * Prepares the orchestration for its first execution, for example by loading configuration. Called once when the worker starts, before
+     * it receives any work items. The default implementation does nothing.
+     * <p>
+     * If the orchestration is registered with a singleton or pooled {@link InstanceLifecycle}, its instances are created
+     * right after this method returns.
+     */
+    default void warmUp() {
+    }
 }
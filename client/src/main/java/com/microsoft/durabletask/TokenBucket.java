@@ -0,0 +1,55 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token-bucket rate limiter that hands out reservations instead of blocking.
+ * <p>
+ * Each call to {@link #reserve} takes one token and returns how long the caller must wait before using it. The
+ * bucket refills at a fixed rate and holds at most {@code burst} tokens. Once the bucket is empty, reservations are
+ * spaced evenly at the configured rate, so callers can schedule their work for later instead of occupying a thread
+ * while they wait.
+ */
+final class TokenBucket {
+    private final double tokensPerNano;
+    private final double burst;
+
+    private double availableTokens;
+    private long lastRefillTime;
+
+    TokenBucket(double permitsPerSecond, int burst) {
+        if (!(permitsPerSecond > 0)) {
+            throw new IllegalArgumentException("The rate must be greater than zero.");
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("The burst size must be greater than zero.");
+        }
+
+        this.tokensPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.availableTokens = burst;
+        this.lastRefillTime = System.nanoTime();
+    }
+
+    /**
+     * Reserves one token.
+     *
+     * @return the number of nanoseconds to wait before the reserved token can be used; zero if it can be used now
+     */
+    synchronized long reserve() {
+        long now = System.nanoTime();
+        this.availableTokens = Math.min(
+                this.burst,
+                this.availableTokens + (now - this.lastRefillTime) * this.tokensPerNano);
+        this.lastRefillTime = now;
+
+        // The balance can go negative, which represents tokens that were already promised to earlier callers
+        this.availableTokens -= 1;
+        if (this.availableTokens >= 0) {
+            return 0;
+        }
+        return (long) Math.ceil(-this.availableTokens / this.tokensPerNano);
+    }
+}
@@ -0,0 +1,31 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access point for virtual thread APIs, which only exist in Java 21 and later.
+ * <p>
+ * This is the Java 8 implementation, which reports that virtual threads are not supported. The client jar is a
+ * multi-release jar and contains a Java 21 version of this class under {@code META-INF/versions/21} that is loaded
+ * automatically on newer runtimes.
+ */
+final class VirtualThreads {
+    static boolean isSupported() {
+        return false;
+    }
+
+    static ThreadFactory newThreadFactory(String namePrefix) {
+        throw new UnsupportedOperationException("Virtual threads require Java 21 or later.");
+    }
+
+    static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+        throw new UnsupportedOperationException("Virtual threads require Java 21 or later.");
+    }
+
+    // Cannot be instantiated
+    private VirtualThreads() {
+    }
+}
@@ -0,0 +1,158 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Limits the number of work items of one kind, like activities, that are dispatched at the same time.
+ * <p>
+ * All work items share the flow-control window of the work-item stream, and the sidecar decides which kind of work
+ * item fills it. Each kind therefore gets its own budget. Work items that arrive while their kind's budget is used up
+ * wait in a local queue without blocking the stream. Up to {@code queueCapacity} of them hand their stream credit back
+ * right away, so a flood of one kind of work item doesn't take the window away from the other kinds. Work items that
+ * arrive while the queue is full keep their credit until they're dispatched and have completed.
+ * <p>
+ * A budget can also be gated by an {@link AdaptiveConcurrencyLimiter}. Work items that the limiter holds back wait in
+ * the same queue, but keep their credit, so the worker asks the sidecar for fewer work items while the limit is low.
+ * <p>
+ * Queued work items are dispatched once a dispatched work item completes. The thread that completes a work item is
+ * usually a thread of the executor that ran it, and dispatching can block until that executor has room, so queued work
+ * items are handed to a separate dispatcher instead of being dispatched on the completing thread.
+ */
+final class WorkItemBudget {
+    private final int capacity;
+    private final int queueCapacity;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final Executor dispatcher;
+    private final ArrayDeque<QueuedWorkItem> queue = new ArrayDeque<>();
+    private int dispatchedCount;
+    private int creditFreeCount;
+
+    WorkItemBudget(int capacity, int queueCapacity) {
+        this(capacity, queueCapacity, null);
+    }
+
+    /**
+     * @param capacity the maximum number of dispatched work items
+     * @param queueCapacity the maximum number of queued work items that hand back their credit
+     * @param limiter the adaptive concurrency limit that work items must also fit into, or {@code null}
+     */
+    WorkItemBudget(int capacity, int queueCapacity, AdaptiveConcurrencyLimiter limiter) {
+        this(capacity, queueCapacity, limiter, Runnable::run);
+    }
+
+    /**
+     * @param capacity the maximum number of dispatched work items
+     * @param queueCapacity the maximum number of queued work items that hand back their credit
+     * @param limiter the adaptive concurrency limit that work items must also fit into, or {@code null}
+     * @param dispatcher runs the dispatch of queued work items; must not run them on the calling thread if dispatching
+     *                   can block until a running work item completes
+     */
+    WorkItemBudget(int capacity, int queueCapacity, AdaptiveConcurrencyLimiter limiter, Executor dispatcher) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The work-item budget must be greater than zero.");
+        }
+        if (queueCapacity < 0) {
+            throw new IllegalArgumentException("The work-item queue capacity must not be negative.");
+        }
+
+        this.capacity = capacity;
+        this.queueCapacity = queueCapacity;
+        this.limiter = limiter;
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Dispatches a work item if the budget allows it, or otherwise queues it until a dispatched work item completes.
+     * This method never blocks.
+     *
+     * @param dispatch dispatches the work item; it's given the callback to invoke once the work item has completed,
+     *                 which must be invoked exactly once
+     * @param returnCredit hands the work item's stream credit back to the sidecar; only invoked if the work item was
+     *                     queued without keeping its credit
+     */
+    void submit(Consumer<Runnable> dispatch, Runnable returnCredit) {
+        boolean dispatchNow = false;
+        boolean returnCreditNow = false;
+        synchronized (this) {
+            // Work items that are already queued go first
+            if (this.queue.isEmpty() && this.tryClaim()) {
+                dispatchNow = true;
+            } else {
+                // Only work items that exceed the budget hand back their credit, not those that the limiter holds back
+                returnCreditNow = this.dispatchedCount >= this.capacity && this.creditFreeCount < this.queueCapacity;
+                if (returnCreditNow) {
+                    this.creditFreeCount++;
+                }
+                this.queue.add(new QueuedWorkItem(dispatch, returnCreditNow));
+            }
+        }
+
+        if (dispatchNow) {
+            dispatch.accept(this::onCompleted);
+        } else if (returnCreditNow) {
+            returnCredit.run();
+        }
+    }
+
+    private void onCompleted() {
+        List<QueuedWorkItem> next = new ArrayList<>();
+        synchronized (this) {
+            this.dispatchedCount--;
+            if (this.limiter != null) {
+                this.limiter.release();
+            }
+
+            // The completed work item may have raised the limit, so more than one queued work item can start
+            while (!this.queue.isEmpty() && this.tryClaim()) {
+                QueuedWorkItem queued = this.queue.poll();
+                if (queued.returnedCredit) {
+                    this.creditFreeCount--;
+                }
+                next.add(queued);
+            }
+        }
+
+        for (QueuedWorkItem queued : next) {
+            try {
+                this.dispatcher.execute(() -> queued.dispatch.accept(this::onCompleted));
+            } catch (RejectedExecutionException e) {
+                // The worker is shutting down and the sidecar will redeliver the work item, so it gives its place back
+                this.onCompleted();
+            }
+        }
+    }
+
+    private boolean tryClaim() {
+        if (this.dispatchedCount >= this.capacity || (this.limiter != null && !this.limiter.tryAcquire())) {
+            return false;
+        }
+
+        this.dispatchedCount++;
+        return true;
+    }
+
+    synchronized int getDispatchedCount() {
+        return this.dispatchedCount;
+    }
+
+    synchronized int getQueuedCount() {
+        return this.queue.size();
+    }
+
+    private static final class QueuedWorkItem {
+        final Consumer<Runnable> dispatch;
+        final boolean returnedCredit;
+
+        QueuedWorkItem(Consumer<Runnable> dispatch, boolean returnedCredit) {
+            this.dispatch = dispatch;
+            this.returnedCredit = returnedCredit;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import com.microsoft.durabletask.implementation.protobuf.OrchestratorService.GetWorkItemsRequest;
+import com.microsoft.durabletask.implementation.protobuf.OrchestratorService.WorkItem;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Observer for a single {@code GetWorkItems} server stream that uses manual inbound flow control.
+ * <p>
+ * The stream initially asks the sidecar for as many work items as the worker can run at once and then asks for one
+ * more work item each time a previously received work item finishes executing. Work items that the worker doesn't
+ * have the capacity to run are therefore never pushed to it, and stay with the sidecar where other workers can pick
+ * them up.
+ * <p>
+ * Work items can also be held back by a {@link WorkItemBudget} for their kind, which queues them without blocking the
+ * thread that reads the stream.
+ */
+final class WorkItemStream implements ClientResponseObserver<GetWorkItemsRequest, WorkItem> {
+    private final int maxInFlightWorkItems;
+    private final Function<WorkItem, WorkItemBudget> budgets;
+    private final WorkItemHandler handler;
+    private final CountDownLatch closed = new CountDownLatch(1);
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+
+    private volatile ClientCallStreamObserver<GetWorkItemsRequest> requestStream;
+    private volatile Throwable error;
+    private volatile String cancellationMessage;
+    private volatile boolean hasReceivedWorkItems;
+
+    WorkItemStream(int maxInFlightWorkItems, WorkItemHandler handler) {
+        this(maxInFlightWorkItems, workItem -> null, handler);
+    }
+
+    /**
+     * @param maxInFlightWorkItems the number of work items that the sidecar can push before any of them completes
+     * @param budgets gets the budget of a work item's kind, or {@code null} if the work item isn't limited by one
+     * @param handler dispatches the received work items
+     */
+    WorkItemStream(int maxInFlightWorkItems, Function<WorkItem, WorkItemBudget> budgets, WorkItemHandler handler) {
+        this.maxInFlightWorkItems = maxInFlightWorkItems;
+        this.budgets = budgets;
+        this.handler = handler;
+    }
+
+    @Override
+    public void beforeStart(ClientCallStreamObserver<GetWorkItemsRequest> requestStream) {
+        this.requestStream = requestStream;
+        requestStream.disableAutoRequestWithInitial(this.maxInFlightWorkItems);
+
+        // Handle cancellations that were requested before the call started
+        if (this.cancelled.get()) {
+            requestStream.cancel(this.cancellationMessage, null);
+        }
+    }
+
+    @Override
+    public void onNext(WorkItem workItem) {
+        this.hasReceivedWorkItems = true;
+        AtomicBoolean creditReturned = new AtomicBoolean();
+        Runnable returnCredit = () -> {
+            // Guard against the same credit being returned twice
+            if (creditReturned.compareAndSet(false, true)) {
+                this.requestNext();
+            }
+        };
+
+        WorkItemBudget budget = this.budgets.apply(workItem);
+        if (budget == null) {
+            this.dispatch(workItem, returnCredit, true);
+            return;
+        }
+
+        // The work item may be dispatched later by the budget's dispatcher once another work item of its kind is done
+        AtomicBoolean submitting = new AtomicBoolean(true);
+        budget.submit(
+                budgetRelease -> {
+                    AtomicBoolean released = new AtomicBoolean();
+                    Runnable onCompleted = () -> {
+                        // Guard against the handler reporting the same work item twice
+                        if (released.compareAndSet(false, true)) {
+                            budgetRelease.run();
+                            returnCredit.run();
+                        }
+                    };
+                    this.dispatch(workItem, onCompleted, submitting.get());
+                },
+                returnCredit);
+        submitting.set(false);
+    }
+
+    private void dispatch(WorkItem workItem, Runnable onCompleted, boolean rethrow) {
+        try {
+            this.handler.handle(workItem, onCompleted);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            onCompleted.run();
+            this.cancel("The worker was interrupted while dispatching a work item.");
+        } catch (RuntimeException e) {
+            // The work item couldn't be dispatched, so it no longer occupies any capacity. Queued work items are
+            // dispatched by the budget's dispatcher, which has no use for the exception.
+            onCompleted.run();
+            if (rethrow) {
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        this.error = t;
+        this.closed.countDown();
+    }
+
+    @Override
+    public void onCompleted() {
+        this.closed.countDown();
+    }
+
+    private void requestNext() {
+        // request() is safe to call from any thread and is a no-op once the stream has closed
+        if (!this.cancelled.get() && this.closed.getCount() > 0) {
+            this.requestStream.request(1);
+        }
+    }
+
+    /**
+     * Blocks until the sidecar closes the stream.
+     *
+     * @throws StatusRuntimeException if the stream was closed with an error
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    void awaitClose() throws InterruptedException {
+        this.closed.await();
+        Throwable t = this.error;
+        if (t != null) {
+            throw Status.fromThrowable(t).asRuntimeException();
+        }
+    }
+
+    /**
+     * Gets a value indicating whether the sidecar has sent at least one work item over this stream.
+     *
+     * @return {@code true} if at least one work item was received, otherwise {@code false}
+     */
+    boolean hasReceivedWorkItems() {
+        return this.hasReceivedWorkItems;
+    }
+
+    /**
+     * Cancels the stream so that the sidecar stops sending work items to this worker.
+     *
+     * @param message a description of why the stream is being cancelled
+     */
+    void cancel(String message) {
+        this.cancellationMessage = message;
+        if (this.cancelled.compareAndSet(false, true)) {
+            ClientCallStreamObserver<GetWorkItemsRequest> requestStream = this.requestStream;
+            if (requestStream != null) {
+                requestStream.cancel(message, null);
+            }
+        }
+    }
+
+    /**
+     * Callback that dispatches a received work item for execution.
+     */
+    @FunctionalInterface
+    interface WorkItemHandler {
+        /**
+         * Dispatches {@code workItem} for execution.
+         *
+         * @param workItem the work item to execute
+         * @param onCompleted callback that must be invoked once the work item has finished executing
+         * @throws InterruptedException if the calling thread is interrupted while waiting for execution capacity
+         */
+        void handle(WorkItem workItem, Runnable onCompleted) throws InterruptedException;
+    }
+}
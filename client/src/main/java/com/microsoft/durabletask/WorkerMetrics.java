@@ -0,0 +1,102 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runtime metrics of a {@link DurableTaskGrpcWorker}.
+ * <p>
+ * The values are cumulative since the worker was created and are updated while the worker runs, so callers that want
+ * rates should sample them periodically. An instance can be obtained using {@link DurableTaskGrpcWorker#getMetrics}.
+ */
+public final class WorkerMetrics {
+    private final ConcurrentHashMap<String, WaitStatistics> rateLimitWaits = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> memoizationHits = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> memoizationMisses = new ConcurrentHashMap<>();
+
+    // Only intended to be created within this package
+    WorkerMetrics() {
+    }
+
+    /**
+     * Gets the number of activities with the given name that had to wait for the activity's rate limit.
+     *
+     * @param activityName the name of the activity
+     * @return the number of activities that were delayed by the rate limit
+     */
+    public long getRateLimitWaitCount(String activityName) {
+        WaitStatistics statistics = this.rateLimitWaits.get(activityName);
+        return statistics != null ? statistics.count.sum() : 0;
+    }
+
+    /**
+     * Gets the total amount of time that activities with the given name spent waiting for the activity's rate limit.
+     *
+     * @param activityName the name of the activity
+     * @return the total amount of time spent waiting for the rate limit
+     */
+    public Duration getRateLimitWaitTime(String activityName) {
+        WaitStatistics statistics = this.rateLimitWaits.get(activityName);
+        return Duration.ofNanos(statistics != null ? statistics.totalNanos.sum() : 0);
+    }
+
+    /**
+     * Gets the longest amount of time that a single activity with the given name waited for the activity's rate limit.
+     *
+     * @param activityName the name of the activity
+     * @return the longest wait for the rate limit
+     */
+    public Duration getMaxRateLimitWaitTime(String activityName) {
+        WaitStatistics statistics = this.rateLimitWaits.get(activityName);
+        return Duration.ofNanos(statistics != null ? statistics.maxNanos.get() : 0);
+    }
+
+    void recordRateLimitWait(String activityName, long waitNanos) {
+        WaitStatistics statistics = this.rateLimitWaits.computeIfAbsent(activityName, name -> new WaitStatistics());
+        statistics.count.increment();
+        statistics.totalNanos.add(waitNanos);
+        statistics.maxNanos.accumulate(waitNanos);
+    }
+
+    /**
+     * Gets the number of invocations of the memoizable activity with the given name that were answered with a
+     * remembered result instead of running the activity.
+     *
+     * @param activityName the name of the activity
+     * @return the number of memoization hits
+     */
+    public long getMemoizationHitCount(String activityName) {
+        LongAdder hits = this.memoizationHits.get(activityName);
+        return hits != null ? hits.sum() : 0;
+    }
+
+    /**
+     * Gets the number of invocations of the memoizable activity with the given name that had no remembered result and
+     * therefore ran the activity.
+     *
+     * @param activityName the name of the activity
+     * @return the number of memoization misses
+     */
+    public long getMemoizationMissCount(String activityName) {
+        LongAdder misses = this.memoizationMisses.get(activityName);
+        return misses != null ? misses.sum() : 0;
+    }
+
+    void recordMemoizationHit(String activityName) {
+        this.memoizationHits.computeIfAbsent(activityName, name -> new LongAdder()).increment();
+    }
+
+    void recordMemoizationMiss(String activityName) {
+        this.memoizationMisses.computeIfAbsent(activityName, name -> new LongAdder()).increment();
+    }
+
+    private static final class WaitStatistics {
+        final LongAdder count = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    }
+}
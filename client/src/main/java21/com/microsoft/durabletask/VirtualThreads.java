@@ -0,0 +1,31 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access point for virtual thread APIs, which only exist in Java 21 and later.
+ * <p>
+ * This is the Java 21 implementation of this class and is packaged under {@code META-INF/versions/21} in the
+ * multi-release client jar.
+ */
+final class VirtualThreads {
+    static boolean isSupported() {
+        return true;
+    }
+
+    static ThreadFactory newThreadFactory(String namePrefix) {
+        return Thread.ofVirtual().name(namePrefix, 1).factory();
+    }
+
+    static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+        return Executors.newThreadPerTaskExecutor(newThreadFactory(namePrefix));
+    }
+
+    // Cannot be instantiated
+    private VirtualThreads() {
+    }
+}
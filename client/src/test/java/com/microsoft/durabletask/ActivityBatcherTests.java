@@ -0,0 +1,111 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import com.microsoft.durabletask.implementation.protobuf.OrchestratorService.ActivityRequest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link ActivityBatcher}.
+ */
+public class ActivityBatcherTests {
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    @AfterEach
+    void shutDownScheduler() {
+        this.scheduler.shutdownNow();
+    }
+
+    @Test
+    void fullBatchesRunOnTheAddingThread() throws InterruptedException {
+        List<List<Integer>> batches = new ArrayList<>();
+        List<Thread> batchThreads = new ArrayList<>();
+        ActivityBatcher batcher = new ActivityBatcher(3, Duration.ofMinutes(1), this.scheduler, batch -> {
+            batches.add(getTaskIds(batch));
+            batchThreads.add(Thread.currentThread());
+        });
+
+        for (int i = 0; i < 7; i++) {
+            batcher.add(newEntry(i, () -> { }));
+        }
+
+        assertEquals(List.of(List.of(0, 1, 2), List.of(3, 4, 5)), batches);
+        assertEquals(List.of(Thread.currentThread(), Thread.currentThread()), batchThreads);
+    }
+
+    @Test
+    void waitingInvocationsReturnTheirCreditsRightAway() throws InterruptedException {
+        AtomicInteger returnedCredits = new AtomicInteger();
+        List<ActivityBatcher.Entry> lastBatch = new ArrayList<>();
+        ActivityBatcher batcher = new ActivityBatcher(3, Duration.ofMinutes(1), this.scheduler, lastBatch::addAll);
+
+        for (int i = 0; i < 3; i++) {
+            batcher.add(newEntry(i, returnedCredits::incrementAndGet));
+        }
+
+        // The invocation that completed the batch keeps its credit until the batch has run
+        assertEquals(2, returnedCredits.get());
+        assertNull(lastBatch.get(0).credit.get());
+        assertNull(lastBatch.get(1).credit.get());
+        assertNotNull(lastBatch.get(2).credit.get());
+    }
+
+    @Test
+    void partialBatchesRunAfterTheLingerTime() throws Exception {
+        CompletableFuture<List<Integer>> batch = new CompletableFuture<>();
+        ActivityBatcher batcher = new ActivityBatcher(
+                10,
+                Duration.ofMillis(50),
+                this.scheduler,
+                entries -> batch.complete(getTaskIds(entries)));
+
+        batcher.add(newEntry(0, () -> { }));
+        batcher.add(newEntry(1, () -> { }));
+
+        assertEquals(List.of(0, 1), batch.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void flushRunsThePendingBatchOnce() throws InterruptedException {
+        List<List<Integer>> batches = new ArrayList<>();
+        ActivityBatcher batcher = new ActivityBatcher(
+                10,
+                Duration.ofMinutes(1),
+                this.scheduler,
+                batch -> batches.add(getTaskIds(batch)));
+
+        batcher.flush();
+        assertTrue(batches.isEmpty());
+
+        batcher.add(newEntry(0, () -> { }));
+        batcher.flush();
+        batcher.flush();
+        assertEquals(List.of(List.of(0)), batches);
+    }
+
+    private static ActivityBatcher.Entry newEntry(int taskId, Runnable credit) {
+        ActivityRequest request = ActivityRequest.newBuilder()
+                .setName("Batch")
+                .setTaskId(taskId)
+                .build();
+        return new ActivityBatcher.Entry(null, request, credit);
+    }
+
+    private static List<Integer> getTaskIds(List<ActivityBatcher.Entry> batch) {
+        return batch.stream().map(entry -> entry.activityRequest.getTaskId()).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,98 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import com.google.protobuf.StringValue;
+import com.microsoft.durabletask.implementation.protobuf.OrchestratorService.ActivityRequest;
+import com.microsoft.durabletask.implementation.protobuf.OrchestratorService.ActivityResponse;
+import com.microsoft.durabletask.implementation.protobuf.OrchestratorService.OrchestrationInstance;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the redelivery deduplication configured using
+ * {@link DurableTaskGrpcWorkerBuilder#activityDeduplication}.
+ */
+public class ActivityDeduplicationTests {
+    private final DurableTaskGrpcWorker worker = new DurableTaskGrpcWorkerBuilder()
+            .activityDeduplication(10, Duration.ofMinutes(1))
+            .build();
+
+    @AfterEach
+    void closeWorker() {
+        this.worker.close();
+    }
+
+    @Test
+    void redeliveredActivitiesGetTheRememberedResponse() {
+        ActivityRequest request = newRequest("instance", "execution", 1);
+        ActivityResponse response = newResponse(request, "\"result\"");
+        assertNull(this.worker.getCachedActivityResponse(request));
+
+        this.worker.rememberActivityResponse(request, response, null);
+        assertEquals(response, this.worker.getCachedActivityResponse(newRequest("instance", "execution", 1)));
+    }
+
+    @Test
+    void failuresAreRememberedButCircuitBreakerRejectionsAreNot() {
+        ActivityRequest failed = newRequest("instance", "execution", 1);
+        ActivityResponse failedResponse = newResponse(failed, null);
+        this.worker.rememberActivityResponse(failed, failedResponse, new IllegalStateException("failed"));
+        assertEquals(failedResponse, this.worker.getCachedActivityResponse(failed));
+
+        ActivityRequest rejected = newRequest("instance", "execution", 2);
+        this.worker.rememberActivityResponse(
+                rejected,
+                newResponse(rejected, null),
+                new CircuitBreakerOpenException("Activity"));
+        assertNull(this.worker.getCachedActivityResponse(rejected));
+    }
+
+    @Test
+    void continuedAsNewInstancesDontReuseResponses() {
+        ActivityRequest request = newRequest("instance", "first-execution", 1);
+        this.worker.rememberActivityResponse(request, newResponse(request, "\"result\""), null);
+
+        // Task IDs start over after continue-as-new, so only the execution ID tells the invocations apart
+        assertNull(this.worker.getCachedActivityResponse(newRequest("instance", "second-execution", 1)));
+        assertNull(this.worker.getCachedActivityResponse(newRequest("other-instance", "first-execution", 1)));
+        assertNull(this.worker.getCachedActivityResponse(newRequest("instance", "first-execution", 2)));
+    }
+
+    @Test
+    void withoutDeduplicationNothingIsRemembered() {
+        DurableTaskGrpcWorker plainWorker = new DurableTaskGrpcWorkerBuilder().build();
+        try {
+            ActivityRequest request = newRequest("instance", "execution", 1);
+            plainWorker.rememberActivityResponse(request, newResponse(request, "\"result\""), null);
+            assertNull(plainWorker.getCachedActivityResponse(request));
+        } finally {
+            plainWorker.close();
+        }
+    }
+
+    private static ActivityRequest newRequest(String instanceId, String executionId, int taskId) {
+        return ActivityRequest.newBuilder()
+                .setName("Activity")
+                .setTaskId(taskId)
+                .setOrchestrationInstance(OrchestrationInstance.newBuilder()
+                        .setInstanceId(instanceId)
+                        .setExecutionId(StringValue.of(executionId)))
+                .build();
+    }
+
+    private static ActivityResponse newResponse(ActivityRequest request, String output) {
+        ActivityResponse.Builder response = ActivityResponse.newBuilder()
+                .setInstanceId(request.getOrchestrationInstance().getInstanceId())
+                .setTaskId(request.getTaskId());
+        if (output != null) {
+            response.setResult(StringValue.of(output));
+        }
+        return response.build();
+    }
+}
@@ -0,0 +1,108 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import com.google.protobuf.StringValue;
+import com.microsoft.durabletask.implementation.protobuf.OrchestratorService.ActivityRequest;
+import com.microsoft.durabletask.implementation.protobuf.OrchestratorService.ActivityResponse;
+import com.microsoft.durabletask.implementation.protobuf.OrchestratorService.OrchestrationInstance;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the memoization configured using {@link DurableTaskGrpcWorkerBuilder#activityMemoization}.
+ */
+public class ActivityMemoizationTests {
+    private static final String ACTIVITY_NAME = "Pure";
+
+    private final DurableTaskGrpcWorker worker = new DurableTaskGrpcWorkerBuilder()
+            .activityMemoization(ACTIVITY_NAME, 10, Duration.ofMinutes(1))
+            .build();
+
+    @AfterEach
+    void closeWorker() {
+        this.worker.close();
+    }
+
+    @Test
+    void resultsAreReusedForTheSameInputAcrossInstances() {
+        ActivityRequest first = newRequest(ACTIVITY_NAME, "first-instance", 1, "42");
+        assertNull(this.worker.getCachedActivityResponse(first));
+        this.worker.rememberActivityResponse(first, newResponse(first, "\"result\""), null);
+
+        // The remembered response is addressed to the new invocation
+        ActivityResponse response = this.worker.getCachedActivityResponse(
+                newRequest(ACTIVITY_NAME, "second-instance", 7, "42"));
+        assertNotNull(response);
+        assertEquals("second-instance", response.getInstanceId());
+        assertEquals(7, response.getTaskId());
+        assertEquals("\"result\"", response.getResult().getValue());
+
+        assertEquals(1, this.worker.getMetrics().getMemoizationHitCount(ACTIVITY_NAME));
+        assertEquals(1, this.worker.getMetrics().getMemoizationMissCount(ACTIVITY_NAME));
+    }
+
+    @Test
+    void differentInputsAreNotReused() {
+        ActivityRequest request = newRequest(ACTIVITY_NAME, "instance", 1, "42");
+        this.worker.rememberActivityResponse(request, newResponse(request, "\"result\""), null);
+
+        assertNull(this.worker.getCachedActivityResponse(newRequest(ACTIVITY_NAME, "instance", 2, "43")));
+        assertEquals(1, this.worker.getMetrics().getMemoizationMissCount(ACTIVITY_NAME));
+    }
+
+    @Test
+    void failuresAreNotMemoized() {
+        ActivityRequest request = newRequest(ACTIVITY_NAME, "instance", 1, "42");
+        this.worker.rememberActivityResponse(request, newResponse(request, null), new IllegalStateException("failed"));
+
+        assertNull(this.worker.getCachedActivityResponse(newRequest(ACTIVITY_NAME, "instance", 2, "42")));
+    }
+
+    @Test
+    void otherActivitiesAreNotMemoized() {
+        ActivityRequest request = newRequest("Other", "instance", 1, "42");
+        this.worker.rememberActivityResponse(request, newResponse(request, "\"result\""), null);
+
+        assertNull(this.worker.getCachedActivityResponse(newRequest("Other", "instance", 2, "42")));
+        assertEquals(0, this.worker.getMetrics().getMemoizationMissCount("Other"));
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        DurableTaskGrpcWorkerBuilder builder = new DurableTaskGrpcWorkerBuilder();
+        assertThrows(IllegalArgumentException.class, () -> builder.activityMemoization(" ", 1, Duration.ofMinutes(1)));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> builder.activityMemoization(ACTIVITY_NAME, 0, Duration.ofMinutes(1)));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> builder.activityMemoization(ACTIVITY_NAME, 1, Duration.ZERO));
+    }
+
+    private static ActivityRequest newRequest(String name, String instanceId, int taskId, String input) {
+        return ActivityRequest.newBuilder()
+                .setName(name)
+                .setTaskId(taskId)
+                .setInput(StringValue.of(input))
+                .setOrchestrationInstance(OrchestrationInstance.newBuilder()
+                        .setInstanceId(instanceId)
+                        .setExecutionId(StringValue.of("execution")))
+                .build();
+    }
+
+    private static ActivityResponse newResponse(ActivityRequest request, String output) {
+        ActivityResponse.Builder response = ActivityResponse.newBuilder()
+                .setInstanceId(request.getOrchestrationInstance().getInstanceId())
+                .setTaskId(request.getTaskId());
+        if (output != null) {
+            response.setResult(StringValue.of(output));
+        }
+        return response.build();
+    }
+}
@@ -0,0 +1,93 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link AdaptiveConcurrencyLimiter}.
+ */
+public class AdaptiveConcurrencyLimiterTests {
+    private static final long FAST_LATENCY_NANOS = 1_000_000;
+
+    @Test
+    void tryAcquireRespectsTheLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 2, 4);
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+
+        limiter.release();
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    void failuresLowerTheLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 4, 8);
+        limiter.tryAcquire();
+        limiter.recordOutcome(FAST_LATENCY_NANOS, false);
+        assertEquals(3, limiter.getLimit());
+    }
+
+    @Test
+    void slowWorkItemsLowerTheLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 4, 8);
+        limiter.tryAcquire();
+        limiter.recordOutcome(FAST_LATENCY_NANOS, true);
+        assertEquals(4, limiter.getLimit());
+
+        limiter.recordOutcome(FAST_LATENCY_NANOS * 3, true);
+        assertEquals(3, limiter.getLimit());
+    }
+
+    @Test
+    void fastWorkItemsOnlyRaiseTheLimitWhileItsUsed() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 4, 8);
+        limiter.tryAcquire();
+        for (int i = 0; i < 10; i++) {
+            limiter.recordOutcome(FAST_LATENCY_NANOS, true);
+        }
+        assertEquals(4, limiter.getLimit());
+
+        limiter.tryAcquire();
+        limiter.recordOutcome(FAST_LATENCY_NANOS, true);
+        assertTrue(limiter.getLimit() < 5);
+    }
+
+    @Test
+    void fastWorkItemsRaiseTheLimitByAboutOnePerWindow() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 4, 8);
+        for (int i = 0; i < 4; i++) {
+            limiter.tryAcquire();
+        }
+
+        // Each success adds 1 / limit, so it takes a little more than a window of four successes to reach five
+        for (int i = 0; i < 4; i++) {
+            limiter.recordOutcome(FAST_LATENCY_NANOS, true);
+        }
+        assertEquals(4, limiter.getLimit());
+        limiter.recordOutcome(FAST_LATENCY_NANOS, true);
+        assertEquals(5, limiter.getLimit());
+    }
+
+    @Test
+    void limitStaysWithinItsBounds() {
+        AdaptiveConcurrencyLimiter lowLimiter = new AdaptiveConcurrencyLimiter(2, 2, 4);
+        lowLimiter.tryAcquire();
+        lowLimiter.recordOutcome(FAST_LATENCY_NANOS, false);
+        assertEquals(2, lowLimiter.getLimit());
+
+        AdaptiveConcurrencyLimiter highLimiter = new AdaptiveConcurrencyLimiter(1, 1, 1);
+        highLimiter.tryAcquire();
+        highLimiter.recordOutcome(FAST_LATENCY_NANOS, true);
+        assertEquals(1, highLimiter.getLimit());
+    }
+
+    @Test
+    void rejectsInvalidLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimiter(0, 1, 2));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimiter(3, 3, 2));
+    }
+}
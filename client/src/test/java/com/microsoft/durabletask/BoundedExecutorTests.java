@@ -0,0 +1,92 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link BoundedExecutor}.
+ */
+public class BoundedExecutorTests {
+    @Test
+    void executeWaitsForCapacity() throws Exception {
+        BoundedExecutor executor = new BoundedExecutor(Executors.newFixedThreadPool(2), 1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        CountDownLatch secondRan = new CountDownLatch(1);
+        try {
+            executor.execute(() -> await(releaseFirst));
+            CompletableFuture<Void> submitSecond = CompletableFuture.runAsync(() -> {
+                try {
+                    executor.execute(secondRan::countDown);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+
+            Thread.sleep(100);
+            assertFalse(submitSecond.isDone());
+
+            releaseFirst.countDown();
+            submitSecond.get(10, TimeUnit.SECONDS);
+            assertTrue(secondRan.await(10, TimeUnit.SECONDS));
+        } finally {
+            releaseFirst.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void rejectedTasksGiveBackTheirCapacity() {
+        ExecutorService stopped = Executors.newSingleThreadExecutor();
+        stopped.shutdown();
+        BoundedExecutor executor = new BoundedExecutor(stopped, 1);
+
+        // The second call would wait forever if the first one had kept its permit
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> { }));
+            assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> { }));
+        });
+    }
+
+    @Test
+    void executeAdmittedDoesntWaitForCapacity() throws Exception {
+        BoundedExecutor executor = new BoundedExecutor(Executors.newSingleThreadExecutor(), 1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        CountDownLatch admittedRan = new CountDownLatch(1);
+        try {
+            executor.execute(() -> await(releaseFirst));
+            assertTimeoutPreemptively(
+                    Duration.ofSeconds(10),
+                    () -> executor.executeAdmitted(admittedRan::countDown, PrioritizedTask.DEFAULT_PRIORITY));
+
+            releaseFirst.countDown();
+            assertTrue(admittedRan.await(10, TimeUnit.SECONDS));
+        } finally {
+            releaseFirst.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void rejectsInvalidCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new BoundedExecutor(Executors.newSingleThreadExecutor(), 0));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link Bulkhead}.
+ */
+public class BulkheadTests {
+    @Test
+    void parkedTasksRunOnTheSlotThreadAfterSynchronousTasks() {
+        Bulkhead bulkhead = new Bulkhead(1);
+        List<String> runs = new ArrayList<>();
+        List<Runnable> submitted = new ArrayList<>();
+        Consumer<Runnable> first = releaseSlot -> {
+            runs.add("first");
+            releaseSlot.run();
+        };
+        Consumer<Runnable> second = releaseSlot -> {
+            runs.add("second");
+            releaseSlot.run();
+        };
+
+        assertTrue(bulkhead.admit(first));
+        assertFalse(bulkhead.admit(second));
+        bulkhead.newSlotRunner(first, submitted::add).run();
+
+        assertEquals(List.of("first", "second"), runs);
+        assertTrue(submitted.isEmpty());
+        assertEquals(0, bulkhead.getRunningCount());
+    }
+
+    @Test
+    void asynchronousTasksKeepTheirSlotUntilTheyComplete() {
+        Bulkhead bulkhead = new Bulkhead(1);
+        CompletableFuture<Void> stage = new CompletableFuture<>();
+        List<String> runs = new ArrayList<>();
+        List<Runnable> submitted = new ArrayList<>();
+        Consumer<Runnable> asyncTask = releaseSlot -> {
+            runs.add("async");
+            stage.whenComplete((r, e) -> releaseSlot.run());
+        };
+        Consumer<Runnable> parkedTask = releaseSlot -> {
+            runs.add("parked");
+            releaseSlot.run();
+        };
+
+        assertTrue(bulkhead.admit(asyncTask));
+        bulkhead.newSlotRunner(asyncTask, submitted::add).run();
+        assertEquals(1, bulkhead.getRunningCount());
+        assertFalse(bulkhead.admit(parkedTask));
+        assertEquals(List.of("async"), runs);
+
+        // The parked task is handed to the executor instead of running on the thread that completed the stage
+        stage.complete(null);
+        assertEquals(1, submitted.size());
+        assertEquals(List.of("async"), runs);
+        submitted.get(0).run();
+        assertEquals(List.of("async", "parked"), runs);
+        assertEquals(0, bulkhead.getRunningCount());
+    }
+
+    @Test
+    void failingTasksReleaseTheirSlot() {
+        Bulkhead bulkhead = new Bulkhead(1);
+        List<Throwable> uncaught = new ArrayList<>();
+        Consumer<Runnable> failing = releaseSlot -> {
+            throw new IllegalStateException("failed");
+        };
+        Consumer<Runnable> parked = Runnable::run;
+
+        assertTrue(bulkhead.admit(failing));
+        assertFalse(bulkhead.admit(parked));
+        Thread currentThread = Thread.currentThread();
+        Thread.UncaughtExceptionHandler handler = currentThread.getUncaughtExceptionHandler();
+        currentThread.setUncaughtExceptionHandler((t, e) -> uncaught.add(e));
+        try {
+            bulkhead.newSlotRunner(failing, Runnable::run).run();
+        } finally {
+            currentThread.setUncaughtExceptionHandler(handler);
+        }
+
+        assertEquals(1, uncaught.size());
+        assertEquals(0, bulkhead.getRunningCount());
+        assertTrue(bulkhead.admit(parked));
+    }
+
+    @Test
+    void unstartedTasksGiveTheirSlotBack() {
+        Bulkhead bulkhead = new Bulkhead(1);
+        Consumer<Runnable> task = Runnable::run;
+
+        // The worker claimed the slot, but the executor rejected the slot runner
+        assertTrue(bulkhead.admit(task));
+        bulkhead.releaseUnstarted();
+
+        assertEquals(0, bulkhead.getRunningCount());
+        assertTrue(bulkhead.admit(task));
+    }
+
+    @Test
+    void parkingCapacityMatchesTheConcurrency() {
+        Bulkhead bulkhead = new Bulkhead(2);
+        Consumer<Runnable> task = Runnable::run;
+        for (int i = 0; i < 4; i++) {
+            bulkhead.admit(task);
+        }
+        assertTrue(bulkhead.hasParkingCapacity());
+
+        bulkhead.admit(task);
+        assertFalse(bulkhead.hasParkingCapacity());
+    }
+
+    @Test
+    void buildRejectsBulkheadsForUnknownActivities() {
+        DurableTaskGrpcWorkerBuilder builder = new DurableTaskGrpcWorkerBuilder().activityBulkhead("Missing", 2);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, builder::build);
+        assertTrue(e.getMessage().contains("Missing"));
+    }
+}
@@ -0,0 +1,86 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link CircuitBreaker}.
+ */
+public class CircuitBreakerTests {
+    @Test
+    void opensAfterConsecutiveFailures() {
+        CircuitBreaker breaker = new CircuitBreaker(3, Duration.ofMinutes(1));
+        for (int i = 0; i < 2; i++) {
+            breaker.onFailure(breaker.tryAcquire());
+        }
+
+        // A success resets the count
+        breaker.onSuccess(breaker.tryAcquire());
+        for (int i = 0; i < 2; i++) {
+            breaker.onFailure(breaker.tryAcquire());
+        }
+        assertNotEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+
+        breaker.onFailure(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+    }
+
+    @Test
+    void successfulProbeClosesTheBreaker() {
+        CircuitBreaker breaker = new CircuitBreaker(1, Duration.ZERO);
+        breaker.onFailure(breaker.tryAcquire());
+
+        long probe = breaker.tryAcquire();
+        assertNotEquals(CircuitBreaker.REJECTED, probe);
+        assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+
+        breaker.onSuccess(probe);
+        assertNotEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+        assertNotEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+    }
+
+    @Test
+    void failedProbeReopensTheBreaker() {
+        CircuitBreaker breaker = new CircuitBreaker(1, Duration.ofMillis(50));
+        breaker.onFailure(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+
+        long probe = waitForProbe(breaker);
+        breaker.onFailure(probe);
+        assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+    }
+
+    @Test
+    void outcomesOfStaleCallsAreIgnored() {
+        CircuitBreaker breaker = new CircuitBreaker(1, Duration.ZERO);
+        long slowCall = breaker.tryAcquire();
+        breaker.onFailure(breaker.tryAcquire());
+
+        // The slow call started before the breaker opened, so its success can't close the breaker
+        long probe = breaker.tryAcquire();
+        breaker.onSuccess(slowCall);
+        assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+
+        // A failure from an earlier generation doesn't count towards the threshold either
+        breaker.onSuccess(probe);
+        breaker.onFailure(slowCall);
+        assertNotEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+    }
+
+    private static long waitForProbe(CircuitBreaker breaker) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (System.nanoTime() < deadline) {
+            long permit = breaker.tryAcquire();
+            if (permit != CircuitBreaker.REJECTED) {
+                return permit;
+            }
+            Thread.yield();
+        }
+        return fail("The breaker didn't let a probe through");
+    }
+}
@@ -0,0 +1,118 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link CompletionOutbox}.
+ */
+public class CompletionOutboxTests {
+    private static final int CAPACITY = 4096;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void reclaimsAcknowledgedRecordsWhileOthersStayPending() throws IOException {
+        Path file = this.tempDir.resolve("outbox.bin");
+        try (CompletionOutbox outbox = CompletionOutbox.open(file, CAPACITY)) {
+            int pinnedRecord = outbox.append(CompletionOutbox.KIND_ORCHESTRATOR, payload("pinned"));
+            assertTrue(pinnedRecord >= 0);
+
+            // Write many times the capacity of the file with a few completions in flight at any time
+            ArrayDeque<Integer> inFlight = new ArrayDeque<>();
+            for (int i = 0; i < 10_000; i++) {
+                int recordId = outbox.append(CompletionOutbox.KIND_ACTIVITY, payload("result-" + i + "-padding"));
+                assertTrue(recordId >= 0, "The outbox filled up after " + i + " records");
+                inFlight.add(recordId);
+                if (inFlight.size() > 3) {
+                    outbox.acknowledge(inFlight.remove());
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                outbox.release(inFlight.remove());
+            }
+            outbox.release(pinnedRecord);
+
+            List<CompletionOutbox.Record> records = outbox.takeUnsentRecords();
+            assertEquals(4, records.size());
+            assertEquals("pinned", text(records.get(0)));
+            assertEquals(CompletionOutbox.KIND_ORCHESTRATOR, records.get(0).kind);
+            assertEquals("result-9997-padding", text(records.get(1)));
+            assertEquals("result-9999-padding", text(records.get(3)));
+        }
+    }
+
+    @Test
+    void pendingRecordsSurviveRestart() throws IOException {
+        Path file = this.tempDir.resolve("outbox.bin");
+        try (CompletionOutbox outbox = CompletionOutbox.open(file, CAPACITY)) {
+            int pinnedRecord = outbox.append(CompletionOutbox.KIND_ACTIVITY, payload("first"));
+            for (int i = 0; i < 1000; i++) {
+                outbox.acknowledge(outbox.append(CompletionOutbox.KIND_ACTIVITY, payload("delivered-" + i)));
+            }
+            outbox.append(CompletionOutbox.KIND_ORCHESTRATOR, payload("last"));
+            outbox.release(pinnedRecord);
+        }
+
+        try (CompletionOutbox outbox = CompletionOutbox.open(file, CAPACITY)) {
+            assertTrue(outbox.hasUnsentRecords());
+            List<CompletionOutbox.Record> records = outbox.takeUnsentRecords();
+            assertEquals(2, records.size());
+            assertEquals("first", text(records.get(0)));
+            assertEquals("last", text(records.get(1)));
+            assertEquals(CompletionOutbox.KIND_ORCHESTRATOR, records.get(1).kind);
+            assertFalse(outbox.hasUnsentRecords());
+
+            records.forEach(record -> outbox.acknowledge(record.id));
+        }
+
+        try (CompletionOutbox outbox = CompletionOutbox.open(file, CAPACITY)) {
+            assertFalse(outbox.hasUnsentRecords());
+            assertTrue(outbox.takeUnsentRecords().isEmpty());
+        }
+    }
+
+    @Test
+    void rejectsRecordsOnlyWhilePendingRecordsFillTheOutbox() throws IOException {
+        try (CompletionOutbox outbox = CompletionOutbox.open(this.tempDir.resolve("outbox.bin"), CAPACITY)) {
+            ArrayDeque<Integer> pending = new ArrayDeque<>();
+            int recordId;
+            while ((recordId = outbox.append(CompletionOutbox.KIND_ACTIVITY, new byte[100])) >= 0) {
+                pending.add(recordId);
+            }
+            assertFalse(pending.isEmpty());
+            assertTrue(pending.size() * 100 < CAPACITY);
+
+            outbox.acknowledge(pending.remove());
+            assertTrue(outbox.append(CompletionOutbox.KIND_ACTIVITY, new byte[100]) >= 0);
+            assertEquals(-1, outbox.append(CompletionOutbox.KIND_ACTIVITY, new byte[100]));
+            assertEquals(-1, outbox.append(CompletionOutbox.KIND_ACTIVITY, new byte[CAPACITY]));
+        }
+    }
+
+    @Test
+    void rejectsFilesThatArentOutboxes() throws IOException {
+        Path file = this.tempDir.resolve("other.bin");
+        java.nio.file.Files.write(file, new byte[64]);
+        assertThrows(IOException.class, () -> CompletionOutbox.open(file, CAPACITY));
+    }
+
+    private static byte[] payload(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(CompletionOutbox.Record record) {
+        return new String(record.payload, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,184 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import com.microsoft.durabletask.implementation.protobuf.OrchestratorService.ActivityResponse;
+import com.microsoft.durabletask.implementation.protobuf.OrchestratorService.CompleteTaskResponse;
+import com.microsoft.durabletask.implementation.protobuf.TaskHubSidecarServiceGrpc;
+import com.microsoft.durabletask.implementation.protobuf.TaskHubSidecarServiceGrpc.TaskHubSidecarServiceStub;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link CompletionPipeline}.
+ */
+public class CompletionPipelineTests {
+    private static final Logger logger = Logger.getLogger(CompletionPipelineTests.class.getName());
+
+    private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor();
+    private final FakeChannel channel = new FakeChannel();
+    private final TaskHubSidecarServiceStub sidecarClient = TaskHubSidecarServiceGrpc.newStub(this.channel);
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    void shutDownScheduler() {
+        this.retryScheduler.shutdownNow();
+    }
+
+    @Test
+    void acknowledgedCompletionsFreeTheirSlot() throws InterruptedException {
+        CompletionPipeline pipeline = new CompletionPipeline(1, this.retryScheduler, logger);
+        pipeline.completeActivityTask(this.sidecarClient, activityResponse(1));
+
+        FakeCall call = this.channel.nextCall();
+        assertEquals(1, ((ActivityResponse) call.request).getTaskId());
+        assertFalse(pipeline.awaitOutstandingCompletions(Duration.ZERO));
+
+        call.respond(Status.OK);
+        assertTrue(pipeline.awaitOutstandingCompletions(Duration.ofSeconds(10)));
+    }
+
+    @Test
+    void transientFailuresAreRetried() throws InterruptedException {
+        CompletionPipeline pipeline = new CompletionPipeline(1, this.retryScheduler, logger);
+        pipeline.completeActivityTask(this.sidecarClient, activityResponse(1));
+
+        this.channel.nextCall().respond(Status.UNAVAILABLE);
+        FakeCall retry = this.channel.nextCall();
+        assertEquals(1, ((ActivityResponse) retry.request).getTaskId());
+        assertFalse(pipeline.awaitOutstandingCompletions(Duration.ZERO));
+
+        retry.respond(Status.OK);
+        assertTrue(pipeline.awaitOutstandingCompletions(Duration.ofSeconds(10)));
+    }
+
+    @Test
+    void rejectedCompletionsAreNotRetried() throws InterruptedException {
+        CompletionPipeline pipeline = new CompletionPipeline(1, this.retryScheduler, logger);
+        pipeline.completeActivityTask(this.sidecarClient, activityResponse(1));
+
+        this.channel.nextCall().respond(Status.INVALID_ARGUMENT);
+        assertTrue(pipeline.awaitOutstandingCompletions(Duration.ofSeconds(10)));
+        assertNull(this.channel.calls.poll(500, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void undeliveredCompletionsAreResentFromTheOutbox() throws IOException, InterruptedException {
+        try (CompletionOutbox outbox = CompletionOutbox.open(this.tempDir.resolve("outbox.bin"), 4096)) {
+            // Shutting down the scheduler leaves no room for retries, like when the worker is closing
+            this.retryScheduler.shutdown();
+            CompletionPipeline pipeline = new CompletionPipeline(1, this.retryScheduler, outbox, logger);
+            pipeline.completeActivityTask(this.sidecarClient, activityResponse(1));
+            this.channel.nextCall().respond(Status.UNAVAILABLE);
+            assertTrue(pipeline.awaitOutstandingCompletions(Duration.ofSeconds(10)));
+            assertTrue(outbox.hasUnsentRecords());
+
+            pipeline.resendFromOutbox(this.sidecarClient);
+            FakeCall resent = this.channel.nextCall();
+            assertEquals(1, ((ActivityResponse) resent.request).getTaskId());
+            resent.respond(Status.OK);
+            assertTrue(pipeline.awaitOutstandingCompletions(Duration.ofSeconds(10)));
+
+            List<CompletionOutbox.Record> unsentRecords = outbox.takeUnsentRecords();
+            assertTrue(unsentRecords.isEmpty());
+        }
+    }
+
+    private static ActivityResponse activityResponse(int taskId) {
+        return ActivityResponse.newBuilder().setInstanceId("instance").setTaskId(taskId).build();
+    }
+
+    /**
+     * Channel that records the calls made on it and lets the test decide how the sidecar responds.
+     */
+    private static final class FakeChannel extends Channel {
+        final LinkedBlockingQueue<FakeCall> calls = new LinkedBlockingQueue<>();
+
+        FakeCall nextCall() throws InterruptedException {
+            FakeCall call = this.calls.poll(10, TimeUnit.SECONDS);
+            assertNotNull(call, "The pipeline didn't send a completion.");
+            return call;
+        }
+
+        @Override
+        public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(
+                MethodDescriptor<ReqT, RespT> methodDescriptor,
+                CallOptions callOptions) {
+            return new ClientCall<ReqT, RespT>() {
+                private Listener<RespT> listener;
+
+                @Override
+                public void start(Listener<RespT> responseListener, Metadata headers) {
+                    this.listener = responseListener;
+                }
+
+                @Override
+                public void request(int numMessages) {
+                }
+
+                @Override
+                public void cancel(String message, Throwable cause) {
+                }
+
+                @Override
+                public void halfClose() {
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public void sendMessage(ReqT message) {
+                    Listener<RespT> responseListener = this.listener;
+                    calls.add(new FakeCall(message, status -> {
+                        if (status.isOk()) {
+                            responseListener.onMessage((RespT) CompleteTaskResponse.getDefaultInstance());
+                        }
+                        responseListener.onClose(status, new Metadata());
+                    }));
+                }
+            };
+        }
+
+        @Override
+        public String authority() {
+            return "localhost";
+        }
+    }
+
+    private static final class FakeCall {
+        final Object request;
+        private final Consumer<Status> responder;
+
+        FakeCall(Object request, Consumer<Status> responder) {
+            this.request = request;
+            this.responder = responder;
+        }
+
+        void respond(Status status) {
+            this.responder.accept(status);
+        }
+    }
+}
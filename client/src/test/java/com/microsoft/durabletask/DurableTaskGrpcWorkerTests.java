@@ -0,0 +1,296 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import com.microsoft.durabletask.implementation.protobuf.OrchestratorService.ActivityRequest;
+import com.microsoft.durabletask.implementation.protobuf.OrchestratorService.ActivityResponse;
+import com.microsoft.durabletask.implementation.protobuf.OrchestratorService.CompleteTaskResponse;
+import com.microsoft.durabletask.implementation.protobuf.OrchestratorService.ExecutionStartedEvent;
+import com.microsoft.durabletask.implementation.protobuf.OrchestratorService.GetWorkItemsRequest;
+import com.microsoft.durabletask.implementation.protobuf.OrchestratorService.HistoryEvent;
+import com.microsoft.durabletask.implementation.protobuf.OrchestratorService.OrchestrationInstance;
+import com.microsoft.durabletask.implementation.protobuf.OrchestratorService.OrchestratorAction;
+import com.microsoft.durabletask.implementation.protobuf.OrchestratorService.OrchestratorRequest;
+import com.microsoft.durabletask.implementation.protobuf.OrchestratorService.OrchestratorResponse;
+import com.microsoft.durabletask.implementation.protobuf.OrchestratorService.OrchestratorStartedEvent;
+import com.microsoft.durabletask.implementation.protobuf.OrchestratorService.WorkItem;
+import com.microsoft.durabletask.implementation.protobuf.TaskHubSidecarServiceGrpc;
+
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link DurableTaskGrpcWorker} that run it against a fake sidecar.
+ */
+public class DurableTaskGrpcWorkerTests {
+    private final FakeSidecar sidecar = new FakeSidecar();
+    private final List<DurableTaskGrpcWorker> workers = new ArrayList<>();
+    private Server server;
+
+    @BeforeEach
+    void startSidecar() throws IOException {
+        this.server = ServerBuilder.forPort(0).addService(this.sidecar).build().start();
+    }
+
+    @AfterEach
+    void stopSidecar() {
+        for (DurableTaskGrpcWorker worker : this.workers) {
+            worker.close();
+        }
+        this.server.shutdownNow();
+    }
+
+    @Test
+    void everyStreamOpensItsOwnCall() throws InterruptedException {
+        this.startWorker(new DurableTaskGrpcWorkerBuilder().workItemStreams(3));
+
+        List<ServerCallStreamObserver<WorkItem>> streams = this.sidecar.awaitStreams(3);
+        assertEquals(3, streams.stream().distinct().count());
+        assertNull(this.sidecar.openedStreams.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void streamsReconnectIndependently() throws InterruptedException {
+        this.startWorker(new DurableTaskGrpcWorkerBuilder().workItemStreams(3));
+        List<ServerCallStreamObserver<WorkItem>> streams = this.sidecar.awaitStreams(3);
+
+        // Only the stream that failed is opened again, and the others stay connected
+        streams.get(0).onError(Status.UNAVAILABLE.asRuntimeException());
+        assertNotNull(this.sidecar.openedStreams.poll(10, TimeUnit.SECONDS));
+        assertNull(this.sidecar.openedStreams.poll(200, TimeUnit.MILLISECONDS));
+        assertFalse(streams.get(1).isCancelled());
+        assertFalse(streams.get(2).isCancelled());
+    }
+
+    @Test
+    void everyStreamDeliversWorkItems() throws InterruptedException {
+        this.startWorker(new DurableTaskGrpcWorkerBuilder()
+                .workItemStreams(2)
+                .addActivity(activity("Echo", ctx -> ctx.getInput(String.class))));
+        List<ServerCallStreamObserver<WorkItem>> streams = this.sidecar.awaitStreams(2);
+
+        streams.get(0).onNext(activityWorkItem("Echo", 1));
+        streams.get(1).onNext(activityWorkItem("Echo", 2));
+
+        List<Integer> taskIds = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            ActivityResponse response = this.sidecar.activityResponses.poll(10, TimeUnit.SECONDS);
+            assertNotNull(response);
+            taskIds.add(response.getTaskId());
+        }
+        taskIds.sort(null);
+        assertEquals(List.of(1, 2), taskIds);
+    }
+
+    @Test
+    void closeWaitsForInFlightActivitiesFromEveryStream() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(2);
+        DurableTaskGrpcWorker worker = this.startWorker(new DurableTaskGrpcWorkerBuilder()
+                .workItemStreams(2)
+                .addActivity(activity("Slow", ctx -> {
+                    started.countDown();
+                    sleepUninterruptibly(Duration.ofMillis(500));
+                    return "done";
+                })));
+        List<ServerCallStreamObserver<WorkItem>> streams = this.sidecar.awaitStreams(2);
+        streams.get(0).onNext(activityWorkItem("Slow", 1));
+        streams.get(1).onNext(activityWorkItem("Slow", 2));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        // Both results reach the sidecar before close() returns
+        worker.close();
+        assertEquals(2, this.sidecar.activityResponses.size());
+        for (ActivityResponse response : this.sidecar.activityResponses) {
+            assertEquals("\"done\"", response.getResult().getValue());
+        }
+    }
+
+    @Test
+    void closeWaitsForInFlightOrchestrations() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        DurableTaskGrpcWorker worker = this.startWorker(new DurableTaskGrpcWorkerBuilder()
+                .addOrchestration(orchestration("Slow", ctx -> {
+                    started.countDown();
+                    sleepUninterruptibly(Duration.ofMillis(500));
+                    ctx.complete("done");
+                })));
+        this.sidecar.awaitStreams(1).get(0).onNext(orchestratorWorkItem("Slow", "instance"));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        worker.close();
+        OrchestratorResponse response = this.sidecar.orchestratorResponses.poll();
+        assertNotNull(response);
+        assertEquals("instance", response.getInstanceId());
+        assertTrue(response.getActionsList().stream().anyMatch(OrchestratorAction::hasCompleteOrchestration));
+    }
+
+    @Test
+    void closeCancelsEveryStream() throws InterruptedException {
+        DurableTaskGrpcWorker worker = this.startWorker(new DurableTaskGrpcWorkerBuilder().workItemStreams(3));
+        List<ServerCallStreamObserver<WorkItem>> streams = this.sidecar.awaitStreams(3);
+
+        worker.close();
+        for (int i = 0; i < streams.size(); i++) {
+            assertNotNull(this.sidecar.cancelledStreams.poll(10, TimeUnit.SECONDS));
+        }
+        assertNull(this.sidecar.openedStreams.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void closeInterruptsWorkThatOutlivesTheShutdownTimeout() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        DurableTaskGrpcWorker worker = this.startWorker(new DurableTaskGrpcWorkerBuilder()
+                .shutdownTimeout(Duration.ofMillis(200))
+                .addActivity(activity("Hung", ctx -> {
+                    started.countDown();
+                    try {
+                        Thread.sleep(Duration.ofMinutes(1).toMillis());
+                    } catch (InterruptedException e) {
+                        interrupted.countDown();
+                    }
+                    return null;
+                })));
+        this.sidecar.awaitStreams(1).get(0).onNext(activityWorkItem("Hung", 1));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        long closeStart = System.nanoTime();
+        worker.close();
+        assertTrue(Duration.ofNanos(System.nanoTime() - closeStart).compareTo(Duration.ofSeconds(10)) < 0);
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+    }
+
+    private DurableTaskGrpcWorker startWorker(DurableTaskGrpcWorkerBuilder builder) {
+        DurableTaskGrpcWorker worker = builder.port(this.server.getPort()).build();
+        this.workers.add(worker);
+
+        Thread workerThread = new Thread(worker::startAndBlock, "worker");
+        workerThread.setDaemon(true);
+        workerThread.start();
+        return worker;
+    }
+
+    private static TaskActivityFactory activity(String name, TaskActivity activity) {
+        return new TaskActivityFactory() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public TaskActivity create() {
+                return activity;
+            }
+        };
+    }
+
+    private static TaskOrchestrationFactory orchestration(String name, TaskOrchestration orchestration) {
+        return new TaskOrchestrationFactory() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public TaskOrchestration create() {
+                return orchestration;
+            }
+        };
+    }
+
+    private static WorkItem activityWorkItem(String name, int taskId) {
+        return WorkItem.newBuilder()
+                .setActivityRequest(ActivityRequest.newBuilder()
+                        .setName(name)
+                        .setTaskId(taskId)
+                        .setOrchestrationInstance(OrchestrationInstance.newBuilder().setInstanceId("instance")))
+                .build();
+    }
+
+    private static WorkItem orchestratorWorkItem(String name, String instanceId) {
+        return WorkItem.newBuilder()
+                .setOrchestratorRequest(OrchestratorRequest.newBuilder()
+                        .setInstanceId(instanceId)
+                        .addNewEvents(HistoryEvent.newBuilder()
+                                .setEventId(-1)
+                                .setOrchestratorStarted(OrchestratorStartedEvent.newBuilder()))
+                        .addNewEvents(HistoryEvent.newBuilder()
+                                .setEventId(-1)
+                                .setExecutionStarted(ExecutionStartedEvent.newBuilder()
+                                        .setName(name)
+                                        .setOrchestrationInstance(
+                                                OrchestrationInstance.newBuilder().setInstanceId(instanceId)))))
+                .build();
+    }
+
+    private static void sleepUninterruptibly(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Hands the work-item streams that workers open to the test and records the results that workers send back.
+     */
+    private static final class FakeSidecar extends TaskHubSidecarServiceGrpc.TaskHubSidecarServiceImplBase {
+        final BlockingQueue<ServerCallStreamObserver<WorkItem>> openedStreams = new LinkedBlockingQueue<>();
+        final BlockingQueue<ServerCallStreamObserver<WorkItem>> cancelledStreams = new LinkedBlockingQueue<>();
+        final BlockingQueue<ActivityResponse> activityResponses = new LinkedBlockingQueue<>();
+        final BlockingQueue<OrchestratorResponse> orchestratorResponses = new LinkedBlockingQueue<>();
+
+        @Override
+        public void getWorkItems(GetWorkItemsRequest request, StreamObserver<WorkItem> responseObserver) {
+            ServerCallStreamObserver<WorkItem> stream = (ServerCallStreamObserver<WorkItem>) responseObserver;
+            stream.setOnCancelHandler(() -> this.cancelledStreams.add(stream));
+            this.openedStreams.add(stream);
+        }
+
+        @Override
+        public void completeActivityTask(
+                ActivityResponse request,
+                StreamObserver<CompleteTaskResponse> responseObserver) {
+            this.activityResponses.add(request);
+            responseObserver.onNext(CompleteTaskResponse.getDefaultInstance());
+            responseObserver.onCompleted();
+        }
+
+        @Override
+        public void completeOrchestratorTask(
+                OrchestratorResponse request,
+                StreamObserver<CompleteTaskResponse> responseObserver) {
+            this.orchestratorResponses.add(request);
+            responseObserver.onNext(CompleteTaskResponse.getDefaultInstance());
+            responseObserver.onCompleted();
+        }
+
+        List<ServerCallStreamObserver<WorkItem>> awaitStreams(int count) throws InterruptedException {
+            List<ServerCallStreamObserver<WorkItem>> streams = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                ServerCallStreamObserver<WorkItem> stream = this.openedStreams.poll(10, TimeUnit.SECONDS);
+                assertNotNull(stream, "The worker didn't open enough work-item streams.");
+                streams.add(stream);
+            }
+            return streams;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link ExpiringCache}.
+ */
+public class ExpiringCacheTests {
+    private static final Duration TIME_TO_LIVE = Duration.ofMillis(100);
+
+    @Test
+    void entriesExpireAfterTheTimeToLive() throws InterruptedException {
+        List<String> evicted = new ArrayList<>();
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, TIME_TO_LIVE, false, evicted::add);
+        cache.put("key", "value");
+        assertEquals("value", cache.get("key"));
+
+        Thread.sleep(TIME_TO_LIVE.toMillis() + 20);
+        assertNull(cache.get("key"));
+        assertEquals(List.of("value"), evicted);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void addingBeyondTheCapacityEvictsTheLeastRecentlyUsedEntry() {
+        List<String> evicted = new ArrayList<>();
+        ExpiringCache<String, String> cache = new ExpiringCache<>(2, Duration.ofMinutes(1), false, evicted::add);
+        cache.put("first", "first-value");
+        cache.put("second", "second-value");
+        assertEquals("first-value", cache.get("first"));
+
+        cache.put("third", "third-value");
+        assertEquals(List.of("second-value"), evicted);
+        assertNull(cache.get("second"));
+        assertEquals("first-value", cache.get("first"));
+        assertEquals("third-value", cache.get("third"));
+    }
+
+    @Test
+    void removeDoesNotReturnExpiredValues() throws InterruptedException {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, TIME_TO_LIVE);
+        cache.put("fresh", "fresh-value");
+        assertEquals("fresh-value", cache.remove("fresh"));
+        assertNull(cache.remove("fresh"));
+
+        cache.put("stale", "stale-value");
+        Thread.sleep(TIME_TO_LIVE.toMillis() + 20);
+        assertNull(cache.remove("stale"));
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new ExpiringCache<String, String>(0, TIME_TO_LIVE));
+        assertThrows(IllegalArgumentException.class, () -> new ExpiringCache<String, String>(1, Duration.ZERO));
+    }
+
+    @Test
+    void lookupsKeepEntriesAliveWhenExpiringAfterAccess() throws InterruptedException {
+        List<String> evicted = new ArrayList<>();
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, TIME_TO_LIVE, true, evicted::add);
+        cache.put("used", "used-value");
+        cache.put("idle", "idle-value");
+
+        for (int i = 0; i < 6; i++) {
+            Thread.sleep(TIME_TO_LIVE.toMillis() / 4);
+            assertEquals("used-value", cache.get("used"));
+        }
+
+        cache.evictExpired();
+        assertEquals(List.of("idle-value"), evicted);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void evictExpiredRemovesEntriesWithoutFurtherUse() throws InterruptedException {
+        List<String> evicted = new ArrayList<>();
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, TIME_TO_LIVE, false, evicted::add);
+        cache.put("first", "first-value");
+        cache.put("second", "second-value");
+
+        // Looking up the first entry moves it behind the second one, but it still expires first
+        assertEquals("first-value", cache.get("first"));
+        Thread.sleep(TIME_TO_LIVE.toMillis() / 2);
+        cache.put("third", "third-value");
+        Thread.sleep(TIME_TO_LIVE.toMillis() / 2 + 20);
+
+        cache.evictExpired();
+        assertEquals(List.of("second-value", "first-value"), evicted);
+        assertEquals("third-value", cache.get("third"));
+    }
+}
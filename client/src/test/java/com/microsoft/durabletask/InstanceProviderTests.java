@@ -0,0 +1,123 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link InstanceProvider}.
+ */
+public class InstanceProviderTests {
+    @Test
+    void pooledInstancesAreReused() {
+        AtomicInteger created = new AtomicInteger();
+        InstanceProvider<Object> provider = new InstanceProvider<>(
+                "Pooled",
+                () -> created.incrementAndGet(),
+                InstanceLifecycle.pooled(2));
+
+        Object first = provider.acquire();
+        provider.release(first);
+        assertSame(first, provider.acquire());
+        assertEquals(1, created.get());
+    }
+
+    @Test
+    void acquireAtCapacityWaitsForARelease() throws Exception {
+        AtomicInteger created = new AtomicInteger();
+        InstanceProvider<Object> provider = new InstanceProvider<>(
+                "Pooled",
+                () -> created.incrementAndGet(),
+                InstanceLifecycle.pooled(2, Duration.ofSeconds(10)));
+        Object first = provider.acquire();
+        Object second = provider.acquire();
+
+        CompletableFuture<Object> third = CompletableFuture.supplyAsync(provider::acquire);
+        Thread.sleep(100);
+        assertFalse(third.isDone());
+
+        provider.release(second);
+        assertSame(second, third.get(10, TimeUnit.SECONDS));
+        assertNotSame(first, second);
+        assertEquals(2, created.get());
+    }
+
+    @Test
+    void acquireAtCapacityTimesOut() {
+        InstanceProvider<Object> provider = new InstanceProvider<>(
+                "Pooled",
+                Object::new,
+                InstanceLifecycle.pooled(1, Duration.ofMillis(50)));
+        provider.acquire();
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, provider::acquire);
+        assertTrue(e.getMessage().contains("Pooled"));
+    }
+
+    @Test
+    void failedCreationDoesNotUseUpThePool() {
+        AtomicInteger attempts = new AtomicInteger();
+        InstanceProvider<Object> provider = new InstanceProvider<>(
+                "Pooled",
+                () -> {
+                    if (attempts.incrementAndGet() == 1) {
+                        throw new IllegalStateException("Failed to create the instance");
+                    }
+                    return new Object();
+                },
+                InstanceLifecycle.pooled(1, Duration.ZERO));
+
+        assertThrows(IllegalStateException.class, provider::acquire);
+        assertNotNull(provider.acquire());
+    }
+
+    @Test
+    void warmUpFillsThePoolWithoutExceedingIt() {
+        AtomicInteger created = new AtomicInteger();
+        InstanceProvider<Object> provider = new InstanceProvider<>(
+                "Pooled",
+                () -> created.incrementAndGet(),
+                InstanceLifecycle.pooled(3, Duration.ZERO));
+        Object inUse = provider.acquire();
+
+        provider.warmUp();
+        provider.warmUp();
+        assertEquals(3, created.get());
+
+        Set<Object> instances = new HashSet<>();
+        instances.add(provider.acquire());
+        instances.add(provider.acquire());
+        assertFalse(instances.contains(inUse));
+        assertEquals(2, instances.size());
+        assertThrows(IllegalStateException.class, provider::acquire);
+    }
+
+    @Test
+    void pooledOrchestrationsCantUseExtendedSessions() {
+        TaskOrchestrationFactory factory = new TaskOrchestrationFactory() {
+            @Override
+            public String getName() {
+                return "Orchestration";
+            }
+
+            @Override
+            public TaskOrchestration create() {
+                return ctx -> { };
+            }
+        };
+        DurableTaskGrpcWorkerBuilder builder = new DurableTaskGrpcWorkerBuilder()
+                .addOrchestration(factory, InstanceLifecycle.pooled(2))
+                .extendedSessions(10, Duration.ofMinutes(1));
+
+        assertThrows(IllegalStateException.class, builder::build);
+    }
+}
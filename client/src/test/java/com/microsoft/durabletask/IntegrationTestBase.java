@@ -43,6 +43,11 @@ public class IntegrationTestBase {
             return this;
         }
 
+        public TestDurableTaskWorkerBuilder setActivityMaxConcurrency(int maxConcurrency) {
+            this.innerBuilder.activityMaxConcurrency(maxConcurrency);
+            return this;
+        }
+
         public TestDurableTaskWorkerBuilder addOrchestrator(
                 String name,
                 TaskOrchestration implementation) {
@@ -653,6 +653,45 @@ public class IntegrationTests extends IntegrationTestBase {
         }
     }
 
+    @Test
+    void activityFanOutRunsConcurrently() throws TimeoutException {
+        final String orchestratorName = "ActivityFanOutConcurrency";
+        final String activityName = "SlowActivity";
+        final int activityCount = 4;
+        AtomicInteger runningActivities = new AtomicInteger();
+        AtomicInteger maxRunningActivities = new AtomicInteger();
+
+        DurableTaskGrpcWorker worker = this.createWorkerBuilder()
+            .addOrchestrator(orchestratorName, ctx -> {
+                List<Task<Void>> parallelTasks = IntStream.range(0, activityCount)
+                        .mapToObj(i -> ctx.callActivity(activityName, i, Void.class))
+                        .collect(Collectors.toList());
+                ctx.allOf(parallelTasks).await();
+            })
+            .addActivity(activityName, ctx -> {
+                maxRunningActivities.accumulateAndGet(runningActivities.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    runningActivities.decrementAndGet();
+                }
+                return null;
+            })
+            .setActivityMaxConcurrency(activityCount)
+            .buildAndStart();
+
+        DurableTaskClient client = new DurableTaskGrpcClientBuilder().build();
+        try (worker; client) {
+            String instanceId = client.scheduleNewOrchestrationInstance(orchestratorName);
+            OrchestrationMetadata instance = client.waitForInstanceCompletion(instanceId, defaultTimeout, false);
+            assertNotNull(instance);
+            assertEquals(OrchestrationRuntimeStatus.COMPLETED, instance.getRuntimeStatus());
+            assertTrue(maxRunningActivities.get() > 1);
+        }
+    }
+
     @Test
     void externalEvents() throws IOException, TimeoutException {
         final String orchestratorName = "ExternalEvents";
@@ -0,0 +1,88 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link MemoryAdmissionController}.
+ */
+public class MemoryAdmissionControllerTests {
+    private static final Logger logger = Logger.getLogger(MemoryAdmissionControllerTests.class.getPackage().getName());
+
+    // Heap usage is always above 0% and never above 100%, so tests can switch the heap watermark on and off
+    private static final double NO_HEAP_LIMIT = 1.0;
+    private static final double ZERO_HEAP_LIMIT = 0.0;
+
+    @Test
+    void returnsCreditsWhileBelowTheWatermark() {
+        MemoryAdmissionController controller = new MemoryAdmissionController(1000, NO_HEAP_LIMIT, logger);
+        AtomicInteger returnedCredits = new AtomicInteger();
+
+        controller.onReceived(100);
+        controller.onReceived(100);
+        controller.onCompleted(100, returnedCredits::incrementAndGet);
+
+        assertEquals(1, returnedCredits.get());
+    }
+
+    @Test
+    void parksCreditsAtTheByteWatermarkUntilWorkItemsFinish() {
+        MemoryAdmissionController controller = new MemoryAdmissionController(250, NO_HEAP_LIMIT, logger);
+        AtomicInteger returnedCredits = new AtomicInteger();
+        for (int i = 0; i < 4; i++) {
+            controller.onReceived(100);
+        }
+
+        // Three work items are still in flight, which is above the watermark
+        controller.onCompleted(100, returnedCredits::incrementAndGet);
+        assertEquals(0, returnedCredits.get());
+
+        // One remaining work item leaves room for one more, so only one of the three parked credits is returned
+        controller.onCompleted(100, returnedCredits::incrementAndGet);
+        controller.onCompleted(100, returnedCredits::incrementAndGet);
+        assertEquals(1, returnedCredits.get());
+    }
+
+    @Test
+    void returnedCreditsCountAgainstTheBudget() {
+        MemoryAdmissionController controller = new MemoryAdmissionController(250, NO_HEAP_LIMIT, logger);
+        AtomicInteger returnedCredits = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            controller.onReceived(100);
+        }
+        controller.onCompleted(100, returnedCredits::incrementAndGet);
+        controller.onCompleted(100, returnedCredits::incrementAndGet);
+        assertEquals(1, returnedCredits.get());
+
+        // The returned credit hasn't brought in a work item yet, but it's expected to, which leaves no headroom
+        controller.recheck();
+        assertEquals(1, returnedCredits.get());
+
+        controller.onReceived(100);
+        controller.onCompleted(100, returnedCredits::incrementAndGet);
+        assertEquals(2, returnedCredits.get());
+    }
+
+    @Test
+    void heapPressureParksCreditsButKeepsOneWorkItemInFlight() {
+        MemoryAdmissionController controller = new MemoryAdmissionController(1000, ZERO_HEAP_LIMIT, logger);
+        AtomicInteger returnedCredits = new AtomicInteger();
+        controller.onReceived(100);
+        controller.onReceived(100);
+
+        controller.onCompleted(100, returnedCredits::incrementAndGet);
+        assertEquals(0, returnedCredits.get());
+
+        // Nothing is in flight anymore, so one credit is returned to make progress
+        controller.onCompleted(100, returnedCredits::incrementAndGet);
+        assertEquals(1, returnedCredits.get());
+        controller.recheck();
+        assertEquals(1, returnedCredits.get());
+    }
+}
@@ -0,0 +1,106 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link OrchestrationLanes}.
+ */
+public class OrchestrationLanesTests {
+    private final StripedExecutor standardLanes = new StripedExecutor(2, 100, namedThreads("standard"));
+    private final OrchestrationLanes lanes = new OrchestrationLanes(
+            this.standardLanes,
+            new StripedExecutor(2, 100, namedThreads("large")),
+            100);
+
+    @AfterEach
+    void shutDownLanes() {
+        this.lanes.shutdownNow();
+    }
+
+    @Test
+    void largeHistoriesRunOnTheirOwnLanes() throws Exception {
+        assertFalse(this.lanes.isLarge(99));
+        assertTrue(this.lanes.isLarge(100));
+
+        assertEquals("standard", this.runAndGetThreadName("small-instance", 10));
+        assertEquals("large", this.runAndGetThreadName("large-instance", 1000));
+    }
+
+    @Test
+    void instancesStayOnTheirLanesUntilTheirWorkItemsFinish() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CompletableFuture<String> second = new CompletableFuture<>();
+        this.lanes.execute("instance", 10, () -> {
+            first.complete(Thread.currentThread().getName());
+            awaitUninterruptibly(release);
+        }, 0);
+
+        // The history crossed the threshold, but the first work item is still running on the standard lanes
+        this.lanes.execute("instance", 1000, () -> second.complete(Thread.currentThread().getName()), 0);
+        assertEquals("standard", first.get(10, TimeUnit.SECONDS));
+        release.countDown();
+        assertEquals("standard", second.get(10, TimeUnit.SECONDS));
+
+        // Lanes run their tasks one at a time, so this runs after the second work item has fully finished
+        CountDownLatch drained = new CountDownLatch(1);
+        this.standardLanes.execute("instance", drained::countDown);
+        assertTrue(drained.await(10, TimeUnit.SECONDS));
+
+        // Once the instance has no pending work items, it moves to the lanes that match its size
+        assertEquals("large", this.runAndGetThreadName("instance", 1000));
+    }
+
+    @Test
+    void withoutLargeLanesAllHistoriesUseTheStandardLanes() throws Exception {
+        OrchestrationLanes standardOnly = new OrchestrationLanes(
+                new StripedExecutor(2, 100, namedThreads("standard")),
+                null,
+                100);
+        try {
+            assertFalse(standardOnly.isLarge(1000));
+
+            CompletableFuture<String> threadName = new CompletableFuture<>();
+            standardOnly.execute("instance", 1000, () -> threadName.complete(Thread.currentThread().getName()), 0);
+            assertEquals("standard", threadName.get(10, TimeUnit.SECONDS));
+        } finally {
+            standardOnly.shutdownNow();
+        }
+    }
+
+    private String runAndGetThreadName(String instanceId, int historyEventCount) throws Exception {
+        CompletableFuture<String> threadName = new CompletableFuture<>();
+        this.lanes.execute(
+                instanceId,
+                historyEventCount,
+                () -> threadName.complete(Thread.currentThread().getName()),
+                0);
+        return threadName.get(10, TimeUnit.SECONDS);
+    }
+
+    private static ThreadFactory namedThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.PriorityBlockingQueue;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link PrioritizedTask}.
+ */
+public class PrioritizedTaskTests {
+    @Test
+    void higherPrioritiesRunFirstAndEqualPrioritiesKeepTheirOrder() {
+        List<String> order = new ArrayList<>();
+        PriorityBlockingQueue<PrioritizedTask> queue = new PriorityBlockingQueue<>();
+        queue.add(new PrioritizedTask(() -> order.add("default-1"), PrioritizedTask.DEFAULT_PRIORITY));
+        queue.add(new PrioritizedTask(() -> order.add("low"), -1));
+        queue.add(new PrioritizedTask(() -> order.add("high-1"), 5));
+        queue.add(new PrioritizedTask(() -> order.add("default-2"), PrioritizedTask.DEFAULT_PRIORITY));
+        queue.add(new PrioritizedTask(() -> order.add("high-2"), 5));
+
+        while (!queue.isEmpty()) {
+            queue.poll().run();
+        }
+
+        assertEquals(List.of("high-1", "high-2", "default-1", "default-2", "low"), order);
+    }
+}
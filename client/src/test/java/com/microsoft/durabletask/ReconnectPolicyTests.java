@@ -0,0 +1,70 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link ReconnectPolicy}.
+ */
+public class ReconnectPolicyTests {
+    @Test
+    void firstReconnectIsImmediate() {
+        ReconnectPolicy policy = new ReconnectPolicy();
+        assertEquals(Duration.ZERO, policy.getDelay(0));
+        assertEquals(Duration.ZERO, policy.getDelay(1));
+    }
+
+    @Test
+    void laterReconnectsBackOffUpToTheMaximum() {
+        ReconnectPolicy policy = new ReconnectPolicy()
+                .setFirstRetryInterval(Duration.ofMillis(100))
+                .setMaxRetryInterval(Duration.ofMillis(500))
+                .setJitterFactor(0.0);
+
+        assertEquals(Duration.ofMillis(100), policy.getDelay(2));
+        assertEquals(Duration.ofMillis(200), policy.getDelay(3));
+        assertEquals(Duration.ofMillis(400), policy.getDelay(4));
+        assertEquals(Duration.ofMillis(500), policy.getDelay(5));
+        assertEquals(Duration.ofMillis(500), policy.getDelay(1000));
+    }
+
+    @Test
+    void jitterOnlyShortensTheDelay() {
+        ReconnectPolicy policy = new ReconnectPolicy()
+                .setFirstRetryInterval(Duration.ofMillis(1000))
+                .setJitterFactor(0.5);
+
+        for (int i = 0; i < 100; i++) {
+            long delayMillis = policy.getDelay(2).toMillis();
+            assertTrue(delayMillis >= 500 && delayMillis <= 1000, "Unexpected delay: " + delayMillis);
+        }
+    }
+
+    @Test
+    void healthyStreamsResetTheBackoff() {
+        ReconnectPolicy policy = new ReconnectPolicy().setMaxRetryInterval(Duration.ofSeconds(15));
+
+        // Streams that fail right away keep backing off
+        assertEquals(4, policy.getFailedAttempts(3, false, Duration.ofMillis(10)));
+
+        // A stream that delivered work, or that stayed open long enough, was a healthy connection
+        assertEquals(1, policy.getFailedAttempts(3, true, Duration.ofMillis(10)));
+        assertEquals(1, policy.getFailedAttempts(3, false, Duration.ofSeconds(15)));
+        assertEquals(1, policy.getFailedAttempts(3, false, Duration.ofMinutes(10)));
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        ReconnectPolicy policy = new ReconnectPolicy();
+        assertThrows(IllegalArgumentException.class, () -> policy.setFirstRetryInterval(null));
+        assertThrows(IllegalArgumentException.class, () -> policy.setFirstRetryInterval(Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> policy.setMaxRetryInterval(Duration.ofMillis(1)));
+        assertThrows(IllegalArgumentException.class, () -> policy.setBackoffCoefficient(0.5));
+        assertThrows(IllegalArgumentException.class, () -> policy.setJitterFactor(1.5));
+    }
+}
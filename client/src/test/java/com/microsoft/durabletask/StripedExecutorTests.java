@@ -0,0 +1,93 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link StripedExecutor}.
+ */
+public class StripedExecutorTests {
+    private final StripedExecutor executor = new StripedExecutor(4, 100, Executors.defaultThreadFactory());
+
+    @AfterEach
+    void shutDownExecutor() {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    void tasksWithTheSameKeyRunOneAtATimeInOrder() throws InterruptedException {
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(50);
+        for (int i = 0; i < 50; i++) {
+            int task = i;
+            this.executor.execute("instance", () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                order.add(task);
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(1, maxRunning.get());
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i, order.get(i));
+        }
+    }
+
+    @Test
+    void keysOnDifferentLanesRunInParallel() throws InterruptedException {
+        String blockedKey = "instance-0";
+        String otherKey = null;
+        for (int i = 1; otherKey == null; i++) {
+            if (this.executor.getLaneIndex("instance-" + i) != this.executor.getLaneIndex(blockedKey)) {
+                otherKey = "instance-" + i;
+            }
+        }
+
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch otherRan = new CountDownLatch(1);
+        this.executor.execute(blockedKey, () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        this.executor.execute(otherKey, otherRan::countDown);
+
+        assertTrue(otherRan.await(10, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    @Test
+    void laneIndexIsStableAndInRange() {
+        for (int i = 0; i < 100; i++) {
+            String key = "instance-" + i;
+            int laneIndex = this.executor.getLaneIndex(key);
+            assertEquals(laneIndex, this.executor.getLaneIndex(key));
+            assertTrue(laneIndex >= 0 && laneIndex < this.executor.getLaneCount());
+        }
+    }
+
+    @Test
+    void rejectsInvalidLaneCount() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new StripedExecutor(0, 1, Executors.defaultThreadFactory()));
+    }
+}
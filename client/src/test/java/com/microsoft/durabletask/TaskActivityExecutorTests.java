@@ -0,0 +1,252 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link TaskActivityExecutor}.
+ */
+public class TaskActivityExecutorTests {
+    private static final String ACTIVITY_NAME = "Flaky";
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    @AfterEach
+    void shutDownScheduler() {
+        this.scheduler.shutdownNow();
+    }
+
+    @Test
+    void localRetriesUseTheDurableBackoff() {
+        RetryPolicy retryPolicy = new RetryPolicy(10, Duration.ofMillis(100))
+                .setBackoffCoefficient(2.0)
+                .setMaxRetryInterval(Duration.ofMillis(500));
+
+        for (int attempt = 1; attempt < 10; attempt++) {
+            long expectedMillis = Math.min(500, 100L << attempt);
+            assertEquals(Duration.ofMillis(expectedMillis), Helpers.getRetryDelay(retryPolicy, attempt));
+        }
+
+        // Overflowing delays are capped by the maximum retry interval, or fail if there's none
+        assertEquals(Duration.ofMillis(500), Helpers.getRetryDelay(retryPolicy, 5000));
+        RetryPolicy unbounded = new RetryPolicy(10, Duration.ofMillis(100)).setBackoffCoefficient(2.0);
+        assertThrows(ArithmeticException.class, () -> Helpers.getRetryDelay(unbounded, 5000));
+    }
+
+    @Test
+    void retriesFailedActivitiesLocally() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        TaskActivityExecutor executor = this.newExecutor(
+                ctx -> {
+                    if (attempts.incrementAndGet() < 3) {
+                        throw new IllegalStateException("Transient failure");
+                    }
+                    return "done";
+                },
+                new RetryPolicy(5, Duration.ofMillis(1)));
+
+        CompletableFuture<String> result = executor.execute(ACTIVITY_NAME, null, 1);
+        assertEquals("\"done\"", result.get(10, TimeUnit.SECONDS));
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    void leavesLongBackoffsToDurableRetries() {
+        AtomicInteger attempts = new AtomicInteger();
+        TaskActivityExecutor executor = this.newExecutor(
+                ctx -> {
+                    attempts.incrementAndGet();
+                    throw new IllegalStateException("Persistent failure");
+                },
+                new RetryPolicy(5, TaskActivityExecutor.MAX_LOCAL_RETRY_DELAY).setBackoffCoefficient(2.0));
+
+        // The first retry would wait twice the first retry interval, which is too long to wait locally
+        CompletableFuture<String> result = executor.execute(ACTIVITY_NAME, null, 1);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IllegalStateException);
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void hungActivitiesTimeOut() {
+        TaskActivityExecutor executor = this.newExecutor(
+                ctx -> {
+                    try {
+                        Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException("Interrupted", e);
+                    }
+                    return "done";
+                },
+                Duration.ofMillis(50));
+
+        CompletableFuture<String> result = executor.execute(ACTIVITY_NAME, null, 1);
+        ExecutionException e = assertThrows(ExecutionException.class, result::get);
+        assertTrue(e.getCause() instanceof ActivityTimeoutException);
+        assertFalse(Thread.interrupted());
+    }
+
+    @Test
+    void fastActivitiesArentInterrupted() throws Exception {
+        TaskActivityExecutor executor = this.newExecutor(
+                ctx -> Thread.currentThread().isInterrupted(),
+                Duration.ofMillis(200));
+
+        assertEquals("false", executor.execute(ACTIVITY_NAME, null, 1).get());
+
+        // The watchdog's timer was cancelled, so nothing interrupts the thread once the timeout has passed
+        Thread.sleep(400);
+        assertFalse(Thread.interrupted());
+    }
+
+    @Test
+    void activitiesThatIgnoreTheInterruptStillTimeOut() {
+        TaskActivityExecutor executor = this.newExecutor(
+                ctx -> {
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+                    while (System.nanoTime() < deadline) {
+                        Thread.onSpinWait();
+                    }
+                    return "late";
+                },
+                Duration.ofMillis(50));
+
+        CompletableFuture<String> result = executor.execute(ACTIVITY_NAME, null, 1);
+        ExecutionException e = assertThrows(ExecutionException.class, result::get);
+        assertTrue(e.getCause() instanceof ActivityTimeoutException);
+        assertFalse(Thread.interrupted());
+    }
+
+    @Test
+    void errorsAfterTheTimeoutDontLeaveTheThreadInterrupted() {
+        TaskActivityExecutor executor = this.newExecutor(
+                ctx -> {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        Thread.onSpinWait();
+                    }
+                    throw new AssertionError("Failed after the interrupt");
+                },
+                Duration.ofMillis(50));
+
+        CompletableFuture<String> result = executor.execute(ACTIVITY_NAME, null, 1);
+        ExecutionException e = assertThrows(ExecutionException.class, result::get);
+        assertTrue(e.getCause() instanceof AssertionError);
+        assertFalse(Thread.interrupted());
+    }
+
+    @Test
+    void asyncActivitiesCompleteWithTheirStage() throws Exception {
+        CompletableFuture<String> stage = new CompletableFuture<>();
+        TaskActivityExecutor executor = this.newExecutor((AsyncTaskActivity) ctx -> stage, Duration.ofMinutes(1));
+
+        CompletableFuture<String> result = executor.execute(ACTIVITY_NAME, null, 1);
+        assertFalse(result.isDone());
+
+        stage.complete("done");
+        assertEquals("\"done\"", result.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void asyncActivityFailuresAreUnwrapped() {
+        CompletableFuture<String> stage = new CompletableFuture<>();
+        TaskActivityExecutor executor = this.newExecutor((AsyncTaskActivity) ctx -> stage, Duration.ofMinutes(1));
+
+        CompletableFuture<String> result = executor.execute(ACTIVITY_NAME, null, 1);
+        stage.completeExceptionally(new CompletionException(new IllegalStateException("Failed")));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IllegalStateException);
+        assertEquals("Failed", e.getCause().getMessage());
+    }
+
+    @Test
+    void asyncActivityTimeoutsCancelTheStage() {
+        CompletableFuture<String> stage = new CompletableFuture<>();
+        TaskActivityExecutor executor = this.newExecutor((AsyncTaskActivity) ctx -> stage, Duration.ofMillis(50));
+
+        CompletableFuture<String> result = executor.execute(ACTIVITY_NAME, null, 1);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof ActivityTimeoutException);
+
+        // The stage is cancelled right after the result fails
+        assertThrows(CancellationException.class, () -> stage.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void asyncActivitiesHoldTheirBulkheadSlotUntilTheirStageCompletes() {
+        CompletableFuture<String> stage = new CompletableFuture<>();
+        TaskActivityExecutor executor = this.newExecutor((AsyncTaskActivity) ctx -> stage, Duration.ofMinutes(1));
+        Bulkhead bulkhead = new Bulkhead(1);
+        List<Runnable> submitted = new ArrayList<>();
+
+        // The worker releases an activity's slot once the future that the executor returned completes
+        Consumer<Runnable> asyncTask = releaseSlot -> executor.execute(ACTIVITY_NAME, null, 1)
+                .whenComplete((output, e) -> releaseSlot.run());
+        AtomicInteger parkedRuns = new AtomicInteger();
+        Consumer<Runnable> parkedTask = releaseSlot -> {
+            parkedRuns.incrementAndGet();
+            releaseSlot.run();
+        };
+
+        assertTrue(bulkhead.admit(asyncTask));
+        bulkhead.newSlotRunner(asyncTask, submitted::add).run();
+        assertFalse(bulkhead.admit(parkedTask));
+        assertEquals(1, bulkhead.getRunningCount());
+        assertTrue(submitted.isEmpty());
+
+        // Completing the stage frees the slot for the parked activity
+        stage.complete("done");
+        assertEquals(1, submitted.size());
+        submitted.get(0).run();
+        assertEquals(1, parkedRuns.get());
+        assertEquals(0, bulkhead.getRunningCount());
+    }
+
+    private TaskActivityExecutor newExecutor(TaskActivity activity, Duration timeout) {
+        return new TaskActivityExecutor(
+                Map.of(ACTIVITY_NAME, new InstanceProvider<>(ACTIVITY_NAME, () -> activity, InstanceLifecycle.perCall())),
+                new JacksonDataConverter(),
+                Logger.getLogger(TaskActivityExecutorTests.class.getName()),
+                Map.of(ACTIVITY_NAME, timeout),
+                null,
+                this.scheduler,
+                Collections.emptyMap(),
+                Collections.emptyMap(),
+                null,
+                null);
+    }
+
+    private TaskActivityExecutor newExecutor(TaskActivity activity, RetryPolicy retryPolicy) {
+        return new TaskActivityExecutor(
+                Map.of(ACTIVITY_NAME, new InstanceProvider<>(ACTIVITY_NAME, () -> activity, InstanceLifecycle.perCall())),
+                new JacksonDataConverter(),
+                Logger.getLogger(TaskActivityExecutorTests.class.getName()),
+                Collections.emptyMap(),
+                null,
+                null,
+                Collections.emptyMap(),
+                Map.of(ACTIVITY_NAME, retryPolicy),
+                this.scheduler,
+                Runnable::run);
+    }
+}
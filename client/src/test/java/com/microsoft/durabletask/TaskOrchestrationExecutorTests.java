@@ -0,0 +1,604 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import com.google.protobuf.StringValue;
+import com.google.protobuf.Timestamp;
+import com.microsoft.durabletask.implementation.protobuf.OrchestratorService.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link TaskOrchestrationExecutor}. Most of them check that orchestrations resumed from an extended
+ * session produce the same actions as orchestrations that replay their full history.
+ */
+public class TaskOrchestrationExecutorTests {
+    private static final String INSTANCE_ID = "instance";
+    private static final String ORCHESTRATION_NAME = "Orchestration";
+    private static final String UNSERIALIZABLE = "unserializable";
+    private static final Logger logger = Logger.getLogger(TaskOrchestrationExecutorTests.class.getName());
+
+    @Test
+    void resumedSessionProducesTheSameActionsAsReplay() {
+        Comparison comparison = new Comparison(ctx -> {
+            String input = ctx.getInput(String.class);
+            List<Task<String>> fanOut = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                fanOut.add(ctx.callActivity("FanOut", input + i, String.class));
+            }
+            List<String> results = ctx.allOf(fanOut).await();
+            ctx.setCustomStatus(results.size());
+            ctx.createTimer(Duration.ofMinutes(5)).await();
+            String subResult = ctx.callSubOrchestrator("Sub", results.get(0), String.class).await();
+            String last = ctx.callActivity("Last", subResult, String.class).await();
+            ctx.complete(last + ctx.newUUID());
+        });
+
+        int steps = comparison.runToCompletion();
+        assertEquals(5, steps);
+        assertEquals(1, comparison.sessionStarts.get());
+        assertEquals(steps, comparison.replayStarts.get());
+    }
+
+    @Test
+    void prefixMismatchFallsBackToFullReplay() {
+        Comparison comparison = new Comparison(ctx -> {
+            String first = ctx.callActivity("First", null, String.class).await();
+            String second = ctx.callActivity("Second", first, String.class).await();
+            ctx.complete(second);
+        });
+        List<HistoryEvent> pastEvents = new ArrayList<>();
+        List<HistoryEvent> newEvents = new ArrayList<>(startEvents(0));
+        TaskOrchestratorResult result = comparison.execute(pastEvents, newEvents);
+        Simulation.advance(result, pastEvents, newEvents, 1, name -> false);
+
+        // The orchestration ran somewhere else in the meantime, so the history has an event that the session never saw
+        List<HistoryEvent> otherPastEvents = new ArrayList<>(pastEvents);
+        otherPastEvents.add(0, eventRaised("unexpected", 1));
+        result = comparison.execute(otherPastEvents, newEvents);
+        assertEquals(2, comparison.sessionStarts.get());
+
+        // The replacement session resumes as usual
+        pastEvents = otherPastEvents;
+        Simulation.advance(result, pastEvents, newEvents, 2, name -> false);
+        comparison.execute(pastEvents, newEvents);
+        assertEquals(2, comparison.sessionStarts.get());
+    }
+
+    @Test
+    void continueAsNewEndsTheSession() {
+        Comparison comparison = new Comparison(ctx -> {
+            int generation = ctx.getInput(Integer.class);
+            ctx.callActivity("Work", generation, String.class).await();
+            if (generation < 2) {
+                ctx.continueAsNew(generation + 1);
+            } else {
+                ctx.complete(generation);
+            }
+        });
+
+        for (int generation = 0; generation <= 2; generation++) {
+            List<HistoryEvent> pastEvents = new ArrayList<>();
+            List<HistoryEvent> newEvents = new ArrayList<>(startEvents(0, String.valueOf(generation)));
+            TaskOrchestratorResult result = comparison.execute(pastEvents, newEvents);
+            Simulation.advance(result, pastEvents, newEvents, 1, name -> false);
+            result = comparison.execute(pastEvents, newEvents);
+
+            CompleteOrchestrationAction completion = getCompletion(result);
+            assertEquals(
+                    generation < 2 ? OrchestrationStatus.ORCHESTRATION_STATUS_CONTINUED_AS_NEW :
+                            OrchestrationStatus.ORCHESTRATION_STATUS_COMPLETED,
+                    completion.getOrchestrationStatus());
+        }
+
+        // Every generation starts a new session, which the next work item resumes
+        assertEquals(3, comparison.sessionStarts.get());
+        assertEquals(6, comparison.replayStarts.get());
+    }
+
+    @Test
+    void suspendedSessionResumesLikeReplay() {
+        Comparison comparison = new Comparison(ctx -> {
+            String first = ctx.callActivity("First", null, String.class).await();
+            String event = ctx.waitForExternalEvent("approval", String.class).await();
+            String second = ctx.callActivity("Second", first + event, String.class).await();
+            ctx.complete(second);
+        });
+
+        int steps = comparison.runToCompletion(name -> false, (step, newEvents) -> {
+            if (step == 1) {
+                newEvents.add(HistoryEvent.newBuilder()
+                        .setEventId(-1)
+                        .setTimestamp(timestamp(step))
+                        .setExecutionSuspended(ExecutionSuspendedEvent.newBuilder())
+                        .build());
+            } else if (step == 2) {
+                // The event arrives while the orchestration is suspended and is only delivered after it resumes
+                newEvents.add(eventRaised("approval", step));
+            } else if (step == 3) {
+                newEvents.add(HistoryEvent.newBuilder()
+                        .setEventId(-1)
+                        .setTimestamp(timestamp(step))
+                        .setExecutionResumed(ExecutionResumedEvent.newBuilder())
+                        .build());
+            }
+        });
+
+        assertEquals(5, steps);
+        assertEquals(1, comparison.sessionStarts.get());
+    }
+
+    @Test
+    void retriesWithNestedAwaitsResumeLikeReplay() {
+        TaskOptions retryOptions = new TaskOptions(new RetryPolicy(3, Duration.ofSeconds(10)));
+        Comparison comparison = new Comparison(ctx -> {
+            Task<String> flaky = ctx.callActivity("Flaky", "a", retryOptions, String.class);
+            Task<String> alsoFlaky = ctx.callActivity("AlsoFlaky", "b", retryOptions, String.class);
+            List<String> results = ctx.allOf(List.of(flaky, alsoFlaky)).await();
+            String combined = ctx.callActivity("Combine", results, retryOptions, String.class).await();
+            ctx.complete(combined);
+        });
+
+        // Each flaky activity fails twice, so its retries interleave with timers and the other activity's retries
+        Map<String, AtomicInteger> failures = Map.of("Flaky", new AtomicInteger(), "AlsoFlaky", new AtomicInteger());
+        int steps = comparison.runToCompletion(
+                name -> failures.containsKey(name) && failures.get(name).incrementAndGet() <= 2,
+                (step, newEvents) -> { });
+
+        assertTrue(steps > 5);
+        assertEquals(1, comparison.sessionStarts.get());
+    }
+
+    @Test
+    void failedOrchestrationProducesTheSameFailureAsReplay() {
+        Comparison comparison = new Comparison(ctx -> {
+            ctx.callActivity("First", null, String.class).await();
+            throw new IllegalStateException("The orchestration failed.");
+        });
+
+        comparison.runToCompletion();
+        assertEquals(1, comparison.sessionStarts.get());
+    }
+
+    @Test
+    void interruptionLeavesTheWorkItemToBeRedelivered() throws InterruptedException {
+        CountDownLatch orchestratorRunning = new CountDownLatch(1);
+        CountDownLatch releaseOrchestrator = new CountDownLatch(1);
+        AtomicInteger concurrentRuns = new AtomicInteger();
+        AtomicInteger maxConcurrentRuns = new AtomicInteger();
+        Comparison comparison = new Comparison(ctx -> {
+            String result = ctx.callActivity("First", null, String.class).await();
+            if (!ctx.getIsReplaying()) {
+                int running = concurrentRuns.incrementAndGet();
+                maxConcurrentRuns.accumulateAndGet(running, Math::max);
+                orchestratorRunning.countDown();
+                try {
+                    releaseOrchestrator.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    concurrentRuns.decrementAndGet();
+                }
+            }
+            ctx.complete(result);
+        });
+
+        List<HistoryEvent> pastEvents = new ArrayList<>();
+        List<HistoryEvent> newEvents = new ArrayList<>(startEvents(0));
+        Simulation.advance(comparison.execute(pastEvents, newEvents), pastEvents, newEvents, 1, name -> false);
+
+        // The worker shuts down while the orchestrator is still running user code
+        List<HistoryEvent> finalPastEvents = pastEvents;
+        List<HistoryEvent> finalNewEvents = newEvents;
+        AtomicReference<Throwable> outcome = new AtomicReference<>();
+        Thread workItemThread = new Thread(() -> {
+            try {
+                comparison.sessionExecutor.execute(INSTANCE_ID, finalPastEvents, finalNewEvents);
+            } catch (Throwable e) {
+                outcome.set(e);
+            }
+        });
+        workItemThread.start();
+        assertTrue(orchestratorRunning.await(10, TimeUnit.SECONDS));
+        workItemThread.interrupt();
+        workItemThread.join(TimeUnit.SECONDS.toMillis(10));
+        assertTrue(outcome.get() instanceof InterruptedException);
+
+        // Nothing replayed the orchestration while its session was still running user code
+        assertEquals(1, concurrentRuns.get());
+        assertEquals(1, comparison.sessionStarts.get());
+
+        // The interrupted work item didn't return a result, so the sidecar redelivers it. The abandoned session
+        // wasn't kept, so the redelivered work item replays the history.
+        releaseOrchestrator.countDown();
+        waitFor(() -> concurrentRuns.get() == 0);
+        TaskOrchestratorResult result = comparison.execute(pastEvents, newEvents);
+        assertEquals(OrchestrationStatus.ORCHESTRATION_STATUS_COMPLETED, getCompletion(result).getOrchestrationStatus());
+        assertEquals(2, comparison.sessionStarts.get());
+        assertEquals(1, maxConcurrentRuns.get());
+    }
+
+    @Test
+    void idleSessionsAreEvicted() throws InterruptedException {
+        AtomicInteger runningSessions = new AtomicInteger();
+        TaskOrchestrationExecutor executor = newExecutor(
+                ctx -> {
+                    runningSessions.incrementAndGet();
+                    try {
+                        ctx.callActivity("First", null, String.class).await();
+                    } finally {
+                        runningSessions.decrementAndGet();
+                    }
+                },
+                2,
+                Duration.ofMillis(50));
+
+        executor.execute("first", Collections.emptyList(), startEvents(0));
+        executor.execute("second", Collections.emptyList(), startEvents(0));
+        executor.execute("third", Collections.emptyList(), startEvents(0));
+
+        // Only two sessions are kept, and the sweep stops them once they've been idle for too long
+        waitFor(() -> runningSessions.get() == 2);
+        Thread.sleep(100);
+        executor.evictIdleSessions();
+        waitFor(() -> runningSessions.get() == 0);
+    }
+
+    @Test
+    void serializationErrorsAreThrownAtTheCallSite() {
+        RecordingDataConverter dataConverter = new RecordingDataConverter();
+        TaskOrchestrationExecutor executor = newExecutor(
+                ctx -> {
+                    try {
+                        ctx.callActivity("First", UNSERIALIZABLE, String.class);
+                    } catch (DataConverter.DataConverterException e) {
+                        ctx.callActivity("Fallback", null, String.class).await();
+                    }
+                },
+                dataConverter);
+
+        TaskOrchestratorResult result = executor.execute(Collections.emptyList(), startEvents(0));
+        List<OrchestratorAction> actions = new ArrayList<>(result.getActions());
+        assertEquals(1, actions.size());
+        assertEquals("Fallback", actions.get(0).getScheduleTask().getName());
+        assertEquals(0, actions.get(0).getId());
+    }
+
+    @Test
+    void replayedCallsDontSerializeTheirInputs() {
+        RecordingDataConverter dataConverter = new RecordingDataConverter();
+        TaskOrchestrationExecutor executor = newExecutor(
+                ctx -> {
+                    ctx.callActivity("First", "first-input", String.class).await();
+                    ctx.callActivity("Second", "second-input", String.class).await();
+                },
+                dataConverter);
+
+        List<HistoryEvent> pastEvents = new ArrayList<>();
+        List<HistoryEvent> newEvents = new ArrayList<>(startEvents(0));
+        Simulation.advance(executor.execute(pastEvents, newEvents), pastEvents, newEvents, 1, name -> false);
+        TaskOrchestratorResult result = executor.execute(pastEvents, newEvents);
+
+        // The first call is replayed, so only the second call's input is serialized again
+        assertEquals(List.of("first-input", "second-input"), dataConverter.serializedValues);
+        List<OrchestratorAction> actions = new ArrayList<>(result.getActions());
+        assertEquals(1, actions.size());
+        assertEquals("\"second-input\"", actions.get(0).getScheduleTask().getInput().getValue());
+    }
+
+    @Test
+    void serializationErrorsAreThrownAtTheCallSiteDuringReplay() {
+        RecordingDataConverter dataConverter = new RecordingDataConverter();
+        TaskOrchestrationExecutor executor = newExecutor(
+                ctx -> {
+                    try {
+                        ctx.callActivity("First", UNSERIALIZABLE, String.class);
+                    } catch (DataConverter.DataConverterException e) {
+                        ctx.callActivity("Fallback", null, String.class).await();
+                    }
+                    ctx.callActivity("Last", "last-input", String.class).await();
+                },
+                dataConverter);
+
+        List<HistoryEvent> pastEvents = new ArrayList<>();
+        List<HistoryEvent> newEvents = new ArrayList<>(startEvents(0));
+        Simulation.advance(executor.execute(pastEvents, newEvents), pastEvents, newEvents, 1, name -> false);
+
+        // The replayed call fails the same way, so the fallback gets the same sequence ID as before
+        TaskOrchestratorResult result = executor.execute(pastEvents, newEvents);
+        List<OrchestratorAction> actions = new ArrayList<>(result.getActions());
+        assertEquals(1, actions.size());
+        assertEquals("Last", actions.get(0).getScheduleTask().getName());
+        assertEquals(1, actions.get(0).getId());
+    }
+
+    @Test
+    void replayedCallsWithADifferentNameAreNonDeterministic() {
+        TaskOrchestrationExecutor executor = newExecutor(
+                ctx -> ctx.callActivity("Renamed", "input", String.class).await(),
+                new RecordingDataConverter());
+
+        List<HistoryEvent> pastEvents = new ArrayList<>(startEvents(0));
+        pastEvents.add(HistoryEvent.newBuilder()
+                .setEventId(0)
+                .setTimestamp(timestamp(0))
+                .setTaskScheduled(TaskScheduledEvent.newBuilder().setName("Original"))
+                .build());
+        TaskOrchestratorResult result = executor.execute(pastEvents, List.of(orchestratorStarted(1)));
+
+        CompleteOrchestrationAction completion = getCompletion(result);
+        assertEquals(OrchestrationStatus.ORCHESTRATION_STATUS_FAILED, completion.getOrchestrationStatus());
+        assertTrue(completion.getFailureDetails().getErrorType().contains("NonDeterministicOrchestratorException"));
+        assertTrue(completion.getFailureDetails().getErrorMessage().contains("'Renamed'"));
+    }
+
+    private static void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for the condition.");
+            Thread.sleep(5);
+        }
+    }
+
+    private static TaskOrchestrationExecutor newExecutor(
+            TaskOrchestration orchestration,
+            int maxSessions,
+            Duration idleTimeout) {
+        return newExecutor(orchestration, new JacksonDataConverter(), maxSessions, idleTimeout);
+    }
+
+    private static TaskOrchestrationExecutor newExecutor(TaskOrchestration orchestration, DataConverter dataConverter) {
+        return newExecutor(orchestration, dataConverter, 0, null);
+    }
+
+    private static TaskOrchestrationExecutor newExecutor(
+            TaskOrchestration orchestration,
+            DataConverter dataConverter,
+            int maxSessions,
+            Duration idleTimeout) {
+        return new TaskOrchestrationExecutor(
+                Map.of(ORCHESTRATION_NAME, new InstanceProvider<>(
+                        ORCHESTRATION_NAME,
+                        () -> orchestration,
+                        InstanceLifecycle.perCall())),
+                dataConverter,
+                Duration.ofDays(3),
+                logger,
+                maxSessions,
+                idleTimeout,
+                runnable -> {
+                    Thread thread = new Thread(runnable);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    private static CompleteOrchestrationAction getCompletion(TaskOrchestratorResult result) {
+        return result.getActions().stream()
+                .filter(OrchestratorAction::hasCompleteOrchestration)
+                .map(OrchestratorAction::getCompleteOrchestration)
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("The orchestration didn't complete."));
+    }
+
+    private static Timestamp timestamp(int step) {
+        return Timestamp.newBuilder().setSeconds(1_700_000_000L + step * 60L).build();
+    }
+
+    private static List<HistoryEvent> startEvents(int step) {
+        return startEvents(step, "\"input\"");
+    }
+
+    private static List<HistoryEvent> startEvents(int step, String input) {
+        List<HistoryEvent> events = new ArrayList<>();
+        events.add(orchestratorStarted(step));
+        events.add(HistoryEvent.newBuilder()
+                .setEventId(-1)
+                .setTimestamp(timestamp(step))
+                .setExecutionStarted(ExecutionStartedEvent.newBuilder()
+                        .setName(ORCHESTRATION_NAME)
+                        .setInput(StringValue.of(input))
+                        .setOrchestrationInstance(OrchestrationInstance.newBuilder().setInstanceId(INSTANCE_ID)))
+                .build());
+        return events;
+    }
+
+    private static HistoryEvent orchestratorStarted(int step) {
+        return HistoryEvent.newBuilder()
+                .setEventId(-1)
+                .setTimestamp(timestamp(step))
+                .setOrchestratorStarted(OrchestratorStartedEvent.newBuilder())
+                .build();
+    }
+
+    private static HistoryEvent eventRaised(String name, int step) {
+        return HistoryEvent.newBuilder()
+                .setEventId(-1)
+                .setTimestamp(timestamp(step))
+                .setEventRaised(EventRaisedEvent.newBuilder().setName(name).setInput(StringValue.of("\"" + name + "\"")))
+                .build();
+    }
+
+    /**
+     * Runs the same orchestration on an executor with extended sessions and on one that always replays, and checks
+     * that both produce the same result for every work item.
+     */
+    private static final class Comparison {
+        final AtomicInteger sessionStarts = new AtomicInteger();
+        final AtomicInteger replayStarts = new AtomicInteger();
+        final TaskOrchestrationExecutor sessionExecutor;
+        final TaskOrchestrationExecutor replayExecutor;
+
+        Comparison(TaskOrchestration orchestration) {
+            this.sessionExecutor = newExecutor(
+                    ctx -> {
+                        this.sessionStarts.incrementAndGet();
+                        orchestration.run(ctx);
+                    },
+                    10,
+                    Duration.ofMinutes(5));
+            this.replayExecutor = newExecutor(
+                    ctx -> {
+                        this.replayStarts.incrementAndGet();
+                        orchestration.run(ctx);
+                    },
+                    0,
+                    null);
+        }
+
+        TaskOrchestratorResult execute(List<HistoryEvent> pastEvents, List<HistoryEvent> newEvents) {
+            TaskOrchestratorResult sessionResult;
+            try {
+                sessionResult = this.sessionExecutor.execute(INSTANCE_ID, pastEvents, newEvents);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+            TaskOrchestratorResult replayResult = this.replayExecutor.execute(pastEvents, newEvents);
+
+            assertEquals(withoutStackTraces(replayResult), withoutStackTraces(sessionResult));
+            assertEquals(replayResult.getCustomStatus(), sessionResult.getCustomStatus());
+            return sessionResult;
+        }
+
+        int runToCompletion() {
+            return this.runToCompletion(name -> false, (step, newEvents) -> { });
+        }
+
+        /**
+         * @param failTask decides whether a scheduled activity fails, given its name
+         * @param addEvents adds further events to the new events of a work item, given the step number
+         * @return the number of work items it took for the orchestration to complete
+         */
+        int runToCompletion(Predicate<String> failTask, BiConsumer<Integer, List<HistoryEvent>> addEvents) {
+            List<HistoryEvent> pastEvents = new ArrayList<>();
+            List<HistoryEvent> newEvents = new ArrayList<>(startEvents(0));
+            for (int step = 1; step <= 50; step++) {
+                TaskOrchestratorResult result = this.execute(pastEvents, newEvents);
+                if (result.getActions().stream().anyMatch(OrchestratorAction::hasCompleteOrchestration)) {
+                    return step;
+                }
+
+                Simulation.advance(result, pastEvents, newEvents, step, failTask);
+                addEvents.accept(step, newEvents);
+            }
+            throw new AssertionError("The orchestration didn't complete.");
+        }
+
+        private static List<OrchestratorAction> withoutStackTraces(TaskOrchestratorResult result) {
+            // The stack traces differ because the orchestrator runs on a different thread
+            return result.getActions().stream()
+                    .map(action -> {
+                        if (!action.hasCompleteOrchestration() ||
+                                !action.getCompleteOrchestration().hasFailureDetails()) {
+                            return action;
+                        }
+                        OrchestratorAction.Builder builder = action.toBuilder();
+                        builder.getCompleteOrchestrationBuilder().getFailureDetailsBuilder().clearStackTrace();
+                        return builder.build();
+                    })
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Records the values that it serializes, and fails to serialize {@link #UNSERIALIZABLE}.
+     */
+    private static final class RecordingDataConverter implements DataConverter {
+        final List<Object> serializedValues = new ArrayList<>();
+        private final JacksonDataConverter jacksonDataConverter = new JacksonDataConverter();
+
+        @Override
+        public String serialize(Object value) {
+            if (UNSERIALIZABLE.equals(value)) {
+                throw new DataConverterException("The value can't be serialized.", null);
+            }
+            if (value != null) {
+                this.serializedValues.add(value);
+            }
+            return this.jacksonDataConverter.serialize(value);
+        }
+
+        @Override
+        public <T> T deserialize(String data, Class<T> target) {
+            return this.jacksonDataConverter.deserialize(data, target);
+        }
+    }
+
+    /**
+     * Plays the role of the sidecar by turning the actions of a work item into the history of the next one.
+     */
+    private static final class Simulation {
+        static void advance(
+                TaskOrchestratorResult result,
+                List<HistoryEvent> pastEvents,
+                List<HistoryEvent> newEvents,
+                int step,
+                Predicate<String> failTask) {
+            pastEvents.addAll(newEvents);
+            newEvents.clear();
+            newEvents.add(orchestratorStarted(step));
+            for (OrchestratorAction action : result.getActions()) {
+                HistoryEvent.Builder sent = HistoryEvent.newBuilder()
+                        .setEventId(action.getId())
+                        .setTimestamp(timestamp(step));
+                HistoryEvent.Builder received = HistoryEvent.newBuilder()
+                        .setEventId(-1)
+                        .setTimestamp(timestamp(step));
+                if (action.hasScheduleTask()) {
+                    ScheduleTaskAction scheduleTask = action.getScheduleTask();
+                    pastEvents.add(sent.setTaskScheduled(TaskScheduledEvent.newBuilder()
+                            .setName(scheduleTask.getName())
+                            .setInput(scheduleTask.getInput())).build());
+                    if (failTask.test(scheduleTask.getName())) {
+                        newEvents.add(received.setTaskFailed(TaskFailedEvent.newBuilder()
+                                .setTaskScheduledId(action.getId())
+                                .setFailureDetails(TaskFailureDetails.newBuilder()
+                                        .setErrorType("java.lang.IllegalStateException")
+                                        .setErrorMessage("The activity failed."))).build());
+                    } else {
+                        newEvents.add(received.setTaskCompleted(TaskCompletedEvent.newBuilder()
+                                .setTaskScheduledId(action.getId())
+                                .setResult(StringValue.of("\"" + scheduleTask.getName() + action.getId() + "\"")))
+                                .build());
+                    }
+                } else if (action.hasCreateTimer()) {
+                    Timestamp fireAt = action.getCreateTimer().getFireAt();
+                    pastEvents.add(sent.setTimerCreated(TimerCreatedEvent.newBuilder().setFireAt(fireAt)).build());
+                    newEvents.add(received.setTimerFired(TimerFiredEvent.newBuilder()
+                            .setTimerId(action.getId())
+                            .setFireAt(fireAt)).build());
+                } else if (action.hasCreateSubOrchestration()) {
+                    CreateSubOrchestrationAction subOrchestration = action.getCreateSubOrchestration();
+                    pastEvents.add(sent.setSubOrchestrationInstanceCreated(SubOrchestrationInstanceCreatedEvent.newBuilder()
+                            .setName(subOrchestration.getName())
+                            .setInstanceId(subOrchestration.getInstanceId())).build());
+                    newEvents.add(received.setSubOrchestrationInstanceCompleted(
+                            SubOrchestrationInstanceCompletedEvent.newBuilder()
+                                    .setTaskScheduledId(action.getId())
+                                    .setResult(StringValue.of("\"sub\""))).build());
+                }
+            }
+            pastEvents.add(HistoryEvent.newBuilder()
+                    .setEventId(-1)
+                    .setTimestamp(timestamp(step))
+                    .setOrchestratorCompleted(OrchestratorCompletedEvent.newBuilder())
+                    .build());
+        }
+    }
+}
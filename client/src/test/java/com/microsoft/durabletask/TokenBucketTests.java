@@ -0,0 +1,55 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link TokenBucket}.
+ */
+public class TokenBucketTests {
+    private static final long ONE_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void burstIsAvailableImmediately() {
+        TokenBucket bucket = new TokenBucket(1, 3);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, bucket.reserve());
+        }
+    }
+
+    @Test
+    void reservationsBeyondTheBurstAreSpacedAtTheRate() {
+        TokenBucket bucket = new TokenBucket(1, 1);
+        assertEquals(0, bucket.reserve());
+
+        // Allow some slack for the time that passes between the calls
+        long firstWait = bucket.reserve();
+        assertTrue(firstWait > ONE_SECOND / 2 && firstWait <= ONE_SECOND, "Unexpected wait: " + firstWait);
+        long secondWait = bucket.reserve();
+        assertTrue(secondWait > firstWait + ONE_SECOND / 2 && secondWait <= 2 * ONE_SECOND,
+                "Unexpected wait: " + secondWait);
+    }
+
+    @Test
+    void bucketRefillsOverTime() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(100, 1);
+        assertEquals(0, bucket.reserve());
+        assertTrue(bucket.reserve() > 0);
+
+        // Two tokens' worth of time pays back the promised token and refills the bucket
+        Thread.sleep(50);
+        assertEquals(0, bucket.reserve());
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(Double.NaN, 1));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(1, 0));
+    }
+}
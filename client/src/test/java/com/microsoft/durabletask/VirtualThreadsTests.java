@@ -0,0 +1,41 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link VirtualThreads}. These tests run on Java 21 against the multi-release client jar, because
+ * the Java 8 implementation of {@link VirtualThreads} that the other tests use doesn't support virtual threads.
+ */
+@Tag("multi-release")
+public class VirtualThreadsTests {
+    @Test
+    void multiReleaseJarSupportsVirtualThreads() {
+        assertTrue(VirtualThreads.isSupported());
+    }
+
+    @Test
+    void threadPerTaskExecutorRunsTasksOnNamedThreads() throws Exception {
+        ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("durabletask-test-");
+        try {
+            Future<String> threadName = executor.submit(() -> Thread.currentThread().getName());
+            assertTrue(threadName.get(10, TimeUnit.SECONDS).startsWith("durabletask-test-"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void workerBuilderAcceptsVirtualThreads() {
+        DurableTaskGrpcWorkerBuilder builder = new DurableTaskGrpcWorkerBuilder();
+        assertSame(builder, builder.useVirtualThreads(true));
+    }
+}
@@ -0,0 +1,176 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link WorkItemBudget}.
+ */
+public class WorkItemBudgetTests {
+    @Test
+    void queuesWorkItemsBeyondTheBudgetAndReturnsTheirCredit() {
+        WorkItemBudget budget = new WorkItemBudget(2, 2);
+        List<Runnable> dispatched = new ArrayList<>();
+        AtomicInteger returnedCredits = new AtomicInteger();
+
+        for (int i = 0; i < 6; i++) {
+            budget.submit(dispatched::add, returnedCredits::incrementAndGet);
+        }
+
+        assertEquals(2, dispatched.size());
+        assertEquals(2, budget.getDispatchedCount());
+        assertEquals(4, budget.getQueuedCount());
+
+        // Only the first queued work items give their credit back, the rest keep it until they complete
+        assertEquals(2, returnedCredits.get());
+    }
+
+    @Test
+    void completedWorkItemsHandTheirPlaceToQueuedWorkItems() {
+        WorkItemBudget budget = new WorkItemBudget(1, 1);
+        List<Runnable> dispatched = new ArrayList<>();
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            int workItem = i;
+            budget.submit(
+                    onCompleted -> {
+                        order.add(workItem);
+                        dispatched.add(onCompleted);
+                    },
+                    () -> { });
+        }
+        assertEquals(1, dispatched.size());
+
+        dispatched.get(0).run();
+        assertEquals(2, dispatched.size());
+        assertEquals(1, budget.getDispatchedCount());
+        assertEquals(1, budget.getQueuedCount());
+
+        dispatched.get(1).run();
+        dispatched.get(2).run();
+        assertEquals(0, budget.getDispatchedCount());
+        assertEquals(0, budget.getQueuedCount());
+        assertEquals(List.of(0, 1, 2), order);
+
+        // The budget is available again once everything completed
+        budget.submit(dispatched::add, () -> fail("The work item shouldn't have been queued"));
+        assertEquals(4, dispatched.size());
+    }
+
+    @Test
+    void creditFreeQueueSlotsAreReusedOnceDispatched() {
+        WorkItemBudget budget = new WorkItemBudget(1, 1);
+        List<Runnable> dispatched = new ArrayList<>();
+        AtomicInteger returnedCredits = new AtomicInteger();
+
+        budget.submit(dispatched::add, returnedCredits::incrementAndGet);
+        budget.submit(dispatched::add, returnedCredits::incrementAndGet);
+        assertEquals(1, returnedCredits.get());
+
+        dispatched.get(0).run();
+        budget.submit(dispatched::add, returnedCredits::incrementAndGet);
+        assertEquals(2, returnedCredits.get());
+    }
+
+    @Test
+    void adaptiveLimitHoldsBackWorkItemsWithTheirCredit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 4);
+        WorkItemBudget budget = new WorkItemBudget(4, 4, limiter);
+        List<Runnable> dispatched = new ArrayList<>();
+        AtomicInteger returnedCredits = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            budget.submit(dispatched::add, returnedCredits::incrementAndGet);
+        }
+        assertEquals(1, dispatched.size());
+        assertEquals(2, budget.getQueuedCount());
+        assertEquals(0, returnedCredits.get());
+
+        dispatched.get(0).run();
+        assertEquals(2, dispatched.size());
+        assertEquals(1, budget.getDispatchedCount());
+    }
+
+    @Test
+    void raisedLimitDispatchesSeveralQueuedWorkItems() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 4);
+        WorkItemBudget budget = new WorkItemBudget(4, 4, limiter);
+        List<Runnable> dispatched = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            budget.submit(dispatched::add, () -> { });
+        }
+
+        // The first work item succeeds quickly while the limit is saturated, which raises the limit to two
+        limiter.recordOutcome(1000, true);
+        dispatched.get(0).run();
+        assertEquals(2, limiter.getLimit());
+        assertEquals(3, dispatched.size());
+        assertEquals(0, budget.getQueuedCount());
+    }
+
+    @Test
+    void queuedWorkItemsDontWaitForCapacityOnTheCompletingThread() throws InterruptedException {
+        // The budget matches the capacity of the executor, which only releases a thread's capacity after its task
+        // returns, so a queued work item that's dispatched inside the task of a completing one has to wait for itself
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        BoundedExecutor executor = new BoundedExecutor(threads, 8);
+        ExecutorService dispatcher = Executors.newSingleThreadExecutor();
+        WorkItemBudget budget = new WorkItemBudget(8, 8, null, dispatcher);
+        CountDownLatch completed = new CountDownLatch(40);
+        try {
+            for (int i = 0; i < 40; i++) {
+                budget.submit(
+                        onCompleted -> {
+                            try {
+                                executor.execute(() -> {
+                                    completed.countDown();
+                                    onCompleted.run();
+                                });
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        },
+                        () -> { });
+            }
+
+            assertTrue(completed.await(10, TimeUnit.SECONDS), "Work items left: " + completed.getCount());
+        } finally {
+            dispatcher.shutdownNow();
+            threads.shutdownNow();
+        }
+    }
+
+    @Test
+    void queuedWorkItemsGiveTheirPlaceBackIfTheDispatcherRejectsThem() {
+        WorkItemBudget budget = new WorkItemBudget(1, 1, null, task -> {
+            throw new RejectedExecutionException("The worker is shutting down.");
+        });
+        List<Runnable> dispatched = new ArrayList<>();
+        budget.submit(dispatched::add, () -> { });
+        budget.submit(dispatched::add, () -> { });
+        budget.submit(dispatched::add, () -> { });
+
+        dispatched.get(0).run();
+        assertEquals(1, dispatched.size());
+        assertEquals(0, budget.getDispatchedCount());
+        assertEquals(0, budget.getQueuedCount());
+    }
+
+    @Test
+    void rejectsInvalidSizes() {
+        assertThrows(IllegalArgumentException.class, () -> new WorkItemBudget(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new WorkItemBudget(1, -1));
+    }
+}
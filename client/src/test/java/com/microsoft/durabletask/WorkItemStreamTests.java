@@ -0,0 +1,205 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+package com.microsoft.durabletask;
+
+import com.microsoft.durabletask.implementation.protobuf.OrchestratorService.ActivityRequest;
+import com.microsoft.durabletask.implementation.protobuf.OrchestratorService.GetWorkItemsRequest;
+import com.microsoft.durabletask.implementation.protobuf.OrchestratorService.OrchestratorRequest;
+import com.microsoft.durabletask.implementation.protobuf.OrchestratorService.WorkItem;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ClientCallStreamObserver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link WorkItemStream}.
+ */
+public class WorkItemStreamTests {
+    @Test
+    void activityFloodLeavesCreditsForOrchestrations() {
+        WorkItemBudget activityBudget = new WorkItemBudget(2, 2);
+        WorkItemBudget orchestrationBudget = new WorkItemBudget(2, 2);
+        List<WorkItem> dispatched = new ArrayList<>();
+        WorkItemStream stream = new WorkItemStream(
+                4,
+                workItem -> workItem.hasActivityRequest() ? activityBudget : orchestrationBudget,
+                (workItem, onCompleted) -> dispatched.add(workItem));
+        FakeRequestStream requestStream = new FakeRequestStream();
+        stream.beforeStart(requestStream);
+
+        // The sidecar uses the whole window for activities
+        for (int i = 0; i < 4; i++) {
+            stream.onNext(activity());
+        }
+
+        // The activities beyond their budget wait locally and the sidecar can push orchestrations instead
+        assertEquals(2, dispatched.size());
+        assertEquals(6, requestStream.requested);
+        stream.onNext(orchestration());
+        stream.onNext(orchestration());
+        assertEquals(4, dispatched.size());
+        assertTrue(dispatched.get(3).hasOrchestratorRequest());
+    }
+
+    @Test
+    void initialRequestMatchesTheInFlightLimit() {
+        List<Runnable> completions = new ArrayList<>();
+        WorkItemStream stream = new WorkItemStream(4, (workItem, onCompleted) -> completions.add(onCompleted));
+        FakeRequestStream requestStream = new FakeRequestStream();
+        stream.beforeStart(requestStream);
+        assertEquals(4, requestStream.requested);
+
+        // Work items that are still running don't make room for more
+        for (int i = 0; i < 4; i++) {
+            stream.onNext(activity());
+        }
+        assertEquals(4, requestStream.requested);
+
+        // Each work item that finishes asks the sidecar for one more
+        completions.get(0).run();
+        completions.get(1).run();
+        assertEquals(6, requestStream.requested);
+    }
+
+    @Test
+    void completedWorkItemsReturnTheirCreditOnce() {
+        List<Runnable> completions = new ArrayList<>();
+        WorkItemStream stream = new WorkItemStream(1, (workItem, onCompleted) -> completions.add(onCompleted));
+        FakeRequestStream requestStream = new FakeRequestStream();
+        stream.beforeStart(requestStream);
+
+        stream.onNext(activity());
+        completions.get(0).run();
+        completions.get(0).run();
+        assertEquals(2, requestStream.requested);
+    }
+
+    @Test
+    void failedDispatchReturnsItsCredit() {
+        WorkItemStream stream = new WorkItemStream(1, (workItem, onCompleted) -> {
+            throw new IllegalStateException("rejected");
+        });
+        FakeRequestStream requestStream = new FakeRequestStream();
+        stream.beforeStart(requestStream);
+
+        assertThrows(IllegalStateException.class, () -> stream.onNext(activity()));
+        assertEquals(2, requestStream.requested);
+    }
+
+    @Test
+    void closedOrCancelledStreamsDontAskForMore() {
+        List<Runnable> completions = new ArrayList<>();
+        WorkItemStream closedStream = new WorkItemStream(2, (workItem, onCompleted) -> completions.add(onCompleted));
+        FakeRequestStream closedRequestStream = new FakeRequestStream();
+        closedStream.beforeStart(closedRequestStream);
+        closedStream.onNext(activity());
+        closedStream.onCompleted();
+        completions.get(0).run();
+        assertEquals(2, closedRequestStream.requested);
+
+        WorkItemStream cancelledStream = new WorkItemStream(2, (workItem, onCompleted) -> completions.add(onCompleted));
+        FakeRequestStream cancelledRequestStream = new FakeRequestStream();
+        cancelledStream.beforeStart(cancelledRequestStream);
+        cancelledStream.onNext(activity());
+        cancelledStream.cancel("Stopping");
+        completions.get(1).run();
+        assertEquals(2, cancelledRequestStream.requested);
+        assertEquals("Stopping", cancelledRequestStream.cancellationMessage);
+    }
+
+    @Test
+    void awaitCloseThrowsTheStreamError() throws InterruptedException {
+        WorkItemStream stream = new WorkItemStream(1, (workItem, onCompleted) -> { });
+        stream.beforeStart(new FakeRequestStream());
+
+        stream.onError(Status.UNAVAILABLE.asRuntimeException());
+        StatusRuntimeException e = assertThrows(StatusRuntimeException.class, stream::awaitClose);
+        assertEquals(Status.Code.UNAVAILABLE, e.getStatus().getCode());
+
+        WorkItemStream completedStream = new WorkItemStream(1, (workItem, onCompleted) -> { });
+        completedStream.beforeStart(new FakeRequestStream());
+        completedStream.onCompleted();
+        completedStream.awaitClose();
+    }
+
+    @Test
+    void failedDispatchReleasesTheBudget() {
+        WorkItemBudget budget = new WorkItemBudget(1, 0);
+        WorkItemStream stream = new WorkItemStream(
+                2,
+                workItem -> budget,
+                (workItem, onCompleted) -> {
+                    throw new IllegalStateException("rejected");
+                });
+        FakeRequestStream requestStream = new FakeRequestStream();
+        stream.beforeStart(requestStream);
+
+        assertThrows(IllegalStateException.class, () -> stream.onNext(activity()));
+        assertEquals(0, budget.getDispatchedCount());
+        assertEquals(3, requestStream.requested);
+    }
+
+    private static WorkItem activity() {
+        return WorkItem.newBuilder().setActivityRequest(ActivityRequest.newBuilder().setName("A")).build();
+    }
+
+    private static WorkItem orchestration() {
+        return WorkItem.newBuilder().setOrchestratorRequest(OrchestratorRequest.newBuilder().setInstanceId("I")).build();
+    }
+
+    private static final class FakeRequestStream extends ClientCallStreamObserver<GetWorkItemsRequest> {
+        int requested;
+        String cancellationMessage;
+
+        @Override
+        public void disableAutoRequestWithInitial(int request) {
+            this.requested += request;
+        }
+
+        @Override
+        public void request(int count) {
+            this.requested += count;
+        }
+
+        @Override
+        public void cancel(String message, Throwable cause) {
+            this.cancellationMessage = message;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setOnReadyHandler(Runnable onReadyHandler) {
+        }
+
+        @Override
+        public void disableAutoInboundFlowControl() {
+        }
+
+        @Override
+        public void setMessageCompression(boolean enable) {
+        }
+
+        @Override
+        public void onNext(GetWorkItemsRequest value) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+    }
+}